@@ -1,11 +1,12 @@
 package frechsack.prod.util;
 
+import frechsack.prod.util.concurrent.RetryPolicy;
 import org.jetbrains.annotations.NotNull;
 
+import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.TimeUnit;
 import java.util.function.*;
 
 public class Operators {
@@ -102,10 +103,7 @@ public class Operators {
      * @param retry The amount of retries.
      */
     public static CompletableFuture<Void> retryRunAsync(@NotNull Runnable action, int retry) {
-        CompletableFuture<Void> actionFuture = CompletableFuture.runAsync(action);
-        for (int i = 0; i < retry; i++)
-            actionFuture = actionFuture.exceptionallyAsync(__ -> { action.run(); return null; });
-        return actionFuture;
+        return RetryPolicy.immediate(retry).executeAsync(toSupplier(action));
     }
 
     /**
@@ -116,14 +114,48 @@ public class Operators {
      * @param delayMs The delay between the retries.
      */
     public static CompletableFuture<Void> retryRunAsync(@NotNull Runnable action, int retry, int delayMs) {
-        CompletableFuture<Void> actionFuture = CompletableFuture.runAsync(action);
-        final Executor delayedExecutor = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS);
-        for (int i = 0; i < retry; i++)
-            actionFuture = actionFuture.exceptionallyAsync(__ -> {
-                action.run();
-                return null;
-                }, delayedExecutor);
-        return actionFuture;
+        return RetryPolicy.fixedDelay(retry, Duration.ofMillis(delayMs)).executeAsync(toSupplier(action));
+    }
+
+    /**
+     * Executes the given action asynchronous on the given executor. If the action throws an exception, the action will be called again the given amount of times.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param retry The amount of retries.
+     * @param executor The executor, that runs the action.
+     */
+    public static CompletableFuture<Void> retryRunAsync(@NotNull Runnable action, int retry, @NotNull Executor executor) {
+        return RetryPolicy.immediate(retry).withExecutor(executor).executeAsync(toSupplier(action));
+    }
+
+    /**
+     * Executes the given action asynchronous on the given executor. If the action throws an exception, the action will be called again the given amount of times.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param retry The amount of retries.
+     * @param delayMs The delay between the retries.
+     * @param executor The executor, that runs the action.
+     */
+    public static CompletableFuture<Void> retryRunAsync(@NotNull Runnable action, int retry, int delayMs, @NotNull Executor executor) {
+        return RetryPolicy.fixedDelay(retry, Duration.ofMillis(delayMs)).withExecutor(executor).executeAsync(toSupplier(action));
+    }
+
+    /**
+     * Executes the given action asynchronous. If the action throws an exception, the action will be retried as described by the given policy.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param policy The retry policy.
+     */
+    public static CompletableFuture<Void> retryRunAsync(@NotNull Runnable action, @NotNull RetryPolicy policy) {
+        return policy.executeAsync(toSupplier(action));
+    }
+
+    private static @NotNull Supplier<Void> toSupplier(@NotNull Runnable action) {
+        Objects.requireNonNull(action);
+        return () -> {
+            action.run();
+            return null;
+        };
     }
 
     /**
@@ -152,10 +184,7 @@ public class Operators {
      * @param retry The amount of retries.
      */
     public static <E> CompletableFuture<E> retryGetAsync(@NotNull Supplier<E> action, int retry){
-        CompletableFuture<E> actionFuture = CompletableFuture.supplyAsync(action);
-        for (int i = 0; i < retry; i++)
-            actionFuture = actionFuture.exceptionallyAsync(__ -> action.get());
-        return actionFuture;
+        return RetryPolicy.immediate(retry).executeAsync(action);
     }
 
     /**
@@ -166,10 +195,39 @@ public class Operators {
      * @param delayMs The delay between the retries.
      */
     public static <E> CompletableFuture<E> retryGetAsync(@NotNull Supplier<E> action, int retry, int delayMs) {
-        CompletableFuture<E> actionFuture = CompletableFuture.supplyAsync(action);
-        final Executor delayedExecutor = CompletableFuture.delayedExecutor(delayMs, TimeUnit.MILLISECONDS);
-        for (int i = 0; i < retry; i++)
-            actionFuture = actionFuture.exceptionallyAsync(__ -> action.get(), delayedExecutor);
-        return actionFuture;
+        return RetryPolicy.fixedDelay(retry, Duration.ofMillis(delayMs)).executeAsync(action);
+    }
+
+    /**
+     * Executes the given action asynchronous on the given executor. If the action throws an exception, the action will be called again the given amount of times.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param retry The amount of retries.
+     * @param executor The executor, that runs the action.
+     */
+    public static <E> CompletableFuture<E> retryGetAsync(@NotNull Supplier<E> action, int retry, @NotNull Executor executor) {
+        return RetryPolicy.immediate(retry).withExecutor(executor).executeAsync(action);
+    }
+
+    /**
+     * Executes the given action asynchronous on the given executor. If the action throws an exception, the action will be called again the given amount of times.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param retry The amount of retries.
+     * @param delayMs The delay between the retries.
+     * @param executor The executor, that runs the action.
+     */
+    public static <E> CompletableFuture<E> retryGetAsync(@NotNull Supplier<E> action, int retry, int delayMs, @NotNull Executor executor) {
+        return RetryPolicy.fixedDelay(retry, Duration.ofMillis(delayMs)).withExecutor(executor).executeAsync(action);
+    }
+
+    /**
+     * Executes the given action asynchronous. If the action throws an exception, the action will be retried as described by the given policy.
+     * The returned future will complete with the last thrown exception raised by the action.
+     * @param action The action to be called.
+     * @param policy The retry policy.
+     */
+    public static <E> CompletableFuture<E> retryGetAsync(@NotNull Supplier<E> action, @NotNull RetryPolicy policy) {
+        return policy.executeAsync(action);
     }
 }
@@ -3,21 +3,84 @@ package frechsack.prod.util.collection;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.function.Function;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 public class CollectionUtils {
 
     private CollectionUtils() {}
 
-    private static @NotNull List<Map.Entry<Object, Long>> frequencies(@NotNull Collection<?> collection) {
-        return collection.stream()
-                .map(it -> it == null ? collection : it)
-            .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
-            .entrySet()
-            .stream()
-            .sorted( Map.Entry.comparingByValue(Comparator.reverseOrder()))
-            .toList();
+    /**
+     * Counts elements in a single pass with primitive counters and keeps the element with the highest frequency so far.
+     * Ties are broken by the natural order, if the elements are comparable with each other, otherwise the first element, that reached the frequency, is kept.
+     * Combined counters do not know the order, in which their elements reached the frequency, so the kept element of a tie between elements,
+     * that are not comparable with each other, is unspecified after a combination.
+     */
+    private static final class FrequencyCounter<E> {
+        private final boolean isExcludingNull;
+        private final @NotNull ObjectIntHashMap<E> counts = new ObjectIntHashMap<>();
+        private E highest;
+        private int highestCount;
+
+        private FrequencyCounter(boolean isExcludingNull) {
+            this.isExcludingNull = isExcludingNull;
+        }
+
+        private void add(E element) {
+            if (isExcludingNull && element == null)
+                return;
+            offer(element, counts.addTo(element, 1));
+        }
+
+        private void offer(E element, int count) {
+            if (count > highestCount || (count == highestCount && compareElements(element, highest) < 0)) {
+                highest = element;
+                highestCount = count;
+            }
+        }
+
+        private @NotNull FrequencyCounter<E> combine(@NotNull FrequencyCounter<E> other) {
+            counts.addAll(other.counts);
+            highestCount = 0;
+            counts.forEach(this::offer);
+            return this;
+        }
+
+        private E highest() {
+            if (highestCount == 0)
+                throw new NoSuchElementException(isExcludingNull ? "The collection contains no element except null." : "The collection is empty.");
+            return highest;
+        }
+    }
+
+    /**
+     * Compares two elements with the same frequency. Elements of the same comparable class are compared by their natural order, null is greater than any element.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareElements(Object lhs, Object rhs) {
+        if (lhs == rhs)
+            return 0;
+        if (lhs == null)
+            return 1;
+        if (rhs == null)
+            return -1;
+        if (lhs instanceof Comparable comparable && lhs.getClass() == rhs.getClass())
+            return comparable.compareTo(rhs);
+        return 0;
+    }
+
+    /**
+     * Returns the frequency of each element in this collection. This includes null as an element.
+     * The elements are counted in a single pass by primitive counters.
+     * @param collection The collection to count the elements of.
+     * @return Returns the frequencies.
+     * @param <E> The element type.
+     */
+    public static <E> @NotNull ObjectIntHashMap<E> frequencies(@NotNull Collection<? extends E> collection) {
+        final var frequencies = new ObjectIntHashMap<E>(Math.min(collection.size(), 1 << 16));
+        for (E element : collection)
+            frequencies.addTo(element, 1);
+        return frequencies;
     }
 
     /**
@@ -27,15 +90,13 @@ public class CollectionUtils {
      * @return Returns the element with the highest frequency.
      * @param <E> The element type.
      */
-    @SuppressWarnings("unchecked")
     public static <E> E highestFrequency(@NotNull Collection<? extends E> collection) {
         if (collection.isEmpty())
             throw new NoSuchElementException();
-        final var frequencies = frequencies(collection);
-        final var firstElement = frequencies.getFirst().getKey();
-        if (firstElement == collection)
-            return null;
-        return (E) firstElement;
+        final var counter = new FrequencyCounter<E>(false);
+        for (E element : collection)
+            counter.add(element);
+        return counter.highest();
     }
 
     /**
@@ -45,16 +106,94 @@ public class CollectionUtils {
      * @return Returns the element with the highest frequency.
      * @param <E> The element type.
      */
-    @SuppressWarnings("unchecked")
     public static <E> @NotNull E highestFrequencyExcludeNull(@NotNull Collection<? extends E> collection) {
         if (collection.isEmpty())
             throw new NoSuchElementException();
-        final var frequencies = frequencies(collection);
-        final var firstElement = frequencies.getFirst().getKey();
-        if (firstElement != collection)
-            return (E) firstElement;
-        if (frequencies.size() == 1)
-            throw new NoSuchElementException("The collection only contains null.");
-        return (E) frequencies.get(1).getKey();
+        final var counter = new FrequencyCounter<E>(true);
+        for (E element : collection)
+            counter.add(element);
+        return counter.highest();
+    }
+
+    /**
+     * Returns the element with the highest frequency in this collection like {@link #highestFrequency(Collection)}, but counts by multiple threads.
+     * Each thread counts a part of the collection, the counts are merged at the end. Faster for large collections with few distinct elements.
+     * Ties between elements, that are not comparable with each other, are broken arbitrarily.
+     * @param collection The collection to find the element in.
+     * @return Returns the element with the highest frequency.
+     * @param <E> The element type.
+     */
+    public static <E> E highestFrequencyParallel(@NotNull Collection<? extends E> collection) {
+        if (collection.isEmpty())
+            throw new NoSuchElementException();
+        return collection.parallelStream().collect(toHighestFrequency());
+    }
+
+    /**
+     * Returns the k elements with the highest frequencies in this collection with their frequencies, from the highest to the lowest frequency.
+     * This includes null as an element. Elements with the same frequency are ordered like by {@link #highestFrequency(Collection)}.
+     * The elements are counted in a single pass and selected by a bounded heap, instead of sorting all distinct elements.
+     * @param collection The collection to find the elements in.
+     * @param k The amount of elements.
+     * @return Returns the elements with their frequencies.
+     * @param <E> The element type.
+     */
+    public static <E> @NotNull List<Map.Entry<E, Integer>> topFrequencies(@NotNull Collection<? extends E> collection, int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of elements must not be negative.");
+        return topFrequencies(CollectionUtils.<E>frequencies(collection), k);
+    }
+
+    private static <E> @NotNull List<Map.Entry<E, Integer>> topFrequencies(@NotNull ObjectIntHashMap<E> frequencies, int k) {
+        final Comparator<Map.Entry<E, Integer>> order = Comparator.<Map.Entry<E, Integer>>comparingInt(Map.Entry::getValue).reversed()
+                .thenComparing((lhs, rhs) -> compareElements(lhs.getKey(), rhs.getKey()));
+        // The root of the heap is the entry, that is replaced first.
+        final var heap = new PriorityQueue<>(Math.max(1, Math.min(k, frequencies.size())), order.reversed());
+        if (k > 0)
+            frequencies.forEach((element, count) -> {
+                heap.offer(new AbstractMap.SimpleImmutableEntry<>(element, count));
+                if (heap.size() > k)
+                    heap.poll();
+            });
+        final List<Map.Entry<E, Integer>> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    /**
+     * Returns a collector, that counts the frequency of each element. This includes null as an element.
+     * A parallel stream counts per thread and merges the counts at the end.
+     * The counts are ints, the collector throws an {@link ArithmeticException}, if a count overflows.
+     * @return Returns the collector.
+     * @param <E> The element type.
+     */
+    public static <E> @NotNull Collector<E, ?, ObjectIntHashMap<E>> toFrequencies() {
+        return Collector.of(ObjectIntHashMap::new, (frequencies, element) -> frequencies.addTo(element, 1), (lhs, rhs) -> {
+            lhs.addAll(rhs);
+            return lhs;
+        }, Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a collector, that returns the element with the highest frequency like {@link #highestFrequency(Collection)}.
+     * The collector throws a {@link NoSuchElementException}, if the stream is empty.
+     * On a parallel stream, ties between elements, that are not comparable with each other, are broken arbitrarily.
+     * @return Returns the collector.
+     * @param <E> The element type.
+     */
+    public static <E> @NotNull Collector<E, ?, E> toHighestFrequency() {
+        return Collector.of(() -> new FrequencyCounter<E>(false), FrequencyCounter::add, FrequencyCounter::combine, FrequencyCounter::highest);
+    }
+
+    /**
+     * Returns a collector, that returns the k elements with the highest frequencies like {@link #topFrequencies(Collection, int)}.
+     * @param k The amount of elements.
+     * @return Returns the collector.
+     * @param <E> The element type.
+     */
+    public static <E> @NotNull Collector<E, ?, List<Map.Entry<E, Integer>>> toTopFrequencies(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of elements must not be negative.");
+        return Collectors.collectingAndThen(toFrequencies(), frequencies -> topFrequencies(frequencies, k));
     }
 }
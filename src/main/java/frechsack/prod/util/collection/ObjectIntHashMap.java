@@ -0,0 +1,203 @@
+package frechsack.prod.util.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A hash map from objects to primitive ints, like counters. Keys and values are kept in two arrays with open addressing and linear probing,
+ * so no entry or boxed integer is allocated per key. Null is a valid key. Keys can not be removed. Not thread-safe.
+ * @param <Key> The type of the keys.
+ */
+public final class ObjectIntHashMap<Key> {
+
+    private static final Object NULL_KEY = new Object();
+    private static final int DEFAULT_EXPECTED_SIZE = 16;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    // A slot is empty, if its key is null. The null key is stored as NULL_KEY.
+    private Object[] keys;
+    private int[] values;
+    private int size;
+
+    /**
+     * Creates a new empty ObjectIntHashMap.
+     */
+    public ObjectIntHashMap() {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+    /**
+     * Creates a new empty ObjectIntHashMap.
+     * @param expectedSize The amount of keys, that can be added without resizing.
+     */
+    public ObjectIntHashMap(int expectedSize) {
+        if (expectedSize < 0)
+            throw new IllegalArgumentException("The expected size must not be negative.");
+        // The table is at most half full, so probe sequences stay short.
+        final long capacity = Long.highestOneBit(Math.max(2, expectedSize * 2L - 1)) << 1;
+        this.keys = new Object[(int) Math.min(capacity, MAX_CAPACITY)];
+        this.values = new int[keys.length];
+    }
+
+    private static int hash(@NotNull Object key) {
+        final int hash = key.hashCode() * 0x9e3779b9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns the slot of the key, or the empty slot, where it would be inserted.
+     */
+    private int slot(@NotNull Object key) {
+        final int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        Object current;
+        while ((current = keys[slot]) != null && !current.equals(key))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private static @NotNull Object mask(Object key) {
+        return key == null ? NULL_KEY : key;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Key> Key unmask(@NotNull Object key) {
+        return key == NULL_KEY ? null : (Key) key;
+    }
+
+    /**
+     * Returns the value of the key, or zero if the key is not contained.
+     * @param key The key.
+     * @return Returns the value.
+     */
+    public int get(Key key) {
+        return values[slot(mask(key))];
+    }
+
+    /**
+     * Returns true, if the key is contained.
+     * @param key The key.
+     * @return Returns true, if the key is contained.
+     */
+    public boolean containsKey(Key key) {
+        return keys[slot(mask(key))] != null;
+    }
+
+    /**
+     * Sets the value of the key.
+     * @param key The key.
+     * @param value The value.
+     */
+    public void put(Key key, int value) {
+        final Object masked = mask(key);
+        final int slot = slot(masked);
+        if (keys[slot] == null) {
+            insert(slot, masked, value);
+            return;
+        }
+        values[slot] = value;
+    }
+
+    /**
+     * Adds the delta to the value of the key. A key, that is not contained, is added with the delta as value.
+     * @param key The key.
+     * @param delta The delta.
+     * @return Returns the new value of the key.
+     * @throws ArithmeticException If the new value overflows an int.
+     */
+    public int addTo(Key key, int delta) {
+        final Object masked = mask(key);
+        final int slot = slot(masked);
+        if (keys[slot] == null) {
+            insert(slot, masked, delta);
+            return delta;
+        }
+        return values[slot] = Math.addExact(values[slot], delta);
+    }
+
+    private void insert(int slot, @NotNull Object key, int value) {
+        // The table is resized before the key is written, so a key, that exceeds the maximum capacity, is not added.
+        if ((size + 1) * 2 > keys.length) {
+            if (keys.length == MAX_CAPACITY)
+                throw new IllegalStateException("The map exceeds its maximum capacity.");
+            resize();
+            slot = slot(key);
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    private void resize() {
+        final Object[] oldKeys = keys;
+        final int[] oldValues = values;
+        keys = new Object[oldKeys.length * 2];
+        values = new int[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null)
+                continue;
+            final int slot = slot(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    /**
+     * Adds the values of the other map to the values of this map.
+     * @param other The other map.
+     * @throws ArithmeticException If a value overflows an int.
+     */
+    public void addAll(@NotNull ObjectIntHashMap<? extends Key> other) {
+        other.forEach(this::addTo);
+    }
+
+    /**
+     * Performs the action for each key and its value.
+     * @param action The action.
+     */
+    public void forEach(@NotNull ObjIntConsumer<? super Key> action) {
+        Objects.requireNonNull(action);
+        for (int i = 0; i < keys.length; i++)
+            if (keys[i] != null)
+                action.accept(unmask(keys[i]), values[i]);
+    }
+
+    /**
+     * Returns the amount of keys.
+     * @return Returns the amount.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true, if no key is contained.
+     * @return Returns true, if no key is contained.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all keys.
+     */
+    public void clear() {
+        Arrays.fill(keys, null);
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        forEach((key, value) -> {
+            if (builder.length() > 1)
+                builder.append(", ");
+            builder.append(key).append('=').append(value);
+        });
+        return builder.append('}').toString();
+    }
+}
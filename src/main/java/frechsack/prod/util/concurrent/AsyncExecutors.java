@@ -0,0 +1,66 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Provides the executor, that runs the asynchronous helpers of this library, if no executor is given explicitly.
+ * <p>
+ * The default executor starts a virtual thread for each task. Retried and cached actions usually block on I/O,
+ * a virtual thread releases its carrier thread while it blocks, so blocking actions do not starve the common {@link java.util.concurrent.ForkJoinPool}.
+ * CPU-bound actions should be given an explicit executor, like the common pool.
+ * <p>
+ * Helpers resolve the default executor, when they start a task, so changing it affects helpers, that were created before.
+ */
+public final class AsyncExecutors {
+
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("frechsack-async-", 0).factory());
+
+    private static volatile @NotNull Executor defaultExecutor = VIRTUAL_THREADS;
+
+    private AsyncExecutors() {}
+
+    /**
+     * Returns the executor, that is used, if no executor is given explicitly.
+     * @return Returns the default executor.
+     */
+    public static @NotNull Executor defaultExecutor() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Replaces the default executor for the whole library.
+     * @param executor The new default executor.
+     */
+    public static void setDefaultExecutor(@NotNull Executor executor) {
+        defaultExecutor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Restores the default executor to {@link #virtualThreads()}.
+     */
+    public static void resetDefaultExecutor() {
+        defaultExecutor = VIRTUAL_THREADS;
+    }
+
+    /**
+     * Runs the task on the current default executor.
+     * Can be passed as {@code AsyncExecutors::execute}, to resolve the default executor for each task instead of once.
+     * @param task The task.
+     */
+    public static void execute(@NotNull Runnable task) {
+        defaultExecutor.execute(task);
+    }
+
+    /**
+     * Returns a shared executor, that starts a named virtual thread for each task. The executor is never shut down.
+     * @return Returns the executor.
+     */
+    public static @NotNull Executor virtualThreads() {
+        return VIRTUAL_THREADS;
+    }
+}
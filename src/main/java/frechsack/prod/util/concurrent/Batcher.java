@@ -0,0 +1,227 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Collects single lookups into batches, so many callers share one call of a bulk loader.
+ * <p>
+ * A batch is dispatched, when it contains the maximum amount of keys, or when the maximum delay passed since its first key was added.
+ * Delays of at least a millisecond are scheduled on {@link HashedWheelTimer#shared()} and may pass up to a millisecond late, shorter delays are scheduled precisely.
+ * Lookups of the same key, that are collected in the same batch, share one entry in the batch.
+ * The amount of keys, that are collected or loaded, is limited. If the limit is reached, lookups fail with a {@link RejectedExecutionException},
+ * so callers are pushed back instead of queueing unbounded work.
+ * @param <Key> The key type.
+ * @param <Value> The value type.
+ */
+public final class Batcher<Key, Value> {
+
+    private final @NotNull Function<? super Set<Key>, ? extends Map<Key, Value>> loader;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int maxPending;
+    private final @NotNull Executor executor;
+
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock.
+    private @NotNull LinkedHashMap<Key, CompletableFuture<Value>> batch = new LinkedHashMap<>();
+    private int pending;
+    // The delayed dispatch of the current batch. Cancelled, if the batch is dispatched early, so the timer does not keep the batch alive.
+    private @Nullable HashedWheelTimer.Timeout flushTimeout;
+
+    public Batcher(@NotNull Function<? super Set<Key>, ? extends Map<Key, Value>> loader, int maxBatchSize, @NotNull Duration maxDelay) {
+        this(loader, maxBatchSize, maxDelay, Integer.MAX_VALUE);
+    }
+
+    public Batcher(@NotNull Function<? super Set<Key>, ? extends Map<Key, Value>> loader, int maxBatchSize, @NotNull Duration maxDelay, int maxPending) {
+        this(loader, maxBatchSize, maxDelay, maxPending, AsyncExecutors::execute);
+    }
+
+    /**
+     * Creates a new Batcher.
+     * @param loader Loads the values of a batch. Keys, that are missing in the returned map, are completed with null.
+     * @param maxBatchSize The maximum amount of keys in a batch.
+     * @param maxDelay The maximum duration, that a key waits for its batch to be dispatched.
+     * @param maxPending The maximum amount of keys, that are collected or loaded at the same time.
+     * @param executor The executor, that runs the loader.
+     */
+    public Batcher(@NotNull Function<? super Set<Key>, ? extends Map<Key, Value>> loader, int maxBatchSize, @NotNull Duration maxDelay, int maxPending, @NotNull Executor executor) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("The batch size must be positive.");
+        if (maxPending < maxBatchSize)
+            throw new IllegalArgumentException("The maximum amount of pending keys must not be less than the batch size.");
+        if (maxDelay.isNegative())
+            throw new IllegalArgumentException("The delay must not be negative.");
+        this.loader = Objects.requireNonNull(loader);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.maxPending = maxPending;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    /**
+     * Adds the key to the current batch.
+     * Completing or cancelling the returned future does not affect other callers of the same key.
+     * @param key The key.
+     * @return Returns a future of the value, that is completed, when the batch of the key was loaded.
+     * Fails with a {@link RejectedExecutionException}, if too many keys are pending.
+     */
+    public @NotNull CompletableFuture<Value> get(@NotNull Key key) {
+        Objects.requireNonNull(key);
+        LinkedHashMap<Key, CompletableFuture<Value>> full = null;
+        HashedWheelTimer.Timeout timeout = null;
+        final CompletableFuture<Value> future;
+        lock.lock();
+        try {
+            final var present = batch.get(key);
+            if (present != null)
+                return present.copy();
+            if (pending >= maxPending)
+                return CompletableFuture.failedFuture(new RejectedExecutionException("Too many keys are pending."));
+            pending++;
+            future = new CompletableFuture<>();
+            batch.put(key, future);
+            if (batch.size() == 1 && maxBatchSize > 1)
+                flushTimeout = scheduleFlush(batch);
+            if (batch.size() >= maxBatchSize) {
+                full = batch;
+                batch = new LinkedHashMap<>();
+                timeout = flushTimeout;
+                flushTimeout = null;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        if (timeout != null)
+            timeout.cancel();
+        if (full != null)
+            dispatch(full);
+        return future.copy();
+    }
+
+    /**
+     * Dispatches the current batch without waiting for the delay.
+     */
+    public void flush() {
+        final LinkedHashMap<Key, CompletableFuture<Value>> current;
+        final HashedWheelTimer.Timeout timeout;
+        lock.lock();
+        try {
+            if (batch.isEmpty())
+                return;
+            current = batch;
+            batch = new LinkedHashMap<>();
+            timeout = flushTimeout;
+            flushTimeout = null;
+        }
+        finally {
+            lock.unlock();
+        }
+        if (timeout != null)
+            timeout.cancel();
+        dispatch(current);
+    }
+
+    /**
+     * Returns the amount of keys, that are collected or loaded.
+     * @return Returns the amount.
+     */
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return pending;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedules the dispatch of the batch after the maximum delay. The timer only passes the flush to the default executor,
+     * so the timer thread neither waits for the lock nor runs the loader, if the executor of this batcher runs tasks on the caller.
+     * @return Returns the timeout, or null if the delay is shorter than a tick of the shared timer and can not be cancelled.
+     */
+    private @Nullable HashedWheelTimer.Timeout scheduleFlush(@NotNull LinkedHashMap<Key, CompletableFuture<Value>> scheduled) {
+        final Runnable flush = () -> flushScheduled(scheduled);
+        // The wheel runs a task up to a tick late, shorter delays are scheduled precisely instead.
+        if (maxDelayNanos < HashedWheelTimer.shared().tickDuration().toNanos()) {
+            CompletableFuture.delayedExecutor(maxDelayNanos, TimeUnit.NANOSECONDS, AsyncExecutors::execute).execute(flush);
+            return null;
+        }
+        return HashedWheelTimer.shared().schedule(() -> {
+            try {
+                AsyncExecutors.execute(flush);
+            }
+            catch (RuntimeException e) {
+                // The batch must not stay undispatched, so a rejected flush runs on the timer thread.
+                flush.run();
+            }
+        }, maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void flushScheduled(@NotNull LinkedHashMap<Key, CompletableFuture<Value>> scheduled) {
+        lock.lock();
+        try {
+            // The batch may already be dispatched, because it was full or flushed.
+            if (batch != scheduled)
+                return;
+            batch = new LinkedHashMap<>();
+            flushTimeout = null;
+        }
+        finally {
+            lock.unlock();
+        }
+        dispatch(scheduled);
+    }
+
+    private void dispatch(@NotNull LinkedHashMap<Key, CompletableFuture<Value>> dispatched) {
+        try {
+            executor.execute(() -> load(dispatched));
+        }
+        catch (RuntimeException e) {
+            complete(dispatched, null, e);
+        }
+    }
+
+    private void load(@NotNull LinkedHashMap<Key, CompletableFuture<Value>> dispatched) {
+        final Map<Key, Value> values;
+        try {
+            values = Objects.requireNonNull(loader.apply(Collections.unmodifiableSet(dispatched.keySet())), "The loader returned null.");
+        }
+        catch (Throwable e) {
+            complete(dispatched, null, e);
+            return;
+        }
+        complete(dispatched, values, null);
+    }
+
+    private void complete(@NotNull LinkedHashMap<Key, CompletableFuture<Value>> dispatched, Map<Key, Value> values, Throwable error) {
+        lock.lock();
+        try {
+            pending -= dispatched.size();
+        }
+        finally {
+            lock.unlock();
+        }
+        dispatched.forEach((key, future) -> {
+            if (error != null)
+                future.completeExceptionally(error);
+            else
+                future.complete(values.get(key));
+        });
+    }
+}
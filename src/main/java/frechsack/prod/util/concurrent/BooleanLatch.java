@@ -1,5 +1,8 @@
 package frechsack.prod.util.concurrent;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
 import java.util.concurrent.locks.AbstractQueuedSynchronizer;
 
 /**
@@ -30,4 +33,14 @@ public final class BooleanLatch {
     public void await() throws InterruptedException {
         sync.acquireSharedInterruptibly(1);
     }
+
+    /**
+     * Waits until this latch is signalled or the timeout elapsed.
+     * @param timeout The maximum time to wait.
+     * @return Returns true if this latch was signalled, false if the timeout elapsed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public boolean await(@NotNull Duration timeout) throws InterruptedException {
+        return sync.tryAcquireSharedNanos(1, timeout.toNanos());
+    }
 }
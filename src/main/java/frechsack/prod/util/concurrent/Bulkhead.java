@@ -0,0 +1,303 @@
+package frechsack.prod.util.concurrent;
+
+import frechsack.prod.util.concurrent.metric.StripedCounter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Limits the amount of asynchronous actions, that run at the same time.
+ * <p>
+ * An action, that exceeds the limit, waits in a bounded queue and is started, when a running action completes.
+ * If the queue is full, the action is not started and its future fails with a {@link RejectedExecutionException}.
+ * No thread is blocked while an action waits.
+ * <p>
+ * A fixed bulkhead uses a constant limit. An adaptive bulkhead changes its limit by the observed latency:
+ * The limit grows by one per window of successful actions and shrinks multiplicatively, if an action times out
+ * or its latency exceeds the tolerated multiple of the lowest observed latency. So the limit drops, when a dependency slows down,
+ * before the queued work overwhelms the callers.
+ */
+public final class Bulkhead {
+
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    private final @NotNull ArrayDeque<Waiting<?>> queue = new ArrayDeque<>();
+    private final @NotNull StripedCounter rejectedCount = new StripedCounter();
+    private final int maxQueueDepth;
+    private final boolean isAdaptive;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+
+    // Guarded by lock.
+    private int inFlight;
+    private double limit;
+    private long minLatencyNanos = Long.MAX_VALUE;
+
+    private Bulkhead(int initialLimit, int minLimit, int maxLimit, int maxQueueDepth, boolean isAdaptive, double latencyTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit)
+            throw new IllegalArgumentException("The limits must be positive and the initial limit must be between the minimum and maximum limit.");
+        if (maxQueueDepth < 0)
+            throw new IllegalArgumentException("The queue depth must not be negative.");
+        if (!(latencyTolerance >= 1))
+            throw new IllegalArgumentException("The latency tolerance must be at least one.");
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueueDepth = maxQueueDepth;
+        this.isAdaptive = isAdaptive;
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Creates a bulkhead with a constant limit.
+     * @param maxConcurrency The maximum amount of running actions.
+     * @param maxQueueDepth The maximum amount of waiting actions. If zero, actions exceeding the limit are rejected immediately.
+     * @return Returns the created bulkhead.
+     */
+    public static @NotNull Bulkhead fixed(int maxConcurrency, int maxQueueDepth) {
+        return new Bulkhead(maxConcurrency, maxConcurrency, maxConcurrency, maxQueueDepth, false, 1);
+    }
+
+    /**
+     * Creates a bulkhead, that adapts its limit by the observed latency.
+     * @param minLimit The minimum limit, that is also the initial limit.
+     * @param maxLimit The maximum limit.
+     * @param maxQueueDepth The maximum amount of waiting actions.
+     * @param latencyTolerance The multiple of the lowest observed latency, above which the limit is decreased, for example 2.
+     * @return Returns the created bulkhead.
+     */
+    public static @NotNull Bulkhead adaptive(int minLimit, int maxLimit, int maxQueueDepth, double latencyTolerance) {
+        return new Bulkhead(minLimit, minLimit, maxLimit, maxQueueDepth, true, latencyTolerance);
+    }
+
+    /**
+     * Starts the action, if the limit allows it, or enqueues it.
+     * Cancelling the returned future removes a waiting action from the queue or cancels the running action.
+     * @param action Starts the action and returns its future.
+     * @return Returns a future, that completes like the future of the action,
+     * or fails with a {@link RejectedExecutionException}, if the action was rejected.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull CompletableFuture<Type> execute(@NotNull Supplier<? extends CompletionStage<Type>> action) {
+        Objects.requireNonNull(action);
+        final var waiting = new Waiting<Type>(action);
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queue.isEmpty())
+                inFlight++;
+            else if (queue.size() < maxQueueDepth) {
+                queue.addLast(waiting);
+                waiting.result.whenComplete((value, error) -> {
+                    if (waiting.result.isCancelled())
+                        dequeue(waiting);
+                });
+                return waiting.result;
+            }
+            else {
+                rejectedCount.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException("The bulkhead is full."));
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+        final var pending = new ArrayDeque<Waiting<?>>();
+        pending.add(waiting);
+        start(pending);
+        return waiting.result;
+    }
+
+    /**
+     * Wraps the action, so every call of the returned supplier is executed by this bulkhead.
+     * @param action Starts the action and returns its future.
+     * @return Returns the wrapped action.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull Supplier<CompletableFuture<Type>> decorate(@NotNull Supplier<? extends CompletionStage<Type>> action) {
+        Objects.requireNonNull(action);
+        return () -> execute(action);
+    }
+
+    /**
+     * Returns the amount of running actions.
+     * @return Returns the amount.
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of waiting actions.
+     * @return Returns the amount.
+     */
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit of running actions.
+     * @return Returns the limit.
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the amount of rejected actions since the creation of this bulkhead.
+     * @return Returns the amount.
+     */
+    public long rejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    private void dequeue(@NotNull Waiting<?> waiting) {
+        lock.lock();
+        try {
+            queue.remove(waiting);
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts the actions, after permits were acquired for them. Actions, that complete synchronously,
+     * pass their permit to the next waiting action in this loop instead of a nested call.
+     */
+    private void start(@NotNull ArrayDeque<Waiting<?>> pending) {
+        Waiting<?> waiting;
+        while ((waiting = pending.pollFirst()) != null)
+            startOne(waiting, pending);
+    }
+
+    private <Type> void startOne(@NotNull Waiting<Type> waiting, @NotNull ArrayDeque<Waiting<?>> pending) {
+        if (waiting.result.isDone()) {
+            release(0, null, false, pending);
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        CompletableFuture<Type> attempt;
+        try {
+            attempt = Objects.requireNonNull(waiting.action.get(), "The action returned null.").toCompletableFuture();
+        }
+        catch (Throwable e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        final var running = attempt;
+        if (running.isDone()) {
+            release(System.nanoTime() - startNanos, exceptionNow(running), true, pending);
+            complete(waiting.result, running);
+            return;
+        }
+        waiting.result.whenComplete((value, error) -> {
+            if (waiting.result.isCancelled())
+                running.cancel(true);
+        });
+        running.whenComplete((value, error) -> {
+            final var next = new ArrayDeque<Waiting<?>>();
+            release(System.nanoTime() - startNanos, error, true, next);
+            complete(waiting.result, running);
+            start(next);
+        });
+    }
+
+    private static <Type> void complete(@NotNull CompletableFuture<Type> result, @NotNull CompletableFuture<Type> completed) {
+        final var error = exceptionNow(completed);
+        if (error == null)
+            result.complete(completed.join());
+        else
+            result.completeExceptionally(error);
+    }
+
+    private static Throwable exceptionNow(@NotNull CompletableFuture<?> completed) {
+        if (!completed.isCompletedExceptionally())
+            return null;
+        try {
+            completed.join();
+            return null;
+        }
+        catch (CompletionException e) {
+            return e.getCause() != null ? e.getCause() : e;
+        }
+        catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    /**
+     * Releases the permit of a completed action and adds the waiting actions, that may run now, to the pending actions.
+     */
+    private void release(long latencyNanos, Throwable error, boolean isMeasured, @NotNull ArrayDeque<Waiting<?>> pending) {
+        lock.lock();
+        try {
+            if (isAdaptive && isMeasured)
+                adapt(latencyNanos, error);
+            inFlight--;
+            // A grown limit may allow more than one waiting action to start.
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                pending.addLast(queue.pollFirst());
+                inFlight++;
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Increases the limit additively or decreases it multiplicatively. Must be called while the lock is held.
+     */
+    private void adapt(long latencyNanos, Throwable error) {
+        final var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TimeoutException) {
+            limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+            return;
+        }
+        if (cause != null)
+            return;
+        // The lowest latency slowly drifts upwards, so a lasting slowdown of the dependency becomes the new baseline.
+        minLatencyNanos = Math.min(latencyNanos, minLatencyNanos == Long.MAX_VALUE ? latencyNanos : minLatencyNanos + (minLatencyNanos >> 6));
+        if (latencyNanos > minLatencyNanos * latencyTolerance)
+            limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+        // Only grow, if the current limit is used, otherwise the limit grows without evidence, that it is safe.
+        else if (inFlight * 2 >= limit)
+            limit = Math.min(maxLimit, limit + 1 / limit);
+    }
+
+    private static final class Waiting<Type> {
+        private final @NotNull Supplier<? extends CompletionStage<Type>> action;
+        private final @NotNull CompletableFuture<Type> result = new CompletableFuture<>();
+
+        private Waiting(@NotNull Supplier<? extends CompletionStage<Type>> action) {
+            this.action = action;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package frechsack.prod.util.concurrent;
+
+import java.io.Serial;
+
+/**
+ * Thrown by a {@link CircuitBreaker}, that does not permit a call, because it is open.
+ */
+public class CallNotPermittedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public CallNotPermittedException(String message) {
+        // The stack trace of a rejected call does not help finding the failing dependency and is expensive to fill during an outage.
+        super(message, null, false, false);
+    }
+}
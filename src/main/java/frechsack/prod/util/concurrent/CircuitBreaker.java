@@ -0,0 +1,523 @@
+package frechsack.prod.util.concurrent;
+
+import frechsack.prod.util.Try;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Stops calling a failing dependency, so callers fail fast instead of waiting for timeouts and piling up retries.
+ * <p>
+ * A closed breaker permits every call and records the outcomes in a sliding window. If the failure rate of the window reaches the threshold,
+ * the breaker opens and rejects every call with a {@link CallNotPermittedException}. After the open duration, the breaker is half-open
+ * and permits a limited amount of probing calls. If every probe succeeds, the breaker closes, if a probe fails, it opens again.
+ * Probes, that did not complete within the probe timeout, are abandoned and new probes are permitted, so a hung probe can not keep the breaker half-open.
+ * <p>
+ * The window either contains the latest calls ({@link #countBased(int, double, Duration)}) or the calls of the latest duration
+ * ({@link #timeBased(Duration, double, Duration)}). Windows and states are updated lock-free.
+ * <p>
+ * Breakers are configured by the {@code with} methods, which return a new breaker in closed state. A breaker should be configured once and then be shared.
+ */
+public final class CircuitBreaker {
+
+    /**
+     * The states of a {@link CircuitBreaker}.
+     */
+    public enum State {
+        /**
+         * Every call is permitted and recorded.
+         */
+        CLOSED,
+        /**
+         * Every call is rejected.
+         */
+        OPEN,
+        /**
+         * A limited amount of probing calls is permitted.
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * The state of a breaker. Replaced as a whole, so the state and its counters change atomically.
+     * A permitted call remembers the phase, that permitted it, so its outcome is ignored, if the state changed in the meantime.
+     * @param state The state.
+     * @param generation Incremented by every change of the state.
+     * @param sinceNanos The time, at which the breaker opened or became half-open.
+     * @param remainingProbes The amount of probes, that may still be started while half-open.
+     * @param successfulProbes The amount of probes, that succeeded while half-open.
+     */
+    private record Phase(@NotNull State state, long generation, long sinceNanos, int remainingProbes, int successfulProbes) {
+
+        private @NotNull Phase next(@NotNull State state, long sinceNanos, int remainingProbes) {
+            return new Phase(state, generation + 1, sinceNanos, remainingProbes, 0);
+        }
+
+        private boolean isSameState(@NotNull Phase other) {
+            return state == other.state && generation == other.generation;
+        }
+    }
+
+    private static final long DEFAULT_PROBE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final @NotNull Supplier<Window> windowFactory;
+    private final double failureRateThreshold;
+    private final long openDurationNanos;
+    private final int minimumCalls;
+    private final int probes;
+    private final long probeTimeoutNanos;
+    private final @NotNull Predicate<? super Throwable> recordOn;
+    /**
+     * The window of the current closed state. Replaced, when the breaker closes, so calls of a previous closed state are forgotten.
+     */
+    private volatile @NotNull Window window;
+    private final @NotNull AtomicReference<Phase> phase = new AtomicReference<>(new Phase(State.CLOSED, 0, 0, 0, 0));
+
+    private CircuitBreaker(@NotNull Supplier<Window> windowFactory, double failureRateThreshold, long openDurationNanos,
+                           int minimumCalls, int probes, long probeTimeoutNanos, @NotNull Predicate<? super Throwable> recordOn) {
+        if (!(failureRateThreshold > 0 && failureRateThreshold <= 1))
+            throw new IllegalArgumentException("The failure rate threshold must be greater than zero and at most one.");
+        if (openDurationNanos < 0)
+            throw new IllegalArgumentException("The open duration must not be negative.");
+        if (minimumCalls < 1 || probes < 1)
+            throw new IllegalArgumentException("The minimum amount of calls and the amount of probes must be positive.");
+        if (probeTimeoutNanos <= 0)
+            throw new IllegalArgumentException("The probe timeout must be positive.");
+        this.windowFactory = windowFactory;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = openDurationNanos;
+        this.minimumCalls = minimumCalls;
+        this.probes = probes;
+        this.probeTimeoutNanos = probeTimeoutNanos;
+        this.recordOn = recordOn;
+        this.window = windowFactory.get();
+    }
+
+    /**
+     * Creates a breaker, that decides by the outcomes of the latest calls.
+     * @param windowSize The amount of latest calls in the window. The breaker only opens, after the window is filled.
+     * @param failureRateThreshold The share of failed calls, at which the breaker opens, for example 0.5.
+     * @param openDuration The duration, after which an open breaker becomes half-open.
+     * @return Returns the created breaker.
+     */
+    public static @NotNull CircuitBreaker countBased(int windowSize, double failureRateThreshold, @NotNull Duration openDuration) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("The window size must be positive.");
+        return new CircuitBreaker(() -> new CountWindow(windowSize), failureRateThreshold, openDuration.toNanos(), windowSize, 1, DEFAULT_PROBE_TIMEOUT_NANOS, error -> true);
+    }
+
+    /**
+     * Creates a breaker, that decides by the outcomes of the calls, that completed within the latest duration.
+     * The window is divided into ten buckets, the oldest bucket leaves the window as a whole.
+     * @param window The duration of the window.
+     * @param failureRateThreshold The share of failed calls, at which the breaker opens, for example 0.5.
+     * @param openDuration The duration, after which an open breaker becomes half-open.
+     * @return Returns the created breaker. It opens after ten calls at the earliest, use {@link #withMinimumCalls(int)} to change it.
+     */
+    public static @NotNull CircuitBreaker timeBased(@NotNull Duration window, double failureRateThreshold, @NotNull Duration openDuration) {
+        final long windowNanos = window.toNanos();
+        if (windowNanos < TimeWindow.BUCKETS)
+            throw new IllegalArgumentException("The window is too short.");
+        return new CircuitBreaker(() -> new TimeWindow(windowNanos), failureRateThreshold, openDuration.toNanos(), TimeWindow.BUCKETS, 1, DEFAULT_PROBE_TIMEOUT_NANOS, error -> true);
+    }
+
+    /**
+     * Returns a copy of this breaker, that only opens, after the window contains the amount of calls.
+     * @param minimumCalls The minimum amount of calls.
+     * @return Returns the modified breaker.
+     */
+    public @NotNull CircuitBreaker withMinimumCalls(int minimumCalls) {
+        return new CircuitBreaker(windowFactory, failureRateThreshold, openDurationNanos, minimumCalls, probes, probeTimeoutNanos, recordOn);
+    }
+
+    /**
+     * Returns a copy of this breaker, that permits the amount of probing calls while half-open. The breaker closes, after all of them succeeded.
+     * @param probes The amount of probes.
+     * @return Returns the modified breaker.
+     */
+    public @NotNull CircuitBreaker withProbes(int probes) {
+        return new CircuitBreaker(windowFactory, failureRateThreshold, openDurationNanos, minimumCalls, probes, probeTimeoutNanos, recordOn);
+    }
+
+    /**
+     * Returns a copy of this breaker, that abandons its probes, if they did not complete within the timeout after the breaker became half-open.
+     * The outcomes of abandoned probes are ignored and new probes are permitted. The default timeout is one minute.
+     * @param probeTimeout The timeout.
+     * @return Returns the modified breaker.
+     */
+    public @NotNull CircuitBreaker withProbeTimeout(@NotNull Duration probeTimeout) {
+        return new CircuitBreaker(windowFactory, failureRateThreshold, openDurationNanos, minimumCalls, probes, probeTimeout.toNanos(), recordOn);
+    }
+
+    /**
+     * Returns a copy of this breaker, that only records errors accepted by the predicate as failures. Other errors count as successful calls,
+     * for example errors caused by invalid arguments of the caller.
+     * The predicate receives the cause of a {@link CompletionException}.
+     * @param recordOn The predicate.
+     * @return Returns the modified breaker.
+     */
+    public @NotNull CircuitBreaker withRecordOn(@NotNull Predicate<? super Throwable> recordOn) {
+        return new CircuitBreaker(windowFactory, failureRateThreshold, openDurationNanos, minimumCalls, probes, probeTimeoutNanos, Objects.requireNonNull(recordOn));
+    }
+
+    /**
+     * Returns the current state. An open breaker, whose open duration passed, is reported as open, until a call is attempted.
+     * @return Returns the state.
+     */
+    public @NotNull State state() {
+        return phase.get().state;
+    }
+
+    /**
+     * Returns the share of failed calls in the current window.
+     * @return Returns the failure rate between zero and one, or zero if the window is empty.
+     */
+    public double failureRate() {
+        final long nowNanos = System.nanoTime();
+        final var current = window;
+        final int calls = current.callCount(nowNanos);
+        return calls == 0 ? 0 : (double) current.failureCount(nowNanos) / calls;
+    }
+
+    /**
+     * Calls the supplier, if this breaker permits it.
+     * @param supplier The supplier.
+     * @return Returns the value of the supplier.
+     * @throws CallNotPermittedException If the call was not permitted.
+     * @param <Type> The value type.
+     */
+    public <Type> Type get(@NotNull Supplier<Type> supplier) {
+        Objects.requireNonNull(supplier);
+        final var permit = acquire();
+        if (permit == null)
+            throw new CallNotPermittedException("The circuit breaker is open.");
+        final Type value;
+        try {
+            value = supplier.get();
+        }
+        catch (Throwable e) {
+            // Also records checked exceptions, that were thrown sneakily, so the permit is not lost.
+            onError(permit, e);
+            throw e;
+        }
+        record(permit, false);
+        return value;
+    }
+
+    /**
+     * Calls the callable, if this breaker permits it.
+     * @param callable The callable.
+     * @return Returns a Try with the value of the callable, with its error or with a {@link CallNotPermittedException}, if the call was not permitted.
+     * @param <Type> The value type.
+     */
+    public <Type> @NotNull Try<Type> call(@NotNull Callable<Type> callable) {
+        Objects.requireNonNull(callable);
+        final var permit = acquire();
+        if (permit == null)
+            return Try.error(new CallNotPermittedException("The circuit breaker is open."));
+        final Try<Type> result;
+        try {
+            result = Try.of(callable);
+        }
+        catch (Throwable e) {
+            // Errors are not caught by the Try, they are recorded and rethrown.
+            onError(permit, e);
+            throw e;
+        }
+        if (result.isPresent())
+            record(permit, false);
+        else
+            onError(permit, result.error());
+        return result;
+    }
+
+    /**
+     * Starts the asynchronous call, if this breaker permits it. The outcome is recorded, when the returned future of the call completes.
+     * @param supplier Starts the call.
+     * @return Returns the future of the call, or a future, that failed with a {@link CallNotPermittedException}, if the call was not permitted.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull CompletableFuture<Type> execute(@NotNull Supplier<? extends CompletionStage<Type>> supplier) {
+        Objects.requireNonNull(supplier);
+        final var permit = acquire();
+        if (permit == null)
+            return CompletableFuture.failedFuture(new CallNotPermittedException("The circuit breaker is open."));
+        final CompletableFuture<Type> future;
+        try {
+            future = Objects.requireNonNull(supplier.get(), "The supplier returned null.").toCompletableFuture();
+        }
+        catch (Throwable e) {
+            onError(permit, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete((value, error) -> {
+            if (error == null)
+                record(permit, false);
+            else
+                onError(permit, error);
+        });
+    }
+
+    /**
+     * Wraps the asynchronous call, so every call of the returned supplier is protected by this breaker.
+     * @param supplier Starts the call.
+     * @return Returns the wrapped call.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull Supplier<CompletableFuture<Type>> decorate(@NotNull Supplier<? extends CompletionStage<Type>> supplier) {
+        Objects.requireNonNull(supplier);
+        return () -> execute(supplier);
+    }
+
+    /**
+     * Checks if a call is permitted and reserves a probe, if this breaker is half-open.
+     * A caller, that was permitted, must report the outcome by {@link #onSuccess()} or {@link #onError(Throwable)}.
+     * These outcomes are not tied to their permission: While half-open, an outcome is only counted, if a probe is outstanding.
+     * A probe, whose outcome is never reported, is abandoned after the probe timeout.
+     * Prefer {@link #get(Supplier)}, {@link #call(Callable)} or {@link #execute(Supplier)}, which ignore outcomes of calls, that were permitted before the state changed.
+     * @return Returns true, if the call is permitted.
+     */
+    public boolean tryAcquirePermission() {
+        return acquire() != null;
+    }
+
+    /**
+     * Returns the phase, that permitted the call, or null if the call is not permitted.
+     */
+    private @Nullable Phase acquire() {
+        while (true) {
+            final var current = phase.get();
+            switch (current.state) {
+                case CLOSED:
+                    return current;
+                case OPEN: {
+                    final long nowNanos = System.nanoTime();
+                    if (nowNanos - current.sinceNanos < openDurationNanos)
+                        return null;
+                    // The first caller after the open duration takes the first probe.
+                    final var halfOpen = current.next(State.HALF_OPEN, nowNanos, probes - 1);
+                    if (phase.compareAndSet(current, halfOpen))
+                        return halfOpen;
+                    break;
+                }
+                case HALF_OPEN:
+                    if (current.remainingProbes == 0) {
+                        final long nowNanos = System.nanoTime();
+                        if (nowNanos - current.sinceNanos < probeTimeoutNanos)
+                            return null;
+                        // The probes did not complete in time. They are abandoned, their outcomes belong to a previous generation and are ignored.
+                        final var retried = current.next(State.HALF_OPEN, nowNanos, probes - 1);
+                        if (phase.compareAndSet(current, retried))
+                            return retried;
+                        break;
+                    }
+                    final var probing = new Phase(State.HALF_OPEN, current.generation, current.sinceNanos, current.remainingProbes - 1, current.successfulProbes);
+                    if (phase.compareAndSet(current, probing))
+                        return probing;
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Records a successful call.
+     */
+    public void onSuccess() {
+        record(null, false);
+    }
+
+    /**
+     * Records a failed call. Errors, that are not accepted by the predicate of this breaker, are recorded as success.
+     * A {@link CallNotPermittedException} is not recorded at all, because the call was never made.
+     * @param error The error.
+     */
+    public void onError(@NotNull Throwable error) {
+        onError(null, error);
+    }
+
+    private void onError(@Nullable Phase permit, @NotNull Throwable error) {
+        final var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof CallNotPermittedException)
+            return;
+        record(permit, recordOn.test(cause));
+    }
+
+    /**
+     * Records the outcome of a call.
+     * @param permit The phase, that permitted the call, or null if it is unknown.
+     */
+    private void record(@Nullable Phase permit, boolean isFailure) {
+        final long nowNanos = System.nanoTime();
+        while (true) {
+            final var current = phase.get();
+            // Calls, that were permitted in a previous state, do not change the current state.
+            if (permit != null && !permit.isSameState(current))
+                return;
+            switch (current.state) {
+                case CLOSED -> {
+                    final var closedWindow = window;
+                    closedWindow.record(isFailure, nowNanos);
+                    if (!isFailure)
+                        return;
+                    final int calls = closedWindow.callCount(nowNanos);
+                    if (calls >= minimumCalls && closedWindow.failureCount(nowNanos) >= failureRateThreshold * calls)
+                        phase.compareAndSet(current, current.next(State.OPEN, nowNanos, 0));
+                    return;
+                }
+                case OPEN -> {
+                    return;
+                }
+                case HALF_OPEN -> {
+                    // Without a permit, only outcomes of outstanding probes are counted.
+                    if (permit == null && probes - current.remainingProbes - current.successfulProbes <= 0)
+                        return;
+                    final Phase next;
+                    if (isFailure)
+                        next = current.next(State.OPEN, nowNanos, 0);
+                    else if (current.successfulProbes + 1 == probes) {
+                        // The window is replaced before the breaker closes, so no call is recorded into the window of the previous closed state.
+                        window = windowFactory.get();
+                        next = current.next(State.CLOSED, 0, 0);
+                    }
+                    else
+                        next = new Phase(State.HALF_OPEN, current.generation, current.sinceNanos, current.remainingProbes, current.successfulProbes + 1);
+                    if (phase.compareAndSet(current, next))
+                        return;
+                }
+            }
+        }
+    }
+
+    /**
+     * The sliding window of recorded calls. Counts may be briefly inconsistent with each other while calls are recorded concurrently.
+     */
+    private interface Window {
+        void record(boolean isFailure, long nowNanos);
+
+        int callCount(long nowNanos);
+
+        int failureCount(long nowNanos);
+    }
+
+    /**
+     * A ring buffer of the outcomes of the latest calls. Counters are updated by the difference between the replaced and the new outcome.
+     */
+    private static final class CountWindow implements Window {
+        private static final int NONE = 0;
+        private static final int SUCCESS = 1;
+        private static final int FAILURE = 2;
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong index = new AtomicLong();
+        private final AtomicLong counts = new AtomicLong();
+
+        private CountWindow(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        @Override
+        public void record(boolean isFailure, long nowNanos) {
+            final int slot = (int) (index.getAndIncrement() % outcomes.length());
+            final int outcome = isFailure ? FAILURE : SUCCESS;
+            final int replaced = outcomes.getAndSet(slot, outcome);
+            // The call count is stored in the upper, the failure count in the lower half, so both change in a single update.
+            long delta = 0;
+            if (replaced == NONE)
+                delta += 1L << 32;
+            if (replaced == FAILURE)
+                delta -= 1;
+            if (outcome == FAILURE)
+                delta += 1;
+            if (delta != 0)
+                counts.addAndGet(delta);
+        }
+
+        @Override
+        public int callCount(long nowNanos) {
+            return (int) (counts.get() >>> 32);
+        }
+
+        @Override
+        public int failureCount(long nowNanos) {
+            return (int) counts.get();
+        }
+    }
+
+    /**
+     * Counts the calls in buckets of a tenth of the window. A bucket is replaced, when its epoch left the window.
+     */
+    private static final class TimeWindow implements Window {
+        private static final int BUCKETS = 10;
+
+        private record Bucket(long epoch, int calls, int failures) {}
+
+        private final long bucketNanos;
+        private final AtomicReferenceArray<Bucket> buckets = new AtomicReferenceArray<>(BUCKETS);
+
+        private TimeWindow(long windowNanos) {
+            this.bucketNanos = windowNanos / BUCKETS;
+            final var empty = new Bucket(Long.MIN_VALUE / 2, 0, 0);
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, empty);
+        }
+
+        private long epoch(long nowNanos) {
+            return Math.floorDiv(nowNanos, bucketNanos);
+        }
+
+        @Override
+        public void record(boolean isFailure, long nowNanos) {
+            final long epoch = epoch(nowNanos);
+            final int slot = Math.floorMod(epoch, BUCKETS);
+            while (true) {
+                final var current = buckets.get(slot);
+                final Bucket next;
+                if (current.epoch == epoch)
+                    next = new Bucket(epoch, current.calls + 1, current.failures + (isFailure ? 1 : 0));
+                else if (current.epoch < epoch)
+                    next = new Bucket(epoch, 1, isFailure ? 1 : 0);
+                else
+                    return;
+                if (buckets.compareAndSet(slot, current, next))
+                    return;
+            }
+        }
+
+        @Override
+        public int callCount(long nowNanos) {
+            final long epoch = epoch(nowNanos);
+            int calls = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                final var bucket = buckets.get(i);
+                if (epoch - bucket.epoch < BUCKETS)
+                    calls += bucket.calls;
+            }
+            return calls;
+        }
+
+        @Override
+        public int failureCount(long nowNanos) {
+            final long epoch = epoch(nowNanos);
+            int failures = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                final var bucket = buckets.get(i);
+                if (epoch - bucket.epoch < BUCKETS)
+                    failures += bucket.failures;
+            }
+            return failures;
+        }
+    }
+}
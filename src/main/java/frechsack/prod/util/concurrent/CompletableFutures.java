@@ -1,9 +1,21 @@
 package frechsack.prod.util.concurrent;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -14,50 +26,447 @@ public class CompletableFutures {
     private CompletableFutures() {}
 
 
-    private static <Type> @NotNull CompletableFuture<Type> retry(
+    /**
+     * Calls the supplier and retries immediately, if the returned future fails with an error accepted by the predicate.
+     * Retries are started by the thread, that completed the failed future.
+     * @param supplier Starts a single attempt.
+     * @param tryNext Decides if an error is retried. Receives the cause of a {@link java.util.concurrent.CompletionException}.
+     * @param retryCountMax The maximum amount of retries.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> retry(
             @NotNull Supplier<CompletableFuture<Type>> supplier,
             @NotNull Predicate<@NotNull Throwable> tryNext,
-            int retryCount,
             int retryCountMax
     ) {
-        return supplier.get()
-            .exceptionallyCompose(error -> {
-                if (!tryNext.test(error) || retryCount >= retryCountMax)
-                    return CompletableFuture.failedFuture(error);
-                return retry(supplier, tryNext, retryCount + 1, retryCountMax);
-            });
+        return retryAsync(supplier, tryNext, retryCountMax, Runnable::run);
     }
 
-    public static <Type> @NotNull CompletableFuture<Type> retry(
+    /**
+     * Calls the supplier and retries immediately on the executor, if the returned future fails with an error accepted by the predicate.
+     * @param supplier Starts a single attempt.
+     * @param tryNext Decides if an error is retried. Receives the cause of a {@link java.util.concurrent.CompletionException}.
+     * @param retryCountMax The maximum amount of retries.
+     * @param executor The executor, that starts the retries.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> retryAsync(
             @NotNull Supplier<CompletableFuture<Type>> supplier,
             @NotNull Predicate<@NotNull Throwable> tryNext,
-            int retryCountMax
+            int retryCountMax,
+            @NotNull Executor executor
     ) {
-        return retry(supplier, tryNext, 0, retryCountMax);
+        return RetryPolicy.immediate(retryCountMax)
+                .withRetryOn(tryNext)
+                .withExecutor(executor)
+                .execute(supplier);
     }
 
-    private static <Type> @NotNull CompletableFuture<Type> retryAsync(
-        @NotNull Supplier<CompletableFuture<Type>> supplier,
-        @NotNull Predicate<@NotNull Throwable> tryNext,
-        int retryCount,
-        int retryCountMax,
-        @NotNull Executor executor
+    /**
+     * Calls the supplier and retries it as described by the policy.
+     * @param supplier Starts a single attempt.
+     * @param policy The retry policy.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> retry(
+            @NotNull Supplier<CompletableFuture<Type>> supplier,
+            @NotNull RetryPolicy policy
     ) {
-        return supplier.get()
-            .exceptionallyComposeAsync(error -> {
-                if (!tryNext.test(error) || retryCount >= retryCountMax)
-                    return CompletableFuture.failedFuture(error);
-                return retryAsync(supplier, tryNext, retryCount + 1, retryCountMax, executor);
-            }, executor);
+        return policy.execute(supplier);
     }
 
-    public static <Type> @NotNull CompletableFuture<Type> retryAsync(
-            @NotNull Supplier<CompletableFuture<Type>> supplier,
-            @NotNull Predicate<@NotNull Throwable> tryNext,
-            int retryCountMax,
+    /**
+     * Returns a future of the results of every future, in the order of the futures.
+     * The returned future fails with the first error, without waiting for the other futures. The futures are not cancelled.
+     * @param futures The futures.
+     * @return Returns the future of the results.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<List<Type>> allOf(@NotNull List<? extends CompletionStage<? extends Type>> futures) {
+        final int size = futures.size();
+        if (size == 0)
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        final var result = new CompletableFuture<List<Type>>();
+        final var values = new Object[size];
+        final var remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i++) {
+            final int index = i;
+            futures.get(i).whenComplete((value, error) -> {
+                if (error != null)
+                    result.completeExceptionally(unwrap(error));
+                else {
+                    values[index] = value;
+                    // The decrement publishes the value to the thread, that observes zero.
+                    if (remaining.decrementAndGet() == 0)
+                        result.complete(toList(values));
+                }
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Returns a future of the first completed future, regardless if it completed successfully or exceptionally.
+     * @param futures The futures.
+     * @return Returns the future of the first result. Fails with an {@link IllegalArgumentException}, if no future is given.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> anyOf(@NotNull List<? extends CompletionStage<? extends Type>> futures) {
+        if (futures.isEmpty())
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No future was given."));
+        final var result = new CompletableFuture<Type>();
+        for (var future : futures)
+            future.whenComplete((value, error) -> {
+                if (error != null)
+                    result.completeExceptionally(unwrap(error));
+                else
+                    result.complete(value);
+            });
+        return result;
+    }
+
+    /**
+     * Returns a future of the first successful future. Failed futures are ignored, unless every future fails.
+     * @param futures The futures.
+     * @return Returns the future of the first successful result. If every future fails, it fails with the last error and the other errors suppressed.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> anySuccessful(@NotNull List<? extends CompletionStage<? extends Type>> futures) {
+        return firstN(futures, 1).thenApply(values -> values.get(0));
+    }
+
+    /**
+     * Returns a future of the first successful results, in the order of their completion.
+     * The returned future completes as soon as the amount of successful results is reached, the remaining futures are not awaited.
+     * @param futures The futures.
+     * @param count The amount of successful results.
+     * @return Returns the future of the results. Fails, if so many futures failed, that the amount of successful results can not be reached.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<List<Type>> firstN(@NotNull List<? extends CompletionStage<? extends Type>> futures, int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The amount of results must not be negative.");
+        if (count == 0)
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        if (count > futures.size())
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Less than " + count + " futures were given."));
+        final var result = new CompletableFuture<List<Type>>();
+        final var state = new FirstN(count, futures.size() - count);
+        for (var future : futures)
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    final var values = state.addValue(value);
+                    if (values != null)
+                        result.complete(toList(values));
+                }
+                else {
+                    final var failure = state.addError(unwrap(error));
+                    if (failure != null)
+                        result.completeExceptionally(failure);
+                }
+            });
+        return result;
+    }
+
+    /**
+     * Applies the mapper to each element and limits the amount of futures, that are running at the same time.
+     * The next element is mapped, when a running future completes. After the first error, no further elements are mapped.
+     * @param elements The elements.
+     * @param mapper Starts the asynchronous computation of an element.
+     * @param parallelism The maximum amount of running futures.
+     * @return Returns a future of the results, in the order of the elements.
+     * @param <InputType> The element type.
+     * @param <OutputType> The result type.
+     */
+    public static <InputType, OutputType> @NotNull CompletableFuture<List<OutputType>> mapParallel(
+            @NotNull Collection<? extends InputType> elements,
+            @NotNull Function<? super InputType, ? extends CompletionStage<? extends OutputType>> mapper,
+            int parallelism
+    ) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("The parallelism must be positive.");
+        Objects.requireNonNull(mapper);
+        final var mapping = new ParallelMapping<InputType, OutputType>(new ArrayList<>(elements), mapper);
+        if (mapping.size == 0)
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        for (int i = 0; i < Math.min(parallelism, mapping.size); i++)
+            mapping.run();
+        return mapping.result;
+    }
+
+    /**
+     * Calls the supplier and calls it again, if the previous attempts did not complete within the delay.
+     * The first successful attempt completes the returned future and cancels the other attempts.
+     * A failed attempt starts the next attempt immediately.
+     * @param supplier Starts a single attempt.
+     * @param delay The delay, after which another attempt is started.
+     * @param maxHedges The maximum amount of additional attempts.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> hedged(
+            @NotNull Supplier<? extends CompletionStage<Type>> supplier,
+            @NotNull Duration delay,
+            int maxHedges
+    ) {
+        Objects.requireNonNull(delay);
+        return hedged(supplier, () -> delay, maxHedges);
+    }
+
+    /**
+     * Calls the supplier and calls it again on {@link AsyncExecutors#defaultExecutor()}, if the previous attempts did not complete within the delay.
+     * The delay is queried for each additional attempt, so it can follow a latency percentile of the called service, like the 95th percentile.
+     * The first successful attempt completes the returned future and cancels the other attempts.
+     * A failed attempt starts the next attempt immediately.
+     * @param supplier Starts a single attempt.
+     * @param delay Returns the delay, after which another attempt is started.
+     * @param maxHedges The maximum amount of additional attempts.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> hedged(
+            @NotNull Supplier<? extends CompletionStage<Type>> supplier,
+            @NotNull Supplier<@NotNull Duration> delay,
+            int maxHedges
+    ) {
+        return hedged(supplier, delay, maxHedges, AsyncExecutors::execute);
+    }
+
+    /**
+     * Calls the supplier and calls it again on the executor, if the previous attempts did not complete within the delay.
+     * The delay is queried for each additional attempt, so it can follow a latency percentile of the called service, like the 95th percentile.
+     * The first successful attempt completes the returned future and cancels the other attempts.
+     * A failed attempt starts the next attempt immediately.
+     * @param supplier Starts a single attempt.
+     * @param delay Returns the delay, after which another attempt is started.
+     * @param maxHedges The maximum amount of additional attempts.
+     * @param executor The executor, that starts the delayed attempts.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> hedged(
+            @NotNull Supplier<? extends CompletionStage<Type>> supplier,
+            @NotNull Supplier<@NotNull Duration> delay,
+            int maxHedges,
             @NotNull Executor executor
     ) {
-        return retryAsync(supplier, tryNext, 0, retryCountMax, executor);
+        if (maxHedges < 0)
+            throw new IllegalArgumentException("The amount of hedges must not be negative.");
+        final var hedging = new Hedging<Type>(Objects.requireNonNull(supplier), Objects.requireNonNull(delay), maxHedges, Objects.requireNonNull(executor));
+        hedging.attempt();
+        return hedging.result;
+    }
+
+    /**
+     * Maps the elements of {@link #mapParallel(Collection, Function, int)}. Each call of {@link #run()} occupies one slot of the parallelism.
+     */
+    private static final class ParallelMapping<InputType, OutputType> {
+        private final @NotNull List<? extends InputType> elements;
+        private final @NotNull Function<? super InputType, ? extends CompletionStage<? extends OutputType>> mapper;
+        private final int size;
+        private final @NotNull Object @NotNull [] values;
+        private final @NotNull AtomicInteger nextIndex = new AtomicInteger();
+        private final @NotNull AtomicInteger remaining;
+        private final @NotNull CompletableFuture<List<OutputType>> result = new CompletableFuture<>();
+
+        private ParallelMapping(@NotNull List<? extends InputType> elements,
+                                @NotNull Function<? super InputType, ? extends CompletionStage<? extends OutputType>> mapper) {
+            this.elements = elements;
+            this.mapper = mapper;
+            this.size = elements.size();
+            this.values = new Object[size];
+            this.remaining = new AtomicInteger(size);
+        }
+
+        /**
+         * Maps the next elements, until a future does not complete synchronously. Synchronous futures are handled in this loop,
+         * so long runs of them do not grow the stack.
+         */
+        private void run() {
+            while (!result.isDone()) {
+                final int index = nextIndex.getAndIncrement();
+                if (index >= size)
+                    return;
+                final CompletableFuture<? extends OutputType> future;
+                try {
+                    future = Objects.requireNonNull(mapper.apply(elements.get(index)), "The mapper returned null.").toCompletableFuture();
+                }
+                catch (Throwable e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                if (!future.isDone()) {
+                    future.whenComplete((value, error) -> {
+                        if (accept(index, value, error))
+                            run();
+                    });
+                    return;
+                }
+                try {
+                    if (!accept(index, future.join(), null))
+                        return;
+                }
+                catch (RuntimeException e) {
+                    accept(index, null, e);
+                    return;
+                }
+            }
+        }
+
+        private boolean accept(int index, OutputType value, @Nullable Throwable error) {
+            if (error != null) {
+                result.completeExceptionally(unwrap(error));
+                return false;
+            }
+            values[index] = value;
+            if (remaining.decrementAndGet() == 0)
+                result.complete(toList(values));
+            return true;
+        }
+    }
+
+    /**
+     * Starts the attempts of {@link #hedged(Supplier, Supplier, int)}.
+     */
+    private static final class Hedging<Type> {
+        private final @NotNull Supplier<? extends CompletionStage<Type>> supplier;
+        private final @NotNull Supplier<@NotNull Duration> delay;
+        private final int maxAttempts;
+        private final @NotNull Executor executor;
+        private final @NotNull CompletableFuture<Type> result = new CompletableFuture<>();
+        // Guarded by this.
+        private final @NotNull List<CompletableFuture<Type>> attempts = new ArrayList<>();
+        private int startedCount;
+        private int failedCount;
+
+        private Hedging(@NotNull Supplier<? extends CompletionStage<Type>> supplier, @NotNull Supplier<@NotNull Duration> delay, int maxHedges, @NotNull Executor executor) {
+            this.supplier = supplier;
+            this.executor = executor;
+            this.delay = delay;
+            this.maxAttempts = maxHedges + 1;
+            result.whenComplete((value, error) -> {
+                final List<CompletableFuture<Type>> running;
+                synchronized (this) {
+                    running = new ArrayList<>(attempts);
+                }
+                running.forEach(attempt -> attempt.cancel(true));
+            });
+        }
+
+        private void attempt() {
+            final boolean hasNext;
+            synchronized (this) {
+                if (result.isDone() || startedCount == maxAttempts)
+                    return;
+                hasNext = ++startedCount < maxAttempts;
+            }
+            CompletableFuture<Type> started;
+            try {
+                started = Objects.requireNonNull(supplier.get(), "The supplier returned null.").toCompletableFuture();
+            }
+            catch (Throwable e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+            final var attempt = started;
+            synchronized (this) {
+                attempts.add(attempt);
+            }
+            // The result may be completed, before the attempt became visible to the cancellation.
+            if (result.isDone())
+                attempt.cancel(true);
+            else if (hasNext && !attempt.isDone())
+                HashedWheelTimer.shared().delayedExecutor(delay.get().toNanos(), TimeUnit.NANOSECONDS, executor).execute(this::attempt);
+
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                    return;
+                }
+                final boolean isLast;
+                synchronized (this) {
+                    isLast = ++failedCount == maxAttempts;
+                }
+                if (isLast)
+                    result.completeExceptionally(unwrap(error));
+                else
+                    attempt();
+            });
+        }
+    }
+
+    /**
+     * Collects the results of {@link #firstN(List, int)}. The futures complete on different threads, the state is guarded by this object.
+     */
+    private static final class FirstN {
+        private final @NotNull Object @NotNull [] values;
+        private final @NotNull List<Throwable> errors = new ArrayList<>();
+        private final int tolerableErrorCount;
+        private int valueCount;
+        private boolean isDone;
+
+        private FirstN(int count, int tolerableErrorCount) {
+            this.values = new Object[count];
+            this.tolerableErrorCount = tolerableErrorCount;
+        }
+
+        /**
+         * Returns the values, if the value completed them.
+         */
+        private synchronized Object @Nullable [] addValue(Object value) {
+            if (isDone)
+                return null;
+            values[valueCount++] = value;
+            isDone = valueCount == values.length;
+            return isDone ? values : null;
+        }
+
+        /**
+         * Returns the error, that fails the result, if too many errors were added.
+         */
+        private synchronized @Nullable Throwable addError(@NotNull Throwable error) {
+            if (isDone)
+                return null;
+            errors.add(error);
+            if (errors.size() <= tolerableErrorCount)
+                return null;
+            isDone = true;
+            errors.stream().filter(it -> it != error).forEach(error::addSuppressed);
+            return error;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Type> @NotNull List<Type> toList(@NotNull Object @NotNull [] values) {
+        return new ArrayList<>((List<Type>) Arrays.asList(values));
+    }
+
+    private static @NotNull Throwable unwrap(@NotNull Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Completes the future exceptionally with a {@link TimeoutException}, if it is not completed within the timeout.
+     * Unlike {@link CompletableFuture#orTimeout(long, TimeUnit)}, the timeout is scheduled on the {@link HashedWheelTimer#shared() shared timing wheel}
+     * and removed, when the future completes, so many short-lived timeouts stay cheap. The timeout may expire up to one tick late.
+     * Dependent stages of a timed out future run on {@link AsyncExecutors#defaultExecutor()}.
+     * @param future The future.
+     * @param timeout The timeout.
+     * @param unit The unit of the timeout.
+     * @return Returns the given future.
+     * @param <Type> The result type.
+     */
+    public static <Type> @NotNull CompletableFuture<Type> orTimeout(@NotNull CompletableFuture<Type> future, long timeout, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(future);
+        if (future.isDone())
+            return future;
+        final var scheduled = HashedWheelTimer.shared().schedule(
+                () -> AsyncExecutors.execute(() -> future.completeExceptionally(new TimeoutException())),
+                timeout, unit);
+        future.whenComplete((value, error) -> scheduled.cancel());
+        return future;
     }
 
     public static <Type> Function<Type, Type> peek(@NotNull Consumer<? super Type> consumer) {
@@ -0,0 +1,96 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * A latch like {@link CountDownLatch}, whose count can be increased.
+ * Callers of {@link #await()} wait until the count is zero. After reaching zero, the latch can be reused by counting up again.
+ */
+public final class CountUpDownLatch {
+
+    private static class Sync extends AbstractQueuedSynchronizer {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        Sync(int count) {
+            setState(count);
+        }
+        int count() {
+            return getState();
+        }
+        void countUp(int amount) {
+            while (true) {
+                final int count = getState();
+                if (count + amount < 0)
+                    throw new IllegalStateException("The count overflows.");
+                if (compareAndSetState(count, count + amount))
+                    return;
+            }
+        }
+        protected int tryAcquireShared(int ignore) {
+            return getState() == 0 ? 1 : -1;
+        }
+        protected boolean tryReleaseShared(int ignore) {
+            while (true) {
+                final int count = getState();
+                if (count == 0)
+                    throw new IllegalStateException("The count is already zero.");
+                if (compareAndSetState(count, count - 1))
+                    return count == 1;
+            }
+        }
+    }
+    private final Sync sync;
+
+    public CountUpDownLatch() {
+        this(0);
+    }
+
+    public CountUpDownLatch(int count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The count must not be negative.");
+        this.sync = new Sync(count);
+    }
+
+    public int getCount() {
+        return sync.count();
+    }
+
+    public void countUp() {
+        sync.countUp(1);
+    }
+
+    public void countUp(int amount) {
+        if (amount < 0)
+            throw new IllegalArgumentException("The amount must not be negative.");
+        sync.countUp(amount);
+    }
+
+    /**
+     * Decrements the count. If the count reaches zero, every waiting caller is released.
+     * @throws IllegalStateException If the count is already zero.
+     */
+    public void countDown() {
+        sync.releaseShared(1);
+    }
+
+    public void await() throws InterruptedException {
+        sync.acquireSharedInterruptibly(1);
+    }
+
+    /**
+     * Waits until the count is zero or the timeout elapsed.
+     * @param timeout The maximum time to wait.
+     * @return Returns true if the count is zero, false if the timeout elapsed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public boolean await(@NotNull Duration timeout) throws InterruptedException {
+        return sync.tryAcquireSharedNanos(1, timeout.toNanos());
+    }
+}
@@ -0,0 +1,322 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for many short tasks, like timeouts and retry delays, that are usually cancelled before they expire.
+ * <p>
+ * The timer is a wheel of buckets, each bucket covers one tick. A task is added to the bucket of its deadline in constant time,
+ * a cancelled task is removed from its bucket in constant time. A single worker thread advances the wheel once per tick and runs the expired tasks.
+ * Tasks therefore run up to one tick late and must be short, longer work should be passed to an executor, for example by {@link #delayedExecutor(long, TimeUnit, Executor)}.
+ * <p>
+ * The worker thread is started with the first task and parks without ticking, while no task is pending.
+ */
+public final class HashedWheelTimer implements AutoCloseable {
+
+    private static final int STATE_CREATED = 0;
+    private static final int STATE_STARTED = 1;
+    private static final int STATE_CLOSED = 2;
+
+    private static final AtomicInteger TIMER_COUNT = new AtomicInteger();
+
+    private static final HashedWheelTimer SHARED = new HashedWheelTimer(Duration.ofMillis(1), 1024);
+
+    private final long tickNanos;
+    private final @NotNull Bucket @NotNull [] wheel;
+    private final int mask;
+    private final @NotNull Thread worker;
+    private final long startNanos;
+    private final @NotNull AtomicInteger state = new AtomicInteger(STATE_CREATED);
+    private final @NotNull AtomicLong pendingCount = new AtomicLong();
+    private final @NotNull Queue<Timeout> addedTimeouts = new ConcurrentLinkedQueue<>();
+    private final @NotNull Queue<Timeout> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private volatile boolean isIdle;
+    // Only accessed by the worker.
+    private long tick;
+
+    public HashedWheelTimer() {
+        this(Duration.ofMillis(10), 512);
+    }
+
+    public HashedWheelTimer(@NotNull Duration tickDuration, int ticksPerWheel) {
+        this(tickDuration, ticksPerWheel, Thread.ofPlatform().name("frechsack-timer-" + TIMER_COUNT.incrementAndGet()).daemon().factory());
+    }
+
+    /**
+     * Creates a new HashedWheelTimer.
+     * @param tickDuration The duration of a tick. Tasks expire with this precision.
+     * @param ticksPerWheel The amount of buckets. Rounded up to a power of two. Tasks, that expire later than a whole wheel, are passed over once per wheel.
+     * @param threadFactory Creates the worker thread.
+     */
+    public HashedWheelTimer(@NotNull Duration tickDuration, int ticksPerWheel, @NotNull ThreadFactory threadFactory) {
+        this.tickNanos = tickDuration.toNanos();
+        if (tickNanos <= 0)
+            throw new IllegalArgumentException("The tick duration must be positive.");
+        if (ticksPerWheel < 1 || ticksPerWheel > 1 << 30)
+            throw new IllegalArgumentException("The amount of ticks must be between one and 2^30.");
+        final int size = ticksPerWheel == 1 ? 1 : Integer.highestOneBit(ticksPerWheel - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++)
+            wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.worker = Objects.requireNonNull(threadFactory.newThread(this::work), "The thread factory returned null.");
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns the timer, that is shared by the helpers of this library. It ticks every millisecond and must not be closed.
+     * @return Returns the shared timer.
+     */
+    public static @NotNull HashedWheelTimer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules the task.
+     * @param task The task. Runs on the worker thread of this timer and must be short.
+     * @param delay The delay.
+     * @param unit The unit of the delay.
+     * @return Returns the timeout, that can cancel the task.
+     * @throws RejectedExecutionException If this timer was closed.
+     */
+    public @NotNull Timeout schedule(@NotNull Runnable task, long delay, @NotNull TimeUnit unit) {
+        Objects.requireNonNull(task);
+        start();
+        final long delayNanos = Math.max(0, unit.toNanos(delay));
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        // Saturated, so far deadlines do not overflow.
+        final long deadlineNanos = delayNanos > Long.MAX_VALUE - elapsedNanos ? Long.MAX_VALUE : elapsedNanos + delayNanos;
+        final var timeout = new Timeout(this, task, deadlineNanos);
+        pendingCount.incrementAndGet();
+        addedTimeouts.add(timeout);
+        if (isIdle)
+            LockSupport.unpark(worker);
+        return timeout;
+    }
+
+    /**
+     * Returns an executor, that passes each task to the given executor after the delay.
+     * Behaves like {@link java.util.concurrent.CompletableFuture#delayedExecutor(long, TimeUnit, Executor)}, but uses this timer.
+     * @param delay The delay.
+     * @param unit The unit of the delay.
+     * @param executor The executor, that runs the tasks.
+     * @return Returns the delayed executor.
+     */
+    public @NotNull Executor delayedExecutor(long delay, @NotNull TimeUnit unit, @NotNull Executor executor) {
+        Objects.requireNonNull(unit);
+        Objects.requireNonNull(executor);
+        return task -> {
+            Objects.requireNonNull(task);
+            schedule(() -> executor.execute(task), delay, unit);
+        };
+    }
+
+    /**
+     * Returns the duration of a tick, which is the precision of this timer.
+     * @return Returns the duration.
+     */
+    public @NotNull Duration tickDuration() {
+        return Duration.ofNanos(tickNanos);
+    }
+
+    /**
+     * Returns the amount of tasks, that are scheduled and neither expired nor cancelled.
+     * @return Returns the amount.
+     */
+    public long pendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stops the worker thread. Pending tasks are not run. The shared timer can not be closed.
+     */
+    @Override
+    public void close() {
+        if (this == SHARED)
+            throw new UnsupportedOperationException("The shared timer can not be closed.");
+        if (state.getAndSet(STATE_CLOSED) == STATE_STARTED)
+            LockSupport.unpark(worker);
+    }
+
+    private void start() {
+        final int current = state.get();
+        if (current == STATE_STARTED)
+            return;
+        if (current == STATE_CLOSED)
+            throw new RejectedExecutionException("The timer was closed.");
+        if (state.compareAndSet(STATE_CREATED, STATE_STARTED))
+            worker.start();
+        else if (state.get() == STATE_CLOSED)
+            throw new RejectedExecutionException("The timer was closed.");
+    }
+
+    private void work() {
+        while (state.get() != STATE_CLOSED) {
+            if (pendingCount.get() == 0) {
+                // The idle flag is set before the count is checked again, so a task added meanwhile either is seen or unparks the worker.
+                isIdle = true;
+                if (pendingCount.get() == 0 && state.get() != STATE_CLOSED)
+                    LockSupport.park(this);
+                isIdle = false;
+                // No bucket holds a task, so the wheel can skip the ticks, that passed while parked.
+                tick = Math.max(tick, (System.nanoTime() - startNanos) / tickNanos);
+                continue;
+            }
+            final long tickDeadlineNanos = tickNanos * (tick + 1);
+            final long sleepNanos = tickDeadlineNanos - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                continue;
+            }
+            removeCancelledTimeouts();
+            transferAddedTimeouts();
+            wheel[(int) (tick & mask)].expire(tickDeadlineNanos);
+            tick++;
+        }
+    }
+
+    private void removeCancelledTimeouts() {
+        Timeout timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null)
+            if (timeout.bucket != null)
+                timeout.bucket.remove(timeout);
+    }
+
+    private void transferAddedTimeouts() {
+        Timeout timeout;
+        // Limited per tick, so a flood of new tasks does not delay the expiration of the current bucket.
+        for (int i = 0; i < 100_000 && (timeout = addedTimeouts.poll()) != null; i++) {
+            if (timeout.state.get() != Timeout.STATE_PENDING)
+                continue;
+            final long deadlineTick = timeout.deadlineNanos / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+            // Tasks, that are already due, are added to the current bucket.
+            wheel[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void run(@NotNull Timeout timeout) {
+        try {
+            timeout.task.run();
+        }
+        catch (Throwable e) {
+            final var handler = worker.getUncaughtExceptionHandler();
+            if (handler != null)
+                handler.uncaughtException(worker, e);
+        }
+    }
+
+    /**
+     * A scheduled task, that can be cancelled.
+     */
+    public static final class Timeout {
+        private static final int STATE_PENDING = 0;
+        private static final int STATE_CANCELLED = 1;
+        private static final int STATE_EXPIRED = 2;
+
+        private final @NotNull HashedWheelTimer timer;
+        private final @NotNull Runnable task;
+        private final long deadlineNanos;
+        private final @NotNull AtomicInteger state = new AtomicInteger(STATE_PENDING);
+        // Only accessed by the worker.
+        private long remainingRounds;
+        private @Nullable Bucket bucket;
+        private @Nullable Timeout previous;
+        private @Nullable Timeout next;
+
+        private Timeout(@NotNull HashedWheelTimer timer, @NotNull Runnable task, long deadlineNanos) {
+            this.timer = timer;
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task, if it did not expire yet.
+         * @return Returns true, if the task was cancelled by this call.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED))
+                return false;
+            timer.pendingCount.decrementAndGet();
+            // The worker removes the task from its bucket, so the buckets are only modified by the worker.
+            timer.cancelledTimeouts.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == STATE_CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == STATE_EXPIRED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_EXPIRED))
+                return;
+            timer.pendingCount.decrementAndGet();
+            timer.run(this);
+        }
+    }
+
+    /**
+     * A doubly linked list of the tasks of a tick. Only accessed by the worker.
+     */
+    private static final class Bucket {
+        private @Nullable Timeout head;
+        private @Nullable Timeout tail;
+
+        private void add(@NotNull Timeout timeout) {
+            timeout.bucket = this;
+            if (tail == null)
+                head = tail = timeout;
+            else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void remove(@NotNull Timeout timeout) {
+            if (timeout.previous != null)
+                timeout.previous.next = timeout.next;
+            else
+                head = timeout.next;
+            if (timeout.next != null)
+                timeout.next.previous = timeout.previous;
+            else
+                tail = timeout.previous;
+            timeout.previous = timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expire(long tickDeadlineNanos) {
+            var timeout = head;
+            while (timeout != null) {
+                final var next = timeout.next;
+                if (timeout.state.get() != Timeout.STATE_PENDING)
+                    remove(timeout);
+                else if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadlineNanos) {
+                    remove(timeout);
+                    timeout.expire();
+                }
+                else
+                    timeout.remainingRounds--;
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.AbstractQueuedLongSynchronizer;
+
+/**
+ * A reusable barrier for a fixed amount of parties, similar to a {@link Phaser} without registration and tiering.
+ * Each phase is finished, when every party arrived. The barrier then advances to the next phase, without allocating.
+ */
+public final class PhaseBarrier {
+
+    private static class Sync extends AbstractQueuedLongSynchronizer {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // The upper 32 bits of the state hold the phase, the lower 32 bits the amount of parties, that did not arrive yet.
+
+        private final int parties;
+
+        Sync(int parties) {
+            this.parties = parties;
+            setState(parties);
+        }
+        int phase() {
+            return (int) (getState() >>> 32);
+        }
+        int unarrived() {
+            return (int) getState();
+        }
+        int arrive() {
+            while (true) {
+                final long state = getState();
+                final int phase = (int) (state >>> 32);
+                if ((int) state == 1) {
+                    if (compareAndSetState(state, ((long) (phase + 1) << 32) | parties)) {
+                        releaseShared(phase);
+                        return phase;
+                    }
+                }
+                else if (compareAndSetState(state, state - 1))
+                    return phase;
+            }
+        }
+        protected long tryAcquireShared(long phase) {
+            return phase() != (int) phase ? 1 : -1;
+        }
+        protected boolean tryReleaseShared(long ignore) {
+            return true;
+        }
+    }
+    private final Sync sync;
+
+    public PhaseBarrier(int parties) {
+        if (parties <= 0)
+            throw new IllegalArgumentException("The amount of parties must be positive.");
+        this.sync = new Sync(parties);
+    }
+
+    public int getParties() {
+        return sync.parties;
+    }
+
+    public int getPhase() {
+        return sync.phase();
+    }
+
+    public int getUnarrivedParties() {
+        return sync.unarrived();
+    }
+
+    /**
+     * Arrives at this barrier without waiting for the other parties.
+     * @return Returns the phase, in which the caller arrived.
+     */
+    public int arrive() {
+        return sync.arrive();
+    }
+
+    /**
+     * Waits until the given phase is finished.
+     * @param phase The phase.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public void awaitAdvance(int phase) throws InterruptedException {
+        sync.acquireSharedInterruptibly(phase);
+    }
+
+    /**
+     * Arrives at this barrier and waits until every other party arrived.
+     * @return Returns the phase, in which the caller arrived.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public int arriveAndAwait() throws InterruptedException {
+        final int phase = sync.arrive();
+        sync.acquireSharedInterruptibly(phase);
+        return phase;
+    }
+
+    /**
+     * Arrives at this barrier and waits until every other party arrived or the timeout elapsed.
+     * The arrival is not revoked, if the timeout elapsed.
+     * @param timeout The maximum time to wait.
+     * @return Returns the phase, in which the caller arrived.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     * @throws TimeoutException If the timeout elapsed, before every party arrived.
+     */
+    public int arriveAndAwait(@NotNull Duration timeout) throws InterruptedException, TimeoutException {
+        final int phase = sync.arrive();
+        if (!sync.tryAcquireSharedNanos(phase, timeout.toNanos()))
+            throw new TimeoutException();
+        return phase;
+    }
+}
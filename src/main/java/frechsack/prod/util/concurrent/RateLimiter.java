@@ -0,0 +1,109 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Limits the rate of permits, that are acquired. Implementations are thread-safe and lock-free: A permit is reserved by a single CAS,
+ * no caller waits for another one.
+ * <p>
+ * A caller, that has to wait for a permit, parks instead of sleeping in a loop. Parked virtual threads release their carrier thread.
+ * {@link #acquireAsync()} does not block at all, the returned future is completed by a timer, when the permit is acquired.
+ * <p>
+ * Use {@link #tokenBucket(double, int)} for a smooth rate with bursts, {@link #slidingWindow(int, Duration)} for a strict limit
+ * of permits in any window and {@link #striped(int, double, int)} for very high rates, that contend on a single token bucket.
+ */
+public interface RateLimiter {
+
+    /**
+     * Creates a token bucket, that refills permits at a constant rate. The bucket is full after creation.
+     * Implemented as generic cell rate algorithm, so the whole state is a single timestamp.
+     * @param permitsPerSecond The rate, at which permits are refilled.
+     * @param burst The capacity of the bucket, that is the maximum amount of permits, that can be acquired at once.
+     * @return Returns the created rate limiter.
+     */
+    static @NotNull RateLimiter tokenBucket(double permitsPerSecond, int burst) {
+        return new RateLimiterFactory.TokenBucket(permitsPerSecond, burst);
+    }
+
+    /**
+     * Creates a sliding window log, that allows the maximum amount of permits in any window of the given duration.
+     * The log stores a timestamp for each permit, so the memory grows with the amount of permits.
+     * A reservation is published by a single CAS. Its timestamps are written afterwards, by the reserving caller or by the next caller, that needs them.
+     * @param maxPermits The maximum amount of permits in a window.
+     * @param window The duration of the window.
+     * @return Returns the created rate limiter.
+     */
+    static @NotNull RateLimiter slidingWindow(int maxPermits, @NotNull Duration window) {
+        return new RateLimiterFactory.SlidingWindowLog(maxPermits, Objects.requireNonNull(window));
+    }
+
+    /**
+     * Creates a rate limiter, that splits the rate over multiple token buckets. A caller tries the bucket of its thread first and the others afterwards,
+     * so the limit of the whole rate is kept, while callers on different threads rarely contend.
+     * @param stripes The amount of token buckets.
+     * @param permitsPerSecond The rate of all buckets.
+     * @param burst The capacity of all buckets. Each bucket receives an equal share.
+     * @return Returns the created rate limiter.
+     */
+    static @NotNull RateLimiter striped(int stripes, double permitsPerSecond, int burst) {
+        return new RateLimiterFactory.Striped(stripes, permitsPerSecond, burst);
+    }
+
+    /**
+     * Acquires a permit, if it is available immediately.
+     * @return Returns true, if the permit was acquired.
+     */
+    default boolean tryAcquire() {
+        return tryAcquire(1);
+    }
+
+    /**
+     * Acquires the permits, if they are available immediately.
+     * @param permits The amount of permits.
+     * @return Returns true, if the permits were acquired.
+     */
+    boolean tryAcquire(int permits);
+
+    /**
+     * Acquires the permits, if they become available within the timeout. The calling thread is parked while it waits.
+     * @param permits The amount of permits.
+     * @param timeout The maximum duration to wait.
+     * @return Returns true, if the permits were acquired, false if they would not be available within the timeout.
+     * @throws InterruptedException If the thread was interrupted while it waits.
+     */
+    boolean tryAcquire(int permits, @NotNull Duration timeout) throws InterruptedException;
+
+    /**
+     * Acquires a permit and waits until it is available. The calling thread is parked while it waits.
+     * @throws InterruptedException If the thread was interrupted while it waits.
+     */
+    default void acquire() throws InterruptedException {
+        acquire(1);
+    }
+
+    /**
+     * Acquires the permits and waits until they are available. The calling thread is parked while it waits.
+     * @param permits The amount of permits.
+     * @throws InterruptedException If the thread was interrupted while it waits.
+     */
+    void acquire(int permits) throws InterruptedException;
+
+    /**
+     * Acquires a permit without blocking.
+     * @return Returns a future, that is completed, when the permit was acquired. Cancelling the future stops waiting for the permit.
+     */
+    default @NotNull CompletableFuture<Void> acquireAsync() {
+        return acquireAsync(1);
+    }
+
+    /**
+     * Acquires the permits without blocking.
+     * @param permits The amount of permits.
+     * @return Returns a future, that is completed, when the permits were acquired. Cancelling the future stops waiting for the permits.
+     */
+    @NotNull CompletableFuture<Void> acquireAsync(int permits);
+}
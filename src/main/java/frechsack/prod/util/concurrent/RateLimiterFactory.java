@@ -0,0 +1,259 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+class RateLimiterFactory {
+
+    private RateLimiterFactory() {}
+
+    /**
+     * Implements the waiting of a rate limiter by a single non-blocking reservation attempt.
+     */
+    abstract static class AbstractRateLimiter implements RateLimiter {
+
+        /**
+         * Acquires the permits, if they are available.
+         * @param permits The amount of permits.
+         * @param nowNanos The current value of {@link System#nanoTime()}.
+         * @return Returns zero, if the permits were acquired, otherwise the positive duration in nanoseconds, after which they may be available.
+         */
+        abstract long tryReserve(int permits, long nowNanos);
+
+        abstract int maxPermits();
+
+        private void checkPermits(int permits) {
+            if (permits < 1 || permits > maxPermits())
+                throw new IllegalArgumentException("The amount of permits must be between one and " + maxPermits() + ".");
+        }
+
+        @Override
+        public boolean tryAcquire(int permits) {
+            checkPermits(permits);
+            return tryReserve(permits, System.nanoTime()) == 0;
+        }
+
+        @Override
+        public boolean tryAcquire(int permits, @NotNull Duration timeout) throws InterruptedException {
+            checkPermits(permits);
+            final long deadlineNanos = System.nanoTime() + timeout.toNanos();
+            while (true) {
+                final long nowNanos = System.nanoTime();
+                final long waitNanos = tryReserve(permits, nowNanos);
+                if (waitNanos == 0)
+                    return true;
+                if (nowNanos + waitNanos - deadlineNanos > 0)
+                    return false;
+                park(waitNanos);
+            }
+        }
+
+        @Override
+        public void acquire(int permits) throws InterruptedException {
+            checkPermits(permits);
+            long waitNanos;
+            while ((waitNanos = tryReserve(permits, System.nanoTime())) != 0)
+                park(waitNanos);
+        }
+
+        private void park(long waitNanos) throws InterruptedException {
+            LockSupport.parkNanos(this, waitNanos);
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+
+        @Override
+        public @NotNull CompletableFuture<Void> acquireAsync(int permits) {
+            checkPermits(permits);
+            final var result = new CompletableFuture<Void>();
+            acquireAsync(permits, result);
+            return result;
+        }
+
+        private void acquireAsync(int permits, @NotNull CompletableFuture<Void> result) {
+            if (result.isDone())
+                return;
+            final long waitNanos = tryReserve(permits, System.nanoTime());
+            if (waitNanos == 0)
+                result.complete(null);
+            else
+                // The next attempt runs on the default executor, so dependent stages of the result do not run on the timer thread.
+                HashedWheelTimer.shared().delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, AsyncExecutors::execute).execute(() -> acquireAsync(permits, result));
+        }
+    }
+
+    /**
+     * A token bucket by the generic cell rate algorithm. The state is the theoretical arrival time: The time, at which the bucket would be full again.
+     * Acquiring permits moves it forward by the emission interval of each permit. Permits are available, as long as it is not more than the capacity ahead of now.
+     */
+    static final class TokenBucket extends AbstractRateLimiter {
+        private static final long MAX_TOLERANCE_NANOS = Long.MAX_VALUE / 4;
+
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final int burst;
+        private final AtomicLong theoreticalArrivalNanos;
+
+        TokenBucket(double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || permitsPerSecond > TimeUnit.SECONDS.toNanos(1))
+                throw new IllegalArgumentException("The rate must be positive and at most one permit per nanosecond.");
+            if (burst < 1)
+                throw new IllegalArgumentException("The burst must be positive.");
+            this.intervalNanos = Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+            // Saturated, so the sum of now and the tolerance does not overflow for very low rates.
+            this.toleranceNanos = intervalNanos > MAX_TOLERANCE_NANOS / burst ? MAX_TOLERANCE_NANOS : intervalNanos * burst;
+            this.burst = burst;
+            this.theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+        }
+
+        @Override
+        long tryReserve(int permits, long nowNanos) {
+            while (true) {
+                final long current = theoreticalArrivalNanos.get();
+                // Time, that passed while the bucket was full, does not add permits.
+                final long base = current - nowNanos > 0 ? current : nowNanos;
+                final long next = base + intervalNanos * permits;
+                final long aheadNanos = next - nowNanos;
+                if (aheadNanos > toleranceNanos)
+                    return aheadNanos - toleranceNanos;
+                if (theoreticalArrivalNanos.compareAndSet(current, next))
+                    return 0;
+            }
+        }
+
+        @Override
+        int maxPermits() {
+            return burst;
+        }
+    }
+
+    /**
+     * A log of the timestamps of the latest permits in a ring. A permit is allowed, if the permit, that was acquired maximum permits before, left the window.
+     * <p>
+     * Each slot holds a grant, that knows the sequence number of its permit. The head is the latest reservation, that contains its sequence numbers and its timestamp,
+     * so its grants can be written by any caller. A caller first writes the grants of the latest reservation, that are still missing, and then publishes its own reservation
+     * by a single CAS of the head. So no caller waits for another one: A caller, that is preempted after its CAS, is helped by the next caller.
+     * Callers measure the time before they reserve, so the timestamps of concurrent callers may be out of order by the duration of a reservation.
+     */
+    static final class SlidingWindowLog extends AbstractRateLimiter {
+
+        private record Grant(long sequence, long nanos) {}
+
+        /**
+         * The permits with the sequence numbers from end minus permits to end, that were acquired at the time.
+         */
+        private record Reservation(long end, int permits, long nanos) {}
+
+        private final int maxPermits;
+        private final long windowNanos;
+        private final AtomicReference<Reservation> head = new AtomicReference<>(new Reservation(0, 0, 0));
+        private final AtomicReferenceArray<Grant> slots;
+
+        SlidingWindowLog(int maxPermits, @NotNull Duration window) {
+            if (maxPermits < 1)
+                throw new IllegalArgumentException("The amount of permits must be positive.");
+            if (window.isNegative() || window.isZero())
+                throw new IllegalArgumentException("The window must be positive.");
+            this.maxPermits = maxPermits;
+            this.windowNanos = window.toNanos();
+            this.slots = new AtomicReferenceArray<>(maxPermits);
+            // The initial grants lie before the first window, so every permit is available.
+            final long expiredNanos = System.nanoTime() - windowNanos;
+            for (int i = 0; i < maxPermits; i++)
+                slots.set(i, new Grant(i - maxPermits, expiredNanos));
+        }
+
+        @Override
+        long tryReserve(int permits, long nowNanos) {
+            while (true) {
+                final var current = head.get();
+                write(current);
+                final long sequence = current.end;
+                long remainingNanos = 0;
+                boolean isStale = false;
+                for (long i = sequence; i < sequence + permits; i++) {
+                    final var grant = slots.get(slot(i));
+                    if (grant.sequence != i - maxPermits) {
+                        // Another caller reserved and wrote permits since the head was read.
+                        isStale = true;
+                        break;
+                    }
+                    remainingNanos = Math.max(remainingNanos, grant.nanos + windowNanos - nowNanos);
+                }
+                if (isStale)
+                    continue;
+                if (remainingNanos > 0) {
+                    if (head.get() == current)
+                        return remainingNanos;
+                    continue;
+                }
+                final var reservation = new Reservation(sequence + permits, permits, nowNanos);
+                if (head.compareAndSet(current, reservation)) {
+                    write(reservation);
+                    return 0;
+                }
+            }
+        }
+
+        /**
+         * Writes the grants of the reservation, that were not written by another caller yet.
+         */
+        private void write(@NotNull Reservation reservation) {
+            for (long i = reservation.end - reservation.permits; i < reservation.end; i++) {
+                final int slot = slot(i);
+                final var grant = slots.get(slot);
+                // A grant of a later sequence number is not replaced, if the reservation was already written and overtaken.
+                if (grant.sequence == i - maxPermits)
+                    slots.compareAndSet(slot, grant, new Grant(i, reservation.nanos));
+            }
+        }
+
+        private int slot(long sequence) {
+            return (int) Math.floorMod(sequence, (long) maxPermits);
+        }
+
+        @Override
+        int maxPermits() {
+            return maxPermits;
+        }
+    }
+
+    static final class Striped extends AbstractRateLimiter {
+        private final TokenBucket[] stripes;
+        private final int maxPermits;
+
+        Striped(int stripes, double permitsPerSecond, int burst) {
+            if (stripes < 1 || burst < stripes)
+                throw new IllegalArgumentException("The amount of stripes must be positive and must not exceed the burst.");
+            this.stripes = new TokenBucket[stripes];
+            for (int i = 0; i < stripes; i++)
+                this.stripes[i] = new TokenBucket(permitsPerSecond / stripes, burst / stripes);
+            this.maxPermits = burst / stripes;
+        }
+
+        @Override
+        long tryReserve(int permits, long nowNanos) {
+            final int home = (int) Math.floorMod(Thread.currentThread().threadId(), (long) stripes.length);
+            long minWaitNanos = Long.MAX_VALUE;
+            for (int i = 0; i < stripes.length; i++) {
+                final long waitNanos = stripes[(home + i) % stripes.length].tryReserve(permits, nowNanos);
+                if (waitNanos == 0)
+                    return 0;
+                minWaitNanos = Math.min(minWaitNanos, waitNanos);
+            }
+            return minWaitNanos;
+        }
+
+        @Override
+        int maxPermits() {
+            return maxPermits;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+/**
+ * A {@link BooleanLatch}, that can be reset and reused without allocating a new latch.
+ * <p>
+ * Each reset starts a new generation. A caller waits for the signal of the generation, in which it started to wait,
+ * so a signal, that is immediately followed by a reset, still releases every caller of the signalled generation.
+ */
+public final class ResettableLatch {
+
+    private static class Sync extends AbstractQueuedSynchronizer {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        // The state is incremented by every signal and every reset. An odd state is signalled.
+
+        int state() {
+            return getState();
+        }
+        boolean isSignalled() {
+            return (getState() & 1) != 0;
+        }
+        protected int tryAcquireShared(int observedState) {
+            return getState() != observedState ? 1 : -1;
+        }
+        protected boolean tryReleaseShared(int ignore) {
+            while (true) {
+                final int state = getState();
+                if ((state & 1) != 0)
+                    return false;
+                if (compareAndSetState(state, state + 1))
+                    return true;
+            }
+        }
+        boolean reset() {
+            while (true) {
+                final int state = getState();
+                if ((state & 1) == 0)
+                    return false;
+                if (compareAndSetState(state, state + 1))
+                    return true;
+            }
+        }
+    }
+    private final Sync sync = new Sync();
+
+    public boolean isSignalled() {
+        return sync.isSignalled();
+    }
+
+    /**
+     * Returns the amount of resets of this latch.
+     * @return Returns the generation.
+     */
+    public int generation() {
+        return sync.state() >>> 1;
+    }
+
+    public void signal() {
+        sync.releaseShared(1);
+    }
+
+    /**
+     * Resets this latch, if it was signalled. Callers of {@link #await()} will wait for the next signal.
+     * @return Returns true if this latch was reset, false if it was not signalled.
+     */
+    public boolean reset() {
+        return sync.reset();
+    }
+
+    public void await() throws InterruptedException {
+        final int state = sync.state();
+        if ((state & 1) == 0)
+            sync.acquireSharedInterruptibly(state);
+    }
+
+    /**
+     * Waits until this latch is signalled or the timeout elapsed.
+     * @param timeout The maximum time to wait.
+     * @return Returns true if this latch was signalled, false if the timeout elapsed.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public boolean await(@NotNull Duration timeout) throws InterruptedException {
+        final int state = sync.state();
+        return (state & 1) != 0 || sync.tryAcquireSharedNanos(state, timeout.toNanos());
+    }
+}
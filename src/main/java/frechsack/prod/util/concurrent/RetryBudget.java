@@ -0,0 +1,70 @@
+package frechsack.prod.util.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the retries of a {@link RetryPolicy} to a share of the requests, so failing downstream calls do not multiply the load into a retry storm.
+ * <p>
+ * Each request deposits the retry ratio into the budget and each retry withdraws one. The balance is capped at a maximum amount of retries,
+ * that also allows a burst of retries right after creation. The budget is lock-free and may be shared by multiple policies.
+ */
+public final class RetryBudget {
+
+    /**
+     * The amount of balance units for a single retry. Units allow fractional deposits without floating point arithmetic.
+     */
+    private static final long UNITS_PER_RETRY = 1000;
+
+    private final long depositPerRequest;
+    private final long maximumBalance;
+    private final AtomicLong balance;
+
+    /**
+     * Creates a new RetryBudget.
+     * @param retryRatio The maximum amount of retries per request, for example 0.1 to allow retries for 10% of the requests.
+     * @param maximumRetries The maximum amount of retries, that may be saved up in the budget.
+     */
+    public RetryBudget(double retryRatio, int maximumRetries) {
+        if (retryRatio < 0 || Double.isNaN(retryRatio))
+            throw new IllegalArgumentException("The retry ratio must not be negative.");
+        if (maximumRetries < 0)
+            throw new IllegalArgumentException("The maximum amount of retries must not be negative.");
+        this.depositPerRequest = Math.round(retryRatio * UNITS_PER_RETRY);
+        this.maximumBalance = maximumRetries * UNITS_PER_RETRY;
+        this.balance = new AtomicLong(maximumBalance);
+    }
+
+    /**
+     * Records a request, that is not a retry.
+     */
+    public void recordRequest() {
+        long current;
+        do {
+            current = balance.get();
+            if (current >= maximumBalance)
+                return;
+        } while (!balance.compareAndSet(current, Math.min(maximumBalance, current + depositPerRequest)));
+    }
+
+    /**
+     * Withdraws a retry from this budget.
+     * @return Returns true if the retry is allowed, false if the budget is exhausted.
+     */
+    public boolean tryAcquireRetry() {
+        long current;
+        do {
+            current = balance.get();
+            if (current < UNITS_PER_RETRY)
+                return false;
+        } while (!balance.compareAndSet(current, current - UNITS_PER_RETRY));
+        return true;
+    }
+
+    /**
+     * Returns the amount of retries, that are currently allowed.
+     * @return Returns the amount of retries.
+     */
+    public int availableRetries() {
+        return (int) (balance.get() / UNITS_PER_RETRY);
+    }
+}
@@ -0,0 +1,273 @@
+package frechsack.prod.util.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Describes how a failed asynchronous action is retried and executes actions with these rules.
+ * <p>
+ * The delay between two attempts is computed by the backoff of this policy. Delays are scheduled on a timer, no thread is blocked while waiting.
+ * A policy may limit the retries by a {@link RetryBudget}, the rate of attempts by a {@link RateLimiter} and the duration of each attempt by a timeout.
+ * Cancelling the future returned by {@link #execute(Supplier)} cancels the running attempt and prevents further retries.
+ * <p>
+ * Instances are immutable, each {@code with} method returns a modified copy.
+ */
+public final class RetryPolicy {
+
+    private enum Backoff { FIXED, EXPONENTIAL, DECORRELATED_JITTER }
+
+    private final int maxRetries;
+    private final @NotNull Backoff backoff;
+    private final long baseDelayNanos;
+    private final long maxDelayNanos;
+    private final @NotNull Predicate<? super Throwable> retryOn;
+    private final long attemptTimeoutNanos;
+    private final @Nullable RetryBudget budget;
+    /**
+     * The executor of the retries, or null to use the {@link AsyncExecutors#defaultExecutor() default executor}.
+     */
+    private final @Nullable Executor executor;
+    private final @Nullable RateLimiter rateLimiter;
+
+    private RetryPolicy(int maxRetries, @NotNull Backoff backoff, long baseDelayNanos, long maxDelayNanos,
+                        @NotNull Predicate<? super Throwable> retryOn, long attemptTimeoutNanos,
+                        @Nullable RetryBudget budget, @Nullable Executor executor, @Nullable RateLimiter rateLimiter) {
+        if (maxRetries < 0)
+            throw new IllegalArgumentException("The amount of retries must not be negative.");
+        if (baseDelayNanos < 0 || maxDelayNanos < baseDelayNanos)
+            throw new IllegalArgumentException("The delays must not be negative and the maximum delay must not be less than the base delay.");
+        this.maxRetries = maxRetries;
+        this.backoff = backoff;
+        this.baseDelayNanos = baseDelayNanos;
+        this.maxDelayNanos = maxDelayNanos;
+        this.retryOn = retryOn;
+        this.attemptTimeoutNanos = attemptTimeoutNanos;
+        this.budget = budget;
+        this.executor = executor;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Creates a policy, that retries immediately.
+     * @param maxRetries The maximum amount of retries.
+     * @return Returns the created policy.
+     */
+    public static @NotNull RetryPolicy immediate(int maxRetries) {
+        return fixedDelay(maxRetries, Duration.ZERO);
+    }
+
+    /**
+     * Creates a policy, that waits the same delay before each retry.
+     * @param maxRetries The maximum amount of retries.
+     * @param delay The delay.
+     * @return Returns the created policy.
+     */
+    public static @NotNull RetryPolicy fixedDelay(int maxRetries, @NotNull Duration delay) {
+        final long delayNanos = delay.toNanos();
+        return new RetryPolicy(maxRetries, Backoff.FIXED, delayNanos, delayNanos, error -> true, 0, null, null, null);
+    }
+
+    /**
+     * Creates a policy, that doubles the delay after each retry, starting with the base delay and limited by the maximum delay.
+     * @param maxRetries The maximum amount of retries.
+     * @param baseDelay The delay before the first retry.
+     * @param maxDelay The maximum delay.
+     * @return Returns the created policy.
+     */
+    public static @NotNull RetryPolicy exponentialBackoff(int maxRetries, @NotNull Duration baseDelay, @NotNull Duration maxDelay) {
+        return new RetryPolicy(maxRetries, Backoff.EXPONENTIAL, baseDelay.toNanos(), maxDelay.toNanos(), error -> true, 0, null, null, null);
+    }
+
+    /**
+     * Creates a policy with decorrelated jitter: Each delay is a random duration between the base delay and three times the previous delay,
+     * limited by the maximum delay. Randomized delays spread the retries of many callers, that failed at the same time.
+     * @param maxRetries The maximum amount of retries.
+     * @param baseDelay The minimum delay.
+     * @param maxDelay The maximum delay.
+     * @return Returns the created policy.
+     */
+    public static @NotNull RetryPolicy decorrelatedJitter(int maxRetries, @NotNull Duration baseDelay, @NotNull Duration maxDelay) {
+        return new RetryPolicy(maxRetries, Backoff.DECORRELATED_JITTER, baseDelay.toNanos(), maxDelay.toNanos(), error -> true, 0, null, null, null);
+    }
+
+    /**
+     * Returns a copy of this policy, that only retries errors accepted by the predicate.
+     * The predicate receives the cause of a {@link CompletionException}.
+     * @param retryOn The predicate.
+     * @return Returns the modified policy.
+     */
+    public @NotNull RetryPolicy withRetryOn(@NotNull Predicate<? super Throwable> retryOn) {
+        return new RetryPolicy(maxRetries, backoff, baseDelayNanos, maxDelayNanos, Objects.requireNonNull(retryOn), attemptTimeoutNanos, budget, executor, rateLimiter);
+    }
+
+    /**
+     * Returns a copy of this policy, that completes each attempt exceptionally with a {@link TimeoutException}, if it takes longer than the timeout.
+     * A timed out attempt is retried like any other failure.
+     * @param attemptTimeout The timeout of a single attempt.
+     * @return Returns the modified policy.
+     */
+    public @NotNull RetryPolicy withAttemptTimeout(@NotNull Duration attemptTimeout) {
+        return new RetryPolicy(maxRetries, backoff, baseDelayNanos, maxDelayNanos, retryOn, attemptTimeout.toNanos(), budget, executor, rateLimiter);
+    }
+
+    /**
+     * Returns a copy of this policy, that only retries, if the budget allows it.
+     * @param budget The budget. Should be shared by every policy, that calls the same downstream.
+     * @return Returns the modified policy.
+     */
+    public @NotNull RetryPolicy withBudget(@NotNull RetryBudget budget) {
+        return new RetryPolicy(maxRetries, backoff, baseDelayNanos, maxDelayNanos, retryOn, attemptTimeoutNanos, Objects.requireNonNull(budget), executor, rateLimiter);
+    }
+
+    /**
+     * Returns a copy of this policy, that starts the retries on the given executor.
+     * By default, the retries are started on {@link AsyncExecutors#defaultExecutor()}.
+     * @param executor The executor.
+     * @return Returns the modified policy.
+     */
+    public @NotNull RetryPolicy withExecutor(@NotNull Executor executor) {
+        return new RetryPolicy(maxRetries, backoff, baseDelayNanos, maxDelayNanos, retryOn, attemptTimeoutNanos, budget, Objects.requireNonNull(executor), rateLimiter);
+    }
+
+    /**
+     * Returns a copy of this policy, that acquires a permit from the rate limiter before each attempt, including the first one.
+     * Waiting for a permit does not block a thread.
+     * @param rateLimiter The rate limiter. Should be shared by every policy, that calls the same downstream.
+     * @return Returns the modified policy.
+     */
+    public @NotNull RetryPolicy withRateLimiter(@NotNull RateLimiter rateLimiter) {
+        return new RetryPolicy(maxRetries, backoff, baseDelayNanos, maxDelayNanos, retryOn, attemptTimeoutNanos, budget, executor, Objects.requireNonNull(rateLimiter));
+    }
+
+    private @NotNull Executor executor() {
+        return executor != null ? executor : AsyncExecutors.defaultExecutor();
+    }
+
+    public int maxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Computes the delay before a retry.
+     * @param retry The zero-based index of the retry.
+     * @param previousDelayNanos The delay before the previous retry, zero for the first retry.
+     * @return Returns the delay in nanoseconds.
+     */
+    long delayNanos(int retry, long previousDelayNanos) {
+        return switch (backoff) {
+            case FIXED -> baseDelayNanos;
+            case EXPONENTIAL -> retry >= Long.numberOfLeadingZeros(Math.max(1, baseDelayNanos)) - 1
+                    ? maxDelayNanos
+                    : Math.min(maxDelayNanos, baseDelayNanos << retry);
+            case DECORRELATED_JITTER -> {
+                final long upper = Math.min(maxDelayNanos, Math.max(baseDelayNanos, previousDelayNanos) * 3);
+                yield upper <= baseDelayNanos
+                        ? baseDelayNanos
+                        : ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1);
+            }
+        };
+    }
+
+    /**
+     * Executes the asynchronous action and retries it by this policy. The first attempt is started by the calling thread.
+     * @param action Starts a single attempt and returns its future.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull CompletableFuture<Type> execute(@NotNull Supplier<? extends CompletionStage<Type>> action) {
+        Objects.requireNonNull(action);
+        final var result = new CompletableFuture<Type>();
+        final var running = new AtomicReference<CompletableFuture<?>>();
+        result.whenComplete((value, error) -> {
+            final var attempt = running.get();
+            if (result.isCancelled() && attempt != null)
+                attempt.cancel(true);
+        });
+        if (budget != null)
+            budget.recordRequest();
+        attempt(action, result, running, 0, 0);
+        return result;
+    }
+
+    /**
+     * Executes the action on the executor of this policy and retries it by this policy.
+     * @param action The action of a single attempt.
+     * @return Returns a future, that completes with the first successful attempt or with the error of the last attempt.
+     * @param <Type> The result type.
+     */
+    public <Type> @NotNull CompletableFuture<Type> executeAsync(@NotNull Supplier<Type> action) {
+        Objects.requireNonNull(action);
+        return execute(() -> CompletableFuture.supplyAsync(action, executor()));
+    }
+
+    private <Type> void attempt(@NotNull Supplier<? extends CompletionStage<Type>> action,
+                                @NotNull CompletableFuture<Type> result,
+                                @NotNull AtomicReference<CompletableFuture<?>> running,
+                                int retry, long previousDelayNanos) {
+        if (result.isDone())
+            return;
+        if (rateLimiter == null || rateLimiter.tryAcquire()) {
+            start(action, result, running, retry, previousDelayNanos);
+            return;
+        }
+        final var permit = rateLimiter.acquireAsync();
+        running.set(permit);
+        // The result may be cancelled, before the permit became visible to the cancellation handler.
+        if (result.isCancelled())
+            permit.cancel(true);
+        permit.thenRunAsync(() -> start(action, result, running, retry, previousDelayNanos), executor());
+    }
+
+    private <Type> void start(@NotNull Supplier<? extends CompletionStage<Type>> action,
+                              @NotNull CompletableFuture<Type> result,
+                              @NotNull AtomicReference<CompletableFuture<?>> running,
+                              int retry, long previousDelayNanos) {
+        if (result.isDone())
+            return;
+        CompletableFuture<Type> attempt;
+        try {
+            attempt = Objects.requireNonNull(action.get(), "The action returned null.").toCompletableFuture();
+        }
+        catch (Throwable e) {
+            attempt = CompletableFuture.failedFuture(e);
+        }
+        if (attemptTimeoutNanos > 0)
+            attempt = CompletableFutures.orTimeout(attempt, attemptTimeoutNanos, TimeUnit.NANOSECONDS);
+        running.set(attempt);
+        // The result may be cancelled, before the attempt became visible to the cancellation handler.
+        if (result.isCancelled())
+            attempt.cancel(true);
+
+        attempt.whenComplete((value, error) -> {
+            if (error == null) {
+                result.complete(value);
+                return;
+            }
+            final var cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (result.isDone())
+                return;
+            if (retry >= maxRetries || !retryOn.test(cause) || (budget != null && !budget.tryAcquireRetry())) {
+                result.completeExceptionally(cause);
+                return;
+            }
+            final long delayNanos = delayNanos(retry, previousDelayNanos);
+            final Executor next = delayNanos <= 0
+                    ? executor()
+                    : HashedWheelTimer.shared().delayedExecutor(delayNanos, TimeUnit.NANOSECONDS, executor());
+            try {
+                next.execute(() -> attempt(action, result, running, retry + 1, delayNanos));
+            }
+            catch (RejectedExecutionException e) {
+                e.addSuppressed(cause);
+                result.completeExceptionally(e);
+            }
+        });
+    }
+}
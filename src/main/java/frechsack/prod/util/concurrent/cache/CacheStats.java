@@ -0,0 +1,110 @@
+package frechsack.prod.util.concurrent.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * An immutable snapshot of the statistics recorded by a {@link StatsCounter}.
+ * @param hitCount The amount of requests, that were answered by a cached value.
+ * @param missCount The amount of requests, that required a load.
+ * @param loadSuccessCount The amount of loads, that returned a value.
+ * @param loadFailureCount The amount of loads, that threw an exception.
+ * @param totalLoadNanos The summed duration of all loads in nanoseconds.
+ * @param evictionCount The amount of entries, that were evicted or expired.
+ * @param waitCount The amount of requests, that had to wait for a load started by another caller. A waiting request is also a hit, if the load succeeded.
+ * @param loadTimeHistogram The load durations. The element at index i counts loads, that took less than 2^i and at least 2^(i-1) nanoseconds.
+ */
+public record CacheStats(
+        long hitCount,
+        long missCount,
+        long loadSuccessCount,
+        long loadFailureCount,
+        long totalLoadNanos,
+        long evictionCount,
+        long waitCount,
+        long @NotNull [] loadTimeHistogram
+) {
+
+    public CacheStats {
+        loadTimeHistogram = loadTimeHistogram.clone();
+    }
+
+    /**
+     * Returns the load durations. The element at index i counts loads, that took less than 2^i and at least 2^(i-1) nanoseconds.
+     * @return Returns a copy of the histogram.
+     */
+    @Override
+    public long @NotNull [] loadTimeHistogram() {
+        return loadTimeHistogram.clone();
+    }
+
+    /**
+     * Returns the amount of requests, including hits and misses.
+     * @return Returns the amount of requests.
+     */
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    /**
+     * Returns the ratio of requests, that were answered by a cached value. If no request was recorded, one is returned.
+     * @return Returns the hit rate.
+     */
+    public double hitRate() {
+        final long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /**
+     * Returns the amount of loads, including failed loads.
+     * @return Returns the amount of loads.
+     */
+    public long loadCount() {
+        return loadSuccessCount + loadFailureCount;
+    }
+
+    /**
+     * Returns the average duration of a load in nanoseconds. If no load was recorded, zero is returned.
+     * @return Returns the average load duration.
+     */
+    public double averageLoadNanos() {
+        final long loadCount = loadCount();
+        return loadCount == 0 ? 0.0 : (double) totalLoadNanos / loadCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof CacheStats other))
+            return false;
+        return hitCount == other.hitCount
+                && missCount == other.missCount
+                && loadSuccessCount == other.loadSuccessCount
+                && loadFailureCount == other.loadFailureCount
+                && totalLoadNanos == other.totalLoadNanos
+                && evictionCount == other.evictionCount
+                && waitCount == other.waitCount
+                && Arrays.equals(loadTimeHistogram, other.loadTimeHistogram);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(hitCount);
+        result = 31 * result + Long.hashCode(missCount);
+        result = 31 * result + Long.hashCode(loadSuccessCount);
+        result = 31 * result + Long.hashCode(loadFailureCount);
+        result = 31 * result + Long.hashCode(totalLoadNanos);
+        result = 31 * result + Long.hashCode(evictionCount);
+        result = 31 * result + Long.hashCode(waitCount);
+        return 31 * result + Arrays.hashCode(loadTimeHistogram);
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats{hitCount=" + hitCount + ", missCount=" + missCount + ", loadSuccessCount=" + loadSuccessCount
+                + ", loadFailureCount=" + loadFailureCount + ", totalLoadNanos=" + totalLoadNanos + ", evictionCount=" + evictionCount
+                + ", waitCount=" + waitCount + ", loadTimeHistogram=" + Arrays.toString(loadTimeHistogram) + '}';
+    }
+}
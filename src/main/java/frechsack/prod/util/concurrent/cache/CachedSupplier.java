@@ -1,9 +1,13 @@
 package frechsack.prod.util.concurrent.cache;
 
+import frechsack.prod.util.concurrent.AsyncExecutors;
+import frechsack.prod.util.concurrent.HashedWheelTimer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Supplier;
 
@@ -11,53 +15,158 @@ public class CachedSupplier<Type> implements Supplier<Type> {
 
     private final Supplier<Type> supplier;
     private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(true);
+    private final @NotNull StatsCounter statsCounter;
     private Type result;
-    private long resultExpireAtMillis = -1;
-    private final long cacheDurationMillis;
+    private boolean isLoaded = false;
+    private long resultLoadedAtNanos;
+    private final long cacheDurationNanos;
+    private final @Nullable HashedWheelTimer timer;
+    private HashedWheelTimer.@Nullable Timeout expiration;
 
     public CachedSupplier(@NotNull Supplier<Type> supplier) {
         this(supplier, 1000);
     }
 
     public CachedSupplier(@NotNull Supplier<Type> supplier, @NotNull Duration duration) {
-        this(supplier, duration.toMillis());
+        this(supplier, duration, StatsCounter.disabled());
+    }
+
+    public CachedSupplier(@NotNull Supplier<Type> supplier, @NotNull Duration duration, @NotNull StatsCounter statsCounter) {
+        this(supplier, duration.toMillis(), statsCounter);
     }
 
     public CachedSupplier(@NotNull Supplier<Type> supplier, long millis) {
+        this(supplier, millis, StatsCounter.disabled());
+    }
+
+    /**
+     * Creates a new CachedSupplier, that actively clears its result, when it expires.
+     * Without a timer, an expired result is only replaced by the next call, so a large result stays referenced while the supplier is not used.
+     * @param supplier The supplier, that computes the result.
+     * @param duration The duration, after which the result expires.
+     * @param statsCounter The StatsCounter, that records the statistics of this supplier.
+     * @param timer The timer, that clears the expired result, for example {@link HashedWheelTimer#shared()}.
+     */
+    public CachedSupplier(@NotNull Supplier<Type> supplier, @NotNull Duration duration, @NotNull StatsCounter statsCounter, @NotNull HashedWheelTimer timer) {
+        this(supplier, duration.toMillis(), statsCounter, Objects.requireNonNull(timer));
+    }
+
+    private CachedSupplier(@NotNull Supplier<Type> supplier, long millis, @NotNull StatsCounter statsCounter) {
+        this(supplier, millis, statsCounter, null);
+    }
+
+    private CachedSupplier(@NotNull Supplier<Type> supplier, long millis, @NotNull StatsCounter statsCounter, @Nullable HashedWheelTimer timer) {
         this.supplier = Objects.requireNonNull(supplier);
-        this.cacheDurationMillis = millis;
+        this.statsCounter = Objects.requireNonNull(statsCounter);
+        this.cacheDurationNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        this.timer = timer;
     }
 
     public boolean isExpired() {
-        return resultExpireAtMillis == -1 || (resultExpireAtMillis - System.currentTimeMillis()) >= resultExpireAtMillis;
+        lock.readLock().lock();
+        try {
+            return isExpiredUnlocked();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isExpiredUnlocked() {
+        return !isLoaded || System.nanoTime() - resultLoadedAtNanos >= cacheDurationNanos;
     }
 
     public void clear() {
-        resultExpireAtMillis = -1;
-        result = null;
+        lock.writeLock().lock();
+        try {
+            if (isLoaded)
+                statsCounter.recordEviction();
+            isLoaded = false;
+            result = null;
+            if (expiration != null) {
+                expiration.cancel();
+                expiration = null;
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public void clearIfExpired() {
-        if (isExpired())
-            clear();
+        lock.writeLock().lock();
+        try {
+            if (isLoaded && isExpiredUnlocked())
+                clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears the expired result on the thread of the timer. The timer thread must not wait for a lock, that is held while the result is loaded,
+     * so a busy lock passes the work to the default executor.
+     */
+    private void expire() {
+        if (!lock.writeLock().tryLock()) {
+            AsyncExecutors.execute(this::clearIfExpired);
+            return;
+        }
+        try {
+            if (isLoaded && isExpiredUnlocked())
+                clear();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded by this supplier. The statistics are only recorded, if this supplier was created with an enabled {@link StatsCounter}.
+     * @return Returns the snapshot.
+     */
+    public @NotNull CacheStats stats() {
+        return statsCounter.snapshot();
     }
 
     @Override
     public Type get() {
         lock.readLock().lock();
         try {
-            if (!isExpired())
+            if (!isExpiredUnlocked()) {
+                statsCounter.recordHit();
                 return result;
+            }
         }
         finally {
             lock.readLock().unlock();
         }
         lock.writeLock().lock();
         try {
-            if (!isExpired())
+            if (!isExpiredUnlocked()) {
+                // Another caller loaded the result, while this caller was waiting for the lock.
+                statsCounter.recordWait();
+                statsCounter.recordHit();
                 return result;
-            result = supplier.get();
-            resultExpireAtMillis = System.nanoTime() + cacheDurationMillis;
+            }
+            statsCounter.recordMiss();
+            final long loadStartNanos = System.nanoTime();
+            try {
+                result = supplier.get();
+            }
+            catch (RuntimeException | Error e) {
+                statsCounter.recordLoadFailure(System.nanoTime() - loadStartNanos);
+                throw e;
+            }
+            resultLoadedAtNanos = System.nanoTime();
+            isLoaded = true;
+            if (timer != null) {
+                if (expiration != null)
+                    expiration.cancel();
+                expiration = timer.schedule(this::expire, cacheDurationNanos, TimeUnit.NANOSECONDS);
+            }
+            statsCounter.recordLoadSuccess(resultLoadedAtNanos - loadStartNanos);
             return result;
         }
         finally {
@@ -0,0 +1,567 @@
+package frechsack.prod.util.concurrent.cache;
+
+import frechsack.prod.util.concurrent.AsyncExecutors;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongBiFunction;
+
+/**
+ * A keyed cache, that loads absent values with a loader function.
+ * <p>
+ * Each key is loaded at most once at a time. Concurrent callers for a key, that is currently loaded, wait for the running load instead of starting their own.
+ * The loader is never called while a lock of the cache is held, so a slow load does not block callers of other keys.
+ * A failed load is not cached, the next call for the key loads the value again.
+ * <p>
+ * The cache may be bounded by a maximum weight (or size, where each entry weights one).
+ * Entries are evicted by a segmented LRU policy: New entries are placed in a probation segment and promoted to a protected segment, if they are accessed again.
+ * Eviction always takes the least recently used entry of the probation segment first, so a scan of one-time keys does not flush frequently used entries.
+ * A hit does not take the lock of the policy, it is buffered and replayed into the policy by the next thread, that holds the lock.
+ * Entries may also expire a fixed duration after they were loaded.
+ * <p>
+ * Statistics are recorded into the {@link StatsCounter} given on creation and can be received by {@link #stats()}.
+ * @param <Key> The key type. Keys must not be null.
+ * @param <Value> The value type.
+ */
+public class LoadingCache<Key, Value> implements Function<Key, Value> {
+
+    private static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * The share of the maximum weight, that may be occupied by the protected segment.
+     */
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final @NotNull ConcurrentHashMap<Key, Node<Key, Value>> values = new ConcurrentHashMap<>();
+    private final @NotNull Function<? super Key, ? extends Value> loader;
+    private final @NotNull ToLongBiFunction<? super Key, ? super Value> weigher;
+    private final long maximumWeight;
+    private final long maximumProtectedWeight;
+    private final long expireAfterWriteNanos;
+    private final @NotNull StatsCounter statsCounter;
+    private final boolean isRecordingStats;
+
+    private final @NotNull ReentrantLock evictionLock = new ReentrantLock();
+    private final @NotNull ReadBuffer<Node<Key, Value>> readBuffer = new ReadBuffer<>();
+    private final @NotNull Node<Key, Value> probation = Node.sentinel();
+    private final @NotNull Node<Key, Value> protectedSegment = Node.sentinel();
+    private long probationWeight;
+    private long protectedWeight;
+
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader) {
+        this(loader, UNBOUNDED, null);
+    }
+
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader, @NotNull Duration expireAfterWrite) {
+        this(loader, UNBOUNDED, Objects.requireNonNull(expireAfterWrite));
+    }
+
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader, long maximumSize) {
+        this(loader, maximumSize, null);
+    }
+
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader, long maximumSize, @Nullable Duration expireAfterWrite) {
+        this(loader, maximumSize, (key, value) -> 1, expireAfterWrite);
+    }
+
+    /**
+     * Creates a new LoadingCache.
+     * @param loader The function, that loads the value of an absent key.
+     * @param maximumWeight The maximum summed weight of the cached entries.
+     * @param weigher Computes the weight of a loaded entry. The weight must not be negative.
+     * @param expireAfterWrite The duration, after which a loaded entry expires. If null, entries do not expire.
+     */
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader, long maximumWeight, @NotNull ToLongBiFunction<? super Key, ? super Value> weigher, @Nullable Duration expireAfterWrite) {
+        this(loader, maximumWeight, weigher, expireAfterWrite, StatsCounter.disabled());
+    }
+
+    /**
+     * Creates a new LoadingCache.
+     * @param loader The function, that loads the value of an absent key.
+     * @param maximumWeight The maximum summed weight of the cached entries.
+     * @param weigher Computes the weight of a loaded entry. The weight must not be negative.
+     * @param expireAfterWrite The duration, after which a loaded entry expires. If null, entries do not expire.
+     * @param statsCounter The StatsCounter, that records the statistics of this cache.
+     */
+    public LoadingCache(@NotNull Function<? super Key, ? extends Value> loader, long maximumWeight, @NotNull ToLongBiFunction<? super Key, ? super Value> weigher, @Nullable Duration expireAfterWrite, @NotNull StatsCounter statsCounter) {
+        if (maximumWeight < 0)
+            throw new IllegalArgumentException("The maximum weight must not be negative.");
+        this.loader = Objects.requireNonNull(loader);
+        this.weigher = Objects.requireNonNull(weigher);
+        this.maximumWeight = maximumWeight;
+        this.maximumProtectedWeight = maximumWeight == UNBOUNDED ? UNBOUNDED : (long) (maximumWeight * PROTECTED_RATIO);
+        this.expireAfterWriteNanos = expireAfterWrite == null ? UNBOUNDED : expireAfterWrite.toNanos();
+        this.statsCounter = Objects.requireNonNull(statsCounter);
+        this.isRecordingStats = statsCounter != StatsCounter.disabled();
+    }
+
+    @Override
+    public Value apply(Key key) {
+        return get(key);
+    }
+
+    /**
+     * Returns the value associated with the key. If the value is absent or expired, it is loaded by the calling thread.
+     * If the key is currently loaded by another thread, this call waits for the running load.
+     * @param key The key.
+     * @return Returns the value.
+     */
+    public Value get(@NotNull Key key) {
+        Objects.requireNonNull(key);
+        while (true) {
+            final var node = liveNode(key);
+            if (node != null)
+                return join(access(node));
+
+            final var created = new Node<Key, Value>(key);
+            if (values.putIfAbsent(key, created) == null) {
+                statsCounter.recordMiss();
+                load(created);
+                return join(created.future);
+            }
+        }
+    }
+
+    /**
+     * Returns the value associated with the key, if it is loaded and not expired.
+     * This call never loads a value and never waits for a running load.
+     * @param key The key.
+     * @return Returns the value or an empty Optional.
+     */
+    public @NotNull Optional<Value> getIfPresent(@NotNull Key key) {
+        final var node = liveNode(Objects.requireNonNull(key));
+        if (node == null || !node.future.isDone() || node.future.isCompletedExceptionally()) {
+            statsCounter.recordMiss();
+            return Optional.empty();
+        }
+        return Optional.ofNullable(join(access(node)));
+    }
+
+    /**
+     * Checks if a value is loaded for the key and not expired. This call does not record a hit or a miss,
+     * but an expired value, that is removed by this call, is recorded as eviction.
+     * @param key The key.
+     * @return Returns true, if the value is loaded.
+     */
+    public boolean containsKey(@NotNull Key key) {
+        final var node = liveNode(Objects.requireNonNull(key));
+        return node != null && node.future.isDone() && !node.future.isCompletedExceptionally();
+    }
+
+    /**
+     * Returns the value associated with the key. If the value is absent or expired, it is loaded by {@link AsyncExecutors#defaultExecutor()}.
+     * @param key The key.
+     * @return Returns a future, that is completed with the value.
+     */
+    public @NotNull CompletableFuture<Value> getAsync(@NotNull Key key) {
+        return getAsync(key, AsyncExecutors.defaultExecutor());
+    }
+
+    /**
+     * Returns the value associated with the key. If the value is absent or expired, it is loaded by the given executor.
+     * Completing the returned future does not modify this cache.
+     * @param key The key.
+     * @param executor The executor, that runs the loader.
+     * @return Returns a future, that is completed with the value.
+     */
+    public @NotNull CompletableFuture<Value> getAsync(@NotNull Key key, @NotNull Executor executor) {
+        Objects.requireNonNull(key);
+        Objects.requireNonNull(executor);
+        while (true) {
+            final var node = liveNode(key);
+            if (node != null)
+                return access(node).copy();
+
+            final var created = new Node<Key, Value>(key);
+            if (values.putIfAbsent(key, created) == null) {
+                statsCounter.recordMiss();
+                try {
+                    executor.execute(() -> load(created));
+                }
+                catch (RuntimeException e) {
+                    fail(created, e);
+                }
+                return created.future.copy();
+            }
+        }
+    }
+
+    /**
+     * Returns the values associated with the given keys. Absent or expired values are loaded by the calling thread.
+     * Keys, that are currently loaded by another thread, are not loaded again.
+     * @param keys The keys.
+     * @return Returns a Map with the keys and their values, in the iteration order of the given keys.
+     */
+    public @NotNull Map<Key, Value> getAll(@NotNull Iterable<? extends Key> keys) {
+        final var futures = new LinkedHashMap<Key, CompletableFuture<Value>>();
+        for (Node<Key, Value> node : reserveAll(keys, futures))
+            load(node);
+        return joinAll(futures);
+    }
+
+    /**
+     * Returns the values associated with the given keys. Absent or expired values are loaded by a single call of the bulk loader in the calling thread.
+     * Keys, that are currently loaded by another thread, are not loaded again. Keys, that are missing in the map of the bulk loader, are loaded by the loader of this cache.
+     * @param keys The keys.
+     * @param bulkLoader The function, that loads the values of the absent keys.
+     * @return Returns a Map with the keys and their values, in the iteration order of the given keys.
+     */
+    public @NotNull Map<Key, Value> getAll(@NotNull Iterable<? extends Key> keys, @NotNull Function<? super Set<Key>, ? extends Map<? extends Key, ? extends Value>> bulkLoader) {
+        Objects.requireNonNull(bulkLoader);
+        final var futures = new LinkedHashMap<Key, CompletableFuture<Value>>();
+        final var created = reserveAll(keys, futures);
+        if (created.isEmpty())
+            return joinAll(futures);
+
+        final var absentKeys = new LinkedHashSet<Key>(created.size() * 4 / 3 + 1);
+        for (Node<Key, Value> node : created)
+            absentKeys.add(node.key);
+        final Map<? extends Key, ? extends Value> loaded;
+        final long loadStartNanos = System.nanoTime();
+        try {
+            loaded = Objects.requireNonNull(bulkLoader.apply(Collections.unmodifiableSet(absentKeys)), "The bulk loader returned null.");
+        }
+        catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - loadStartNanos);
+            for (Node<Key, Value> node : created)
+                fail(node, e);
+            return joinAll(futures);
+        }
+        statsCounter.recordLoadSuccess(System.nanoTime() - loadStartNanos);
+        for (Node<Key, Value> node : created) {
+            if (loaded.containsKey(node.key))
+                complete(node, loaded.get(node.key));
+            else
+                load(node);
+        }
+        return joinAll(futures);
+    }
+
+    /**
+     * Puts the future of each key into the map and returns the nodes, that were created for absent keys and must be loaded by the caller.
+     */
+    private @NotNull List<Node<Key, Value>> reserveAll(@NotNull Iterable<? extends Key> keys, @NotNull Map<Key, CompletableFuture<Value>> futures) {
+        final var created = new ArrayList<Node<Key, Value>>();
+        for (Key key : keys) {
+            if (futures.containsKey(Objects.requireNonNull(key)))
+                continue;
+            while (true) {
+                final var node = liveNode(key);
+                if (node != null) {
+                    futures.put(key, access(node));
+                    break;
+                }
+                final var candidate = new Node<Key, Value>(key);
+                if (values.putIfAbsent(key, candidate) == null) {
+                    statsCounter.recordMiss();
+                    created.add(candidate);
+                    futures.put(key, candidate.future);
+                    break;
+                }
+            }
+        }
+        return created;
+    }
+
+    private static <Key, Value> @NotNull Map<Key, Value> joinAll(@NotNull Map<Key, CompletableFuture<Value>> futures) {
+        final var result = new LinkedHashMap<Key, Value>(futures.size() * 4 / 3 + 1);
+        futures.forEach((key, future) -> result.put(key, join(future)));
+        return result;
+    }
+
+    /**
+     * Removes the value associated with the key. A running load for the key is not interrupted, but its value is not cached.
+     * @param key The key.
+     */
+    public void invalidate(@NotNull Key key) {
+        final var node = values.remove(Objects.requireNonNull(key));
+        if (node != null)
+            unlink(node);
+    }
+
+    /**
+     * Removes every value from this cache.
+     */
+    public void invalidateAll() {
+        for (Key key : values.keySet())
+            invalidate(key);
+    }
+
+    /**
+     * Removes every expired value from this cache. Expired values are otherwise removed, when they are accessed.
+     */
+    public void cleanUp() {
+        for (Node<Key, Value> node : values.values())
+            if (isExpired(node) && remove(node))
+                statsCounter.recordEviction();
+    }
+
+    /**
+     * Returns the amount of entries in this cache, including entries that are currently loaded.
+     * @return Returns the amount of entries.
+     */
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded by this cache. The statistics are only recorded, if this cache was created with an enabled {@link StatsCounter}.
+     * @return Returns the snapshot.
+     */
+    public @NotNull CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    /**
+     * Returns the summed weight of the loaded entries in this cache. An unbounded cache does not track weights and always returns zero.
+     * @return Returns the weight.
+     */
+    public long weight() {
+        evictionLock.lock();
+        try {
+            return probationWeight + protectedWeight;
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private boolean isBounded() {
+        return maximumWeight != UNBOUNDED;
+    }
+
+    private boolean isExpired(@NotNull Node<Key, Value> node) {
+        return expireAfterWriteNanos != UNBOUNDED
+                && node.future.isDone()
+                && System.nanoTime() - node.writeNanos >= expireAfterWriteNanos;
+    }
+
+    /**
+     * Returns the node of the key, that is loaded or currently loading. Expired nodes are removed.
+     */
+    private @Nullable Node<Key, Value> liveNode(@NotNull Key key) {
+        Node<Key, Value> node;
+        while ((node = values.get(key)) != null && isExpired(node))
+            if (remove(node))
+                statsCounter.recordEviction();
+        return node;
+    }
+
+    /**
+     * Records an access of the node in the eviction policy and returns the future of the node.
+     * A request, that waits for a load in flight, is counted as hit once the load succeeds, a failed load is not a hit.
+     */
+    private @NotNull CompletableFuture<Value> access(@NotNull Node<Key, Value> node) {
+        if (node.future.isDone())
+            statsCounter.recordHit();
+        else if (isRecordingStats) {
+            statsCounter.recordWait();
+            node.future.whenComplete((value, exception) -> {
+                if (exception == null)
+                    statsCounter.recordHit();
+            });
+        }
+        // The access is buffered and only replayed under the lock, once the buffer fills. A contended lock skips the replay, the ordering is only a hint.
+        if (isBounded() && node.future.isDone() && readBuffer.offer(node) && evictionLock.tryLock()) {
+            try {
+                readBuffer.drainTo(this::promote);
+            }
+            finally {
+                evictionLock.unlock();
+            }
+        }
+        return node.future;
+    }
+
+    private void load(@NotNull Node<Key, Value> node) {
+        final Value value;
+        final long weight;
+        final long loadStartNanos = System.nanoTime();
+        try {
+            value = loader.apply(node.key);
+            weight = isBounded() ? weigher.applyAsLong(node.key, value) : 0;
+            if (weight < 0)
+                throw new IllegalStateException("The weight of an entry must not be negative.");
+        }
+        catch (Throwable e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - loadStartNanos);
+            fail(node, e);
+            return;
+        }
+        node.weight = weight;
+        node.writeNanos = System.nanoTime();
+        statsCounter.recordLoadSuccess(node.writeNanos - loadStartNanos);
+        node.future.complete(value);
+        if (isBounded())
+            insert(node);
+    }
+
+    /**
+     * Completes the node with a value, that was loaded by a bulk loader.
+     */
+    private void complete(@NotNull Node<Key, Value> node, Value value) {
+        final long weight;
+        try {
+            weight = isBounded() ? weigher.applyAsLong(node.key, value) : 0;
+            if (weight < 0)
+                throw new IllegalStateException("The weight of an entry must not be negative.");
+        }
+        catch (Throwable e) {
+            fail(node, e);
+            return;
+        }
+        node.weight = weight;
+        node.writeNanos = System.nanoTime();
+        node.future.complete(value);
+        if (isBounded())
+            insert(node);
+    }
+
+    private void fail(@NotNull Node<Key, Value> node, @NotNull Throwable error) {
+        values.remove(node.key, node);
+        node.future.completeExceptionally(error);
+    }
+
+    private boolean remove(@NotNull Node<Key, Value> node) {
+        if (!values.remove(node.key, node))
+            return false;
+        unlink(node);
+        return true;
+    }
+
+    private void insert(@NotNull Node<Key, Value> node) {
+        evictionLock.lock();
+        try {
+            // The node was invalidated while it was loaded.
+            if (values.get(node.key) != node)
+                return;
+            node.linkBefore(probation);
+            node.segment = Segment.PROBATION;
+            probationWeight += node.weight;
+            // The buffered accesses are replayed first, so the eviction sees the recent order.
+            readBuffer.drainTo(this::promote);
+            evict();
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void unlink(@NotNull Node<Key, Value> node) {
+        if (!isBounded())
+            return;
+        evictionLock.lock();
+        try {
+            detach(node);
+        }
+        finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Removes the node from its segment. Must be called with the eviction lock held.
+     */
+    private void detach(@NotNull Node<Key, Value> node) {
+        switch (node.segment) {
+            case PROBATION -> probationWeight -= node.weight;
+            case PROTECTED -> protectedWeight -= node.weight;
+            case NONE -> { return; }
+        }
+        node.unlink();
+        node.segment = Segment.NONE;
+    }
+
+    /**
+     * Moves the node to the most recently used position of the protected segment. Must be called with the eviction lock held.
+     */
+    private void promote(@NotNull Node<Key, Value> node) {
+        if (node.segment == Segment.NONE)
+            return;
+        detach(node);
+        node.linkBefore(protectedSegment);
+        node.segment = Segment.PROTECTED;
+        protectedWeight += node.weight;
+
+        while (protectedWeight > maximumProtectedWeight && protectedSegment.next != node) {
+            final var demoted = protectedSegment.next;
+            detach(demoted);
+            demoted.linkBefore(probation);
+            demoted.segment = Segment.PROBATION;
+            probationWeight += demoted.weight;
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries, until the weight fits the maximum weight. Must be called with the eviction lock held.
+     */
+    private void evict() {
+        while (probationWeight + protectedWeight > maximumWeight) {
+            final var victim = probation.next != probation
+                    ? probation.next
+                    : protectedSegment.next;
+            if (victim == protectedSegment)
+                return;
+            detach(victim);
+            if (values.remove(victim.key, victim))
+                statsCounter.recordEviction();
+        }
+    }
+
+    private static <Value> Value join(@NotNull CompletableFuture<Value> future) {
+        try {
+            return future.join();
+        }
+        catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re)
+                throw re;
+            if (e.getCause() instanceof Error error)
+                throw error;
+            throw e;
+        }
+    }
+
+    private enum Segment { NONE, PROBATION, PROTECTED }
+
+    private static final class Node<Key, Value> {
+        private final Key key;
+        private final @NotNull CompletableFuture<Value> future = new CompletableFuture<>();
+        private long weight;
+        private long writeNanos;
+
+        // Guarded by the eviction lock.
+        private @NotNull Segment segment = Segment.NONE;
+        private Node<Key, Value> previous = this;
+        private Node<Key, Value> next = this;
+
+        private Node(Key key) {
+            this.key = key;
+        }
+
+        private static <Key, Value> @NotNull Node<Key, Value> sentinel() {
+            return new Node<>(null);
+        }
+
+        private void linkBefore(@NotNull Node<Key, Value> sentinel) {
+            previous = sentinel.previous;
+            next = sentinel;
+            sentinel.previous.next = this;
+            sentinel.previous = this;
+        }
+
+        private void unlink() {
+            previous.next = next;
+            next.previous = previous;
+            previous = this;
+            next = this;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package frechsack.prod.util.concurrent.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A lossy buffer of reads, that are replayed into an eviction policy later, so a read does not take the lock of the policy.
+ * <p>
+ * The buffer is striped by thread into rings of fixed size. A read, that finds its ring full or loses the race for a slot, is dropped,
+ * because the order of reads is only a hint for the policy. The rings are drained by a single thread at a time, that holds the lock of the policy.
+ * @param <Element> The type of the buffered elements.
+ */
+final class ReadBuffer<Element> {
+
+    private static final int RING_SIZE = 16;
+    private static final int RING_MASK = RING_SIZE - 1;
+
+    private final Ring<Element> @NotNull [] rings;
+
+    /**
+     * Creates a new ReadBuffer with a ring per processor.
+     */
+    @SuppressWarnings("unchecked")
+    ReadBuffer() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        final int ringCount = processors == 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+        this.rings = (Ring<Element>[]) new Ring<?>[ringCount];
+        for (int i = 0; i < ringCount; i++)
+            rings[i] = new Ring<>();
+    }
+
+    private static final class Ring<Element> {
+        private final @NotNull AtomicReferenceArray<Element> slots = new AtomicReferenceArray<>(RING_SIZE);
+        private final @NotNull AtomicLong tail = new AtomicLong();
+        // Only written by the draining thread.
+        private volatile long head;
+    }
+
+    /**
+     * Buffers the element.
+     * @param element The element.
+     * @return Returns true, if the ring of the calling thread is at least half full and should be drained.
+     */
+    boolean offer(@NotNull Element element) {
+        final var ring = rings[threadHash() & (rings.length - 1)];
+        final long head = ring.head;
+        final long tail = ring.tail.get();
+        final long size = tail - head;
+        if (size >= RING_SIZE)
+            return true;
+        if (ring.tail.compareAndSet(tail, tail + 1)) {
+            ring.slots.lazySet((int) (tail & RING_MASK), element);
+            return size + 1 >= RING_SIZE / 2;
+        }
+        return false;
+    }
+
+    /**
+     * Passes the buffered elements to the consumer and removes them. Must only be called by one thread at a time.
+     * @param consumer The consumer.
+     */
+    void drainTo(@NotNull Consumer<? super Element> consumer) {
+        for (var ring : rings) {
+            long head = ring.head;
+            final long tail = ring.tail.get();
+            for (; head < tail; head++) {
+                final int index = (int) (head & RING_MASK);
+                final Element element = ring.slots.get(index);
+                // The slot is claimed, but not yet written. It is drained next time.
+                if (element == null)
+                    break;
+                ring.slots.lazySet(index, null);
+                consumer.accept(element);
+            }
+            ring.head = head;
+        }
+    }
+
+    private static int threadHash() {
+        long hash = Thread.currentThread().threadId();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        return (int) (hash ^ (hash >>> 33));
+    }
+}
@@ -0,0 +1,79 @@
+package frechsack.prod.util.concurrent.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * Records the statistics of a cache. Implementations must be thread-safe.
+ * <p>
+ * Use {@link #disabled()} to record nothing, {@link #concurrent()} to record into contention-friendly counters
+ * and {@link #flightRecorded(String, StatsCounter)} to additionally emit Java Flight Recorder events.
+ */
+public interface StatsCounter {
+
+    /**
+     * Returns a StatsCounter, that records nothing. The returned instance is shared.
+     * @return Returns the StatsCounter.
+     */
+    static @NotNull StatsCounter disabled() {
+        return StatsCounterFactory.Disabled.INSTANCE;
+    }
+
+    /**
+     * Creates a new StatsCounter, that records into striped counters.
+     * @return Returns the created StatsCounter.
+     */
+    static @NotNull StatsCounter concurrent() {
+        return new StatsCounterFactory.Concurrent();
+    }
+
+    /**
+     * Creates a new StatsCounter, that records into the given StatsCounter and emits a Java Flight Recorder event for each load and eviction.
+     * Events are only created, if they are enabled in a running recording.
+     * @param cacheName The name of the cache, that is written into each event.
+     * @param delegate The StatsCounter, that records the statistics.
+     * @return Returns the created StatsCounter.
+     */
+    static @NotNull StatsCounter flightRecorded(@NotNull String cacheName, @NotNull StatsCounter delegate) {
+        return new StatsCounterFactory.FlightRecorded(Objects.requireNonNull(cacheName), Objects.requireNonNull(delegate));
+    }
+
+    /**
+     * Records a request, that was answered by a cached value.
+     */
+    void recordHit();
+
+    /**
+     * Records a request, that required a load.
+     */
+    void recordMiss();
+
+    /**
+     * Records a load, that returned a value.
+     * @param loadNanos The duration of the load in nanoseconds.
+     */
+    void recordLoadSuccess(long loadNanos);
+
+    /**
+     * Records a load, that threw an exception.
+     * @param loadNanos The duration of the load in nanoseconds.
+     */
+    void recordLoadFailure(long loadNanos);
+
+    /**
+     * Records an entry, that was evicted or expired.
+     */
+    void recordEviction();
+
+    /**
+     * Records a request, that had to wait for a load started by another caller.
+     */
+    void recordWait();
+
+    /**
+     * Returns a snapshot of the recorded statistics.
+     * @return Returns the snapshot.
+     */
+    @NotNull CacheStats snapshot();
+}
@@ -0,0 +1,189 @@
+package frechsack.prod.util.concurrent.cache;
+
+import frechsack.prod.util.concurrent.metric.LatencyHistogram;
+import frechsack.prod.util.concurrent.metric.StripedCounter;
+import jdk.jfr.*;
+import org.jetbrains.annotations.NotNull;
+
+class StatsCounterFactory {
+
+    private static final int HISTOGRAM_BUCKETS = Long.SIZE + 1;
+
+    private StatsCounterFactory() {}
+
+    enum Disabled implements StatsCounter {
+        INSTANCE;
+
+        @Override
+        public void recordHit() {}
+
+        @Override
+        public void recordMiss() {}
+
+        @Override
+        public void recordLoadSuccess(long loadNanos) {}
+
+        @Override
+        public void recordLoadFailure(long loadNanos) {}
+
+        @Override
+        public void recordEviction() {}
+
+        @Override
+        public void recordWait() {}
+
+        @Override
+        public @NotNull CacheStats snapshot() {
+            return new CacheStats(0, 0, 0, 0, 0, 0, 0, new long[HISTOGRAM_BUCKETS]);
+        }
+    }
+
+    static class Concurrent implements StatsCounter {
+
+        private final StripedCounter hitCount = new StripedCounter();
+        private final StripedCounter missCount = new StripedCounter();
+        private final StripedCounter loadSuccessCount = new StripedCounter();
+        private final StripedCounter loadFailureCount = new StripedCounter();
+        private final StripedCounter evictionCount = new StripedCounter();
+        private final StripedCounter waitCount = new StripedCounter();
+        // Precision zero records powers of two, like the histogram of the stats.
+        private final LatencyHistogram loadTimes = new LatencyHistogram(0);
+
+        @Override
+        public void recordHit() {
+            hitCount.increment();
+        }
+
+        @Override
+        public void recordMiss() {
+            missCount.increment();
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadNanos) {
+            loadSuccessCount.increment();
+            loadTimes.record(loadNanos);
+        }
+
+        @Override
+        public void recordLoadFailure(long loadNanos) {
+            loadFailureCount.increment();
+            loadTimes.record(loadNanos);
+        }
+
+        @Override
+        public void recordEviction() {
+            evictionCount.increment();
+        }
+
+        @Override
+        public void recordWait() {
+            waitCount.increment();
+        }
+
+        @Override
+        public @NotNull CacheStats snapshot() {
+            final var loads = loadTimes.snapshot();
+            final long[] histogram = new long[HISTOGRAM_BUCKETS];
+            for (int i = 0; i < loads.bucketCount(); i++)
+                histogram[Long.SIZE - Long.numberOfLeadingZeros(loads.lowerBound(i))] += loads.count(i);
+            return new CacheStats(
+                    hitCount.sum(),
+                    missCount.sum(),
+                    loadSuccessCount.sum(),
+                    loadFailureCount.sum(),
+                    loads.sum(),
+                    evictionCount.sum(),
+                    waitCount.sum(),
+                    histogram);
+        }
+    }
+
+    static class FlightRecorded implements StatsCounter {
+
+        private final String cacheName;
+        private final StatsCounter delegate;
+
+        FlightRecorded(String cacheName, StatsCounter delegate) {
+            this.cacheName = cacheName;
+            this.delegate = delegate;
+        }
+
+        private void commitLoad(long loadNanos, boolean isFailed) {
+            final var event = new CacheLoadEvent();
+            if (!event.isEnabled())
+                return;
+            event.cacheName = cacheName;
+            event.loadNanos = loadNanos;
+            event.failed = isFailed;
+            event.commit();
+        }
+
+        @Override
+        public void recordHit() {
+            delegate.recordHit();
+        }
+
+        @Override
+        public void recordMiss() {
+            delegate.recordMiss();
+        }
+
+        @Override
+        public void recordLoadSuccess(long loadNanos) {
+            delegate.recordLoadSuccess(loadNanos);
+            commitLoad(loadNanos, false);
+        }
+
+        @Override
+        public void recordLoadFailure(long loadNanos) {
+            delegate.recordLoadFailure(loadNanos);
+            commitLoad(loadNanos, true);
+        }
+
+        @Override
+        public void recordEviction() {
+            delegate.recordEviction();
+            final var event = new CacheEvictionEvent();
+            if (!event.isEnabled())
+                return;
+            event.cacheName = cacheName;
+            event.commit();
+        }
+
+        @Override
+        public void recordWait() {
+            delegate.recordWait();
+        }
+
+        @Override
+        public @NotNull CacheStats snapshot() {
+            return delegate.snapshot();
+        }
+    }
+
+    @Name("frechsack.cache.Load")
+    @Label("Cache Load")
+    @Category({"frechsack", "Cache"})
+    @StackTrace(false)
+    static class CacheLoadEvent extends Event {
+        @Label("Cache Name")
+        String cacheName;
+
+        @Label("Load Duration")
+        @Timespan(Timespan.NANOSECONDS)
+        long loadNanos;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("frechsack.cache.Eviction")
+    @Label("Cache Eviction")
+    @Category({"frechsack", "Cache"})
+    @StackTrace(false)
+    static class CacheEvictionEvent extends Event {
+        @Label("Cache Name")
+        String cacheName;
+    }
+}
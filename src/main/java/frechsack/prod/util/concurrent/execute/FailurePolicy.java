@@ -0,0 +1,15 @@
+package frechsack.prod.util.concurrent.execute;
+
+/**
+ * Decides what a once executed action does, after its execution threw an exception.
+ */
+public enum FailurePolicy {
+    /**
+     * The failure is forgotten and the next call executes the action again.
+     */
+    RETRY,
+    /**
+     * The failure is remembered and every later call throws the same exception, until the action is reset.
+     */
+    CACHE
+}
@@ -0,0 +1,134 @@
+package frechsack.prod.util.concurrent.execute;
+
+import frechsack.prod.util.concurrent.AsyncExecutors;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+/**
+ * A Function, that computes the output for each input only once on an {@link Executor} and returns a future of the output.
+ * Concurrent calls with the same input share one computation, no caller blocks while the output is computed.
+ * Null is allowed as input and as output.
+ * <p>
+ * Blocking functions, like remote lookups, should be run on an executor, that does not limit the amount of waiting tasks,
+ * like {@link java.util.concurrent.Executors#newVirtualThreadPerTaskExecutor()}.
+ * @param <InputType> The input type.
+ * @param <OutputType> The output type.
+ */
+public class OnceExecutedAsyncFunction<InputType, OutputType> implements Function<InputType, CompletableFuture<OutputType>> {
+
+    /**
+     * Replaces null as input, because the internal map does not allow null.
+     */
+    private static final Object NULL = new Object();
+
+    private final @NotNull ConcurrentHashMap<Object, CompletableFuture<OutputType>> values = new ConcurrentHashMap<>();
+    private final @NotNull Function<InputType, OutputType> function;
+    private final @NotNull Executor executor;
+    private final @NotNull FailurePolicy failurePolicy;
+
+    public OnceExecutedAsyncFunction(@NotNull Function<InputType, OutputType> function) {
+        this(function, AsyncExecutors::execute);
+    }
+
+    public OnceExecutedAsyncFunction(@NotNull Function<InputType, OutputType> function, @NotNull Executor executor) {
+        this(function, executor, FailurePolicy.RETRY);
+    }
+
+    /**
+     * Creates a new OnceExecutedAsyncFunction.
+     * @param function The function, that computes the outputs.
+     * @param executor The executor, that runs the function.
+     * @param failurePolicy Decides, if a failed computation is forgotten and computed again by the next call with the same input,
+     *                      or if the failed future is remembered like any other output.
+     */
+    public OnceExecutedAsyncFunction(@NotNull Function<InputType, OutputType> function, @NotNull Executor executor, @NotNull FailurePolicy failurePolicy) {
+        this.function = Objects.requireNonNull(function);
+        this.executor = Objects.requireNonNull(executor);
+        this.failurePolicy = Objects.requireNonNull(failurePolicy);
+    }
+
+    /**
+     * Checks if the output for the input was computed successfully.
+     * @param input The input.
+     * @return Returns true, if the output is present.
+     */
+    public boolean isExecuted(InputType input) {
+        final var future = values.get(mask(input));
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    /**
+     * Checks if the output for the input is currently computed.
+     * @param input The input.
+     * @return Returns true, if the computation is running.
+     */
+    public boolean isExecuting(InputType input) {
+        final var future = values.get(mask(input));
+        return future != null && !future.isDone();
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Forgets every output. Running computations are not cancelled, but their outputs are not remembered.
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * Returns a future of the output for the input. Completing or cancelling the returned future does not modify this function.
+     * @param input The input.
+     * @return Returns the future.
+     */
+    @Override
+    public CompletableFuture<OutputType> apply(InputType input) {
+        final var key = mask(input);
+        final var present = values.get(key);
+        if (present != null)
+            return present.copy();
+
+        final var created = new CompletableFuture<OutputType>();
+        final var running = values.putIfAbsent(key, created);
+        if (running != null)
+            return running.copy();
+
+        try {
+            executor.execute(() -> compute(key, input, created));
+        }
+        catch (RuntimeException e) {
+            fail(key, created, e);
+        }
+        return created.copy();
+    }
+
+    private void compute(@NotNull Object key, InputType input, @NotNull CompletableFuture<OutputType> future) {
+        final OutputType output;
+        try {
+            output = function.apply(input);
+        }
+        catch (Throwable e) {
+            fail(key, future, e);
+            return;
+        }
+        future.complete(output);
+    }
+
+    private void fail(@NotNull Object key, @NotNull CompletableFuture<OutputType> future, @NotNull Throwable error) {
+        // The future is removed first, so a caller, that sees the failure, can already trigger a new computation.
+        if (failurePolicy == FailurePolicy.RETRY)
+            values.remove(key, future);
+        future.completeExceptionally(error);
+    }
+
+    private static @NotNull Object mask(Object value) {
+        return value == null ? NULL : value;
+    }
+}
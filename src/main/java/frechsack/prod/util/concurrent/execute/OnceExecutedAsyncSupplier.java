@@ -0,0 +1,102 @@
+package frechsack.prod.util.concurrent.execute;
+
+import frechsack.prod.util.concurrent.AsyncExecutors;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * A Supplier, that computes its value only once on an {@link Executor} and returns a future of the value.
+ * Concurrent calls share one computation, no caller blocks while the value is computed.
+ * @param <ReturnType> The value type.
+ */
+public class OnceExecutedAsyncSupplier<ReturnType> implements Supplier<CompletableFuture<ReturnType>> {
+
+    private final @NotNull AtomicReference<CompletableFuture<ReturnType>> value = new AtomicReference<>();
+    private final @NotNull Supplier<ReturnType> supplier;
+    private final @NotNull Executor executor;
+    private final @NotNull FailurePolicy failurePolicy;
+
+    public OnceExecutedAsyncSupplier(@NotNull Supplier<ReturnType> supplier) {
+        this(supplier, AsyncExecutors::execute);
+    }
+
+    public OnceExecutedAsyncSupplier(@NotNull Supplier<ReturnType> supplier, @NotNull Executor executor) {
+        this(supplier, executor, FailurePolicy.RETRY);
+    }
+
+    /**
+     * Creates a new OnceExecutedAsyncSupplier.
+     * @param supplier The supplier, that computes the value.
+     * @param executor The executor, that runs the supplier.
+     * @param failurePolicy Decides, if a failed computation is forgotten and computed again by the next call, or if the failed future is remembered.
+     */
+    public OnceExecutedAsyncSupplier(@NotNull Supplier<ReturnType> supplier, @NotNull Executor executor, @NotNull FailurePolicy failurePolicy) {
+        this.supplier = Objects.requireNonNull(supplier);
+        this.executor = Objects.requireNonNull(executor);
+        this.failurePolicy = Objects.requireNonNull(failurePolicy);
+    }
+
+    public boolean isExecuted() {
+        final var future = value.get();
+        return future != null && future.isDone() && !future.isCompletedExceptionally();
+    }
+
+    public boolean isExecuting() {
+        final var future = value.get();
+        return future != null && !future.isDone();
+    }
+
+    /**
+     * Forgets the value. A running computation is not cancelled, but its value is not remembered.
+     */
+    public void reset() {
+        value.set(null);
+    }
+
+    /**
+     * Returns a future of the value. Completing or cancelling the returned future does not modify this supplier.
+     * @return Returns the future.
+     */
+    @Override
+    public CompletableFuture<ReturnType> get() {
+        final var current = value.get();
+        if (current != null)
+            return current.copy();
+
+        final var created = new CompletableFuture<ReturnType>();
+        while (!value.compareAndSet(null, created)) {
+            final var present = value.get();
+            if (present != null)
+                return present.copy();
+        }
+
+        try {
+            executor.execute(() -> {
+                final ReturnType result;
+                try {
+                    result = supplier.get();
+                }
+                catch (Throwable e) {
+                    fail(created, e);
+                    return;
+                }
+                created.complete(result);
+            });
+        }
+        catch (RuntimeException e) {
+            fail(created, e);
+        }
+        return created.copy();
+    }
+
+    private void fail(@NotNull CompletableFuture<ReturnType> future, @NotNull Throwable error) {
+        if (failurePolicy == FailurePolicy.RETRY)
+            value.compareAndSet(future, null);
+        future.completeExceptionally(error);
+    }
+}
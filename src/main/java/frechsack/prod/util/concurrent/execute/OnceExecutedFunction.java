@@ -1,42 +1,420 @@
 package frechsack.prod.util.concurrent.execute;
 
+import frechsack.prod.util.concurrent.cache.CacheStats;
+import frechsack.prod.util.concurrent.cache.LoadingCache;
+import frechsack.prod.util.concurrent.cache.StatsCounter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+/**
+ * A Function, that computes the output for each input only once and returns the remembered output on later calls.
+ * Null is allowed as input and as output.
+ * <p>
+ * By default every output is remembered until {@link #clear()} is called. A bounded function remembers a maximum amount of outputs
+ * and may forget them after a duration. The {@link Mode} decides, how concurrent calls are synchronized and how inputs are referenced.
+ * @param <InputType> The input type.
+ * @param <OutputType> The output type.
+ */
 public class OnceExecutedFunction<InputType, OutputType> implements Function<InputType, OutputType> {
 
-    private final @NotNull ConcurrentHashMap<InstanceHolder<InputType>, InstanceHolder<OutputType>> values = new ConcurrentHashMap<>();
+    /**
+     * Decides how an unbounded {@link OnceExecutedFunction} stores its outputs.
+     */
+    public enum Mode {
+        /**
+         * The output is computed while the lock of the internal map bin is held. Inputs, that share a bin, wait for each other.
+         */
+        COMPUTE_IN_LOCK,
+        /**
+         * The output is computed without holding a lock. Concurrent callers of the same input wait for a per-input future, callers of other inputs are not blocked.
+         */
+        COMPUTE_OUTSIDE_LOCK,
+        /**
+         * Inputs are weakly referenced. An output is forgotten, after its input was garbage collected.
+         * Inputs are compared by equality, a lookup allocates a short-lived key.
+         */
+        WEAK_KEYS
+    }
+
+    /**
+     * Replaces null as input and as output, because the internal maps do not allow null.
+     */
+    private static final Object NULL = new Object();
+
     private final @NotNull Function<InputType, OutputType> function;
+    private final @NotNull StatsCounter statsCounter;
+    private final @NotNull Memo memo;
 
     public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function) {
+        this(function, StatsCounter.disabled());
+    }
+
+    public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function, @NotNull StatsCounter statsCounter) {
+        this(function, Mode.COMPUTE_IN_LOCK, statsCounter);
+    }
+
+    public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function, @NotNull Mode mode) {
+        this(function, mode, StatsCounter.disabled());
+    }
+
+    public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function, @NotNull Mode mode, @NotNull StatsCounter statsCounter) {
         this.function = Objects.requireNonNull(function);
+        this.statsCounter = Objects.requireNonNull(statsCounter);
+        this.memo = switch (Objects.requireNonNull(mode)) {
+            case COMPUTE_IN_LOCK -> new InLockMemo();
+            case COMPUTE_OUTSIDE_LOCK -> new OutsideLockMemo();
+            case WEAK_KEYS -> new WeakKeyMemo();
+        };
+    }
+
+    public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function, long maximumSize, @Nullable Duration expireAfterWrite) {
+        this(function, maximumSize, expireAfterWrite, StatsCounter.disabled());
+    }
+
+    /**
+     * Creates a new bounded OnceExecutedFunction. The output is computed without holding a lock, like in {@link Mode#COMPUTE_OUTSIDE_LOCK}.
+     * @param function The function, that computes the outputs.
+     * @param maximumSize The maximum amount of remembered outputs. Outputs, that were used least recently, are forgotten first.
+     * @param expireAfterWrite The duration, after which an output is forgotten. If null, outputs are only forgotten to respect the maximum size.
+     * @param statsCounter The StatsCounter, that records the statistics of this function.
+     */
+    public OnceExecutedFunction(@NotNull Function<InputType, OutputType> function, long maximumSize, @Nullable Duration expireAfterWrite, @NotNull StatsCounter statsCounter) {
+        this.function = Objects.requireNonNull(function);
+        this.statsCounter = Objects.requireNonNull(statsCounter);
+        this.memo = new BoundedMemo(maximumSize, expireAfterWrite);
     }
 
     public boolean isExecuted(InputType input) {
-        return values.containsKey(input);
+        return memo.contains(mask(input));
     }
 
     public int size() {
-        return values.size();
+        return memo.size();
     }
 
     public void clear() {
-        values.clear();
+        memo.clear();
+    }
+
+    /**
+     * Returns a snapshot of the statistics recorded by this function. The statistics are only recorded, if this function was created with an enabled {@link StatsCounter}.
+     * @return Returns the snapshot.
+     */
+    public @NotNull CacheStats stats() {
+        return statsCounter.snapshot();
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public OutputType apply(InputType input) {
-        final var inputHolder = new InstanceHolder<>(input);
-        return values.computeIfAbsent(inputHolder, __ -> new InstanceHolder<>(function.apply(inputHolder.value))).value;
+        final Object output = memo.get(mask(input));
+        return output == NULL ? null : (OutputType) output;
+    }
+
+    private static @NotNull Object mask(@Nullable Object value) {
+        return value == null ? NULL : value;
+    }
+
+    /**
+     * Computes the masked output for the masked input.
+     */
+    @SuppressWarnings("unchecked")
+    private @NotNull Object computeUnrecorded(@NotNull Object key) {
+        return mask(function.apply(key == NULL ? null : (InputType) key));
+    }
+
+    /**
+     * Computes the masked output for the masked input and records the load.
+     */
+    private @NotNull Object compute(@NotNull Object key) {
+        final long loadStartNanos = System.nanoTime();
+        try {
+            final var output = computeUnrecorded(key);
+            statsCounter.recordLoadSuccess(System.nanoTime() - loadStartNanos);
+            return output;
+        }
+        catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - loadStartNanos);
+            throw e;
+        }
+    }
+
+    private interface Memo {
+        @NotNull Object get(@NotNull Object key);
+
+        boolean contains(@NotNull Object key);
+
+        int size();
+
+        void clear();
+    }
+
+    private final class InLockMemo implements Memo {
+
+        private final @NotNull ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<>();
+
+        @Override
+        public @NotNull Object get(@NotNull Object key) {
+            final var present = values.get(key);
+            if (present != null) {
+                statsCounter.recordHit();
+                return present;
+            }
+            final boolean[] isComputed = { false };
+            final var output = values.computeIfAbsent(key, __ -> {
+                isComputed[0] = true;
+                statsCounter.recordMiss();
+                return compute(key);
+            });
+            if (!isComputed[0]) {
+                // Another caller computed the output, while this caller was waiting for it.
+                statsCounter.recordWait();
+                statsCounter.recordHit();
+            }
+            return output;
+        }
+
+        @Override
+        public boolean contains(@NotNull Object key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+        }
+    }
+
+    private final class OutsideLockMemo implements Memo {
+
+        /**
+         * Maps an input to its output, or to a {@link Pending} future while the output is computed.
+         */
+        private final @NotNull ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<>();
+        /**
+         * The amount of computed outputs in the map, so the size does not count the pending futures.
+         */
+        private final @NotNull AtomicInteger outputCount = new AtomicInteger();
+
+        @Override
+        public @NotNull Object get(@NotNull Object key) {
+            while (true) {
+                final var present = values.get(key);
+                if (present instanceof Pending pending) {
+                    // The computing thread would wait for itself.
+                    if (pending.owner == Thread.currentThread())
+                        throw new IllegalStateException("The function recursively called itself with the same input.");
+                    statsCounter.recordWait();
+                    // A failed computation is not a hit.
+                    final Object output = pending.await();
+                    statsCounter.recordHit();
+                    return output;
+                }
+                if (present != null) {
+                    statsCounter.recordHit();
+                    return present;
+                }
+
+                final var pending = new Pending(Thread.currentThread());
+                if (values.putIfAbsent(key, pending) != null)
+                    continue;
+                statsCounter.recordMiss();
+                final Object output;
+                try {
+                    output = compute(key);
+                }
+                catch (RuntimeException | Error e) {
+                    values.remove(key, pending);
+                    pending.completeExceptionally(e);
+                    throw e;
+                }
+                if (values.replace(key, pending, output))
+                    outputCount.incrementAndGet();
+                pending.complete(output);
+                return output;
+            }
+        }
+
+        @Override
+        public boolean contains(@NotNull Object key) {
+            final var present = values.get(key);
+            return present != null && !(present instanceof Pending);
+        }
+
+        @Override
+        public int size() {
+            return outputCount.get();
+        }
+
+        @Override
+        public void clear() {
+            for (var entry : values.entrySet())
+                if (values.remove(entry.getKey(), entry.getValue()) && !(entry.getValue() instanceof Pending))
+                    outputCount.decrementAndGet();
+        }
+    }
+
+    private static final class Pending extends CompletableFuture<Object> {
+        private final @NotNull Thread owner;
+
+        private Pending(@NotNull Thread owner) {
+            this.owner = owner;
+        }
+
+        private @NotNull Object await() {
+            try {
+                return join();
+            }
+            catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re)
+                    throw re;
+                if (e.getCause() instanceof Error error)
+                    throw error;
+                throw e;
+            }
+        }
+    }
+
+    private final class WeakKeyMemo implements Memo {
+
+        private final @NotNull ConcurrentHashMap<Object, Object> values = new ConcurrentHashMap<>();
+        private final @NotNull ReferenceQueue<Object> collectedKeys = new ReferenceQueue<>();
+
+        /**
+         * Null can not be weakly referenced, the masked null is used as a strong key instead.
+         */
+        private @NotNull Object lookupKey(@NotNull Object key) {
+            return key == NULL ? NULL : new LookupKey(key);
+        }
+
+        private void expungeCollectedKeys() {
+            Object key;
+            while ((key = collectedKeys.poll()) != null)
+                if (values.remove(key) != null)
+                    statsCounter.recordEviction();
+        }
+
+        @Override
+        public @NotNull Object get(@NotNull Object key) {
+            final var present = values.get(lookupKey(key));
+            if (present != null) {
+                statsCounter.recordHit();
+                return present;
+            }
+            expungeCollectedKeys();
+            final boolean[] isComputed = { false };
+            final var output = values.computeIfAbsent(key == NULL ? NULL : new WeakKey(key, collectedKeys), __ -> {
+                isComputed[0] = true;
+                statsCounter.recordMiss();
+                return compute(key);
+            });
+            if (!isComputed[0]) {
+                statsCounter.recordWait();
+                statsCounter.recordHit();
+            }
+            return output;
+        }
+
+        @Override
+        public boolean contains(@NotNull Object key) {
+            return values.containsKey(lookupKey(key));
+        }
+
+        @Override
+        public int size() {
+            expungeCollectedKeys();
+            return values.size();
+        }
+
+        @Override
+        public void clear() {
+            values.clear();
+            while (collectedKeys.poll() != null);
+        }
+    }
+
+    private static final class WeakKey extends WeakReference<Object> {
+        private final int hash;
+
+        private WeakKey(@NotNull Object key, @NotNull ReferenceQueue<Object> queue) {
+            super(key, queue);
+            this.hash = key.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            final var key = get();
+            if (key == null)
+                return false;
+            if (obj instanceof WeakKey weakKey)
+                return key.equals(weakKey.get());
+            return obj instanceof LookupKey lookupKey && key.equals(lookupKey.key);
+        }
     }
 
-    private record InstanceHolder<OutputType>(OutputType value) {
+    private record LookupKey(@NotNull Object key) {
         @Override
         public int hashCode() {
-            return value == null ? 0 : value.hashCode();
+            return key.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof WeakKey weakKey) {
+                final var other = weakKey.get();
+                return other != null && key.equals(other);
+            }
+            return obj instanceof LookupKey lookupKey && key.equals(lookupKey.key);
+        }
+    }
+
+    private final class BoundedMemo implements Memo {
+
+        private final @NotNull LoadingCache<Object, Object> values;
+
+        private BoundedMemo(long maximumSize, @Nullable Duration expireAfterWrite) {
+            this.values = new LoadingCache<>(OnceExecutedFunction.this::computeUnrecorded, maximumSize, (key, value) -> 1, expireAfterWrite, statsCounter);
+        }
+
+        @Override
+        public @NotNull Object get(@NotNull Object key) {
+            return values.get(key);
+        }
+
+        @Override
+        public boolean contains(@NotNull Object key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return values.size();
+        }
+
+        @Override
+        public void clear() {
+            values.invalidateAll();
         }
     }
 }
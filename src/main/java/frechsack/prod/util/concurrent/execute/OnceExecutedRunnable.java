@@ -1,50 +1,45 @@
 package frechsack.prod.util.concurrent.execute;
 
-import frechsack.prod.util.concurrent.BooleanLatch;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Objects;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A Runnable, that executes its action only once. It shares the lock-free state machine of {@link OnceExecutedSupplier}.
+ */
 public class OnceExecutedRunnable implements Runnable {
-    private final @NotNull ReentrantLock lock = new ReentrantLock();
-    private final @NotNull Runnable action;
-    private boolean isExecuted = false;
+    private final @NotNull OnceExecutedSupplier<Void> execution;
 
     public OnceExecutedRunnable(@NotNull Runnable action) {
-        this.action = Objects.requireNonNull(action);
+        this(action, FailurePolicy.RETRY);
+    }
+
+    public OnceExecutedRunnable(@NotNull Runnable action, @NotNull FailurePolicy failurePolicy) {
+        Objects.requireNonNull(action);
+        this.execution = new OnceExecutedSupplier<>(() -> {
+            action.run();
+            return null;
+        }, failurePolicy);
+    }
+
+    public @NotNull OnceExecutedSupplier.State state() {
+        return execution.state();
     }
 
     public boolean isExecuted() {
-        return isExecuted;
+        return execution.isExecuted();
     }
 
     public boolean isExecuting() {
-        return lock.isLocked();
+        return execution.isExecuting();
     }
 
     public void reset() {
-        try {
-            lock.lock();
-            isExecuted = false;
-        }
-        finally {
-            lock.unlock();
-        }
+        execution.reset();
     }
 
     @Override
     public void run() {
-        if (isExecuted) return;
-        try {
-            lock.lock();
-            if (!isExecuted) {
-                action.run();
-                isExecuted = true;
-            }
-        }
-        finally {
-            lock.unlock();
-        }
+        execution.get();
     }
 }
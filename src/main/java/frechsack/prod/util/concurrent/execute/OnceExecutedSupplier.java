@@ -2,52 +2,222 @@ package frechsack.prod.util.concurrent.execute;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.Objects;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.Supplier;
 
+/**
+ * A Supplier, that executes its action only once and returns the remembered value on later calls.
+ * <p>
+ * The supplier is a lock-free state machine: After the value is present, a call is a single acquiring read.
+ * Callers, that arrive while the value is computed, are parked until the computation is done. Parking does not pin the carrier of a virtual thread.
+ * A failed computation is handled by the {@link FailurePolicy}.
+ * @param <ReturnType> The value type.
+ */
 public class OnceExecutedSupplier<ReturnType> implements Supplier<ReturnType> {
 
-    private final @NotNull ReentrantLock lock = new ReentrantLock();
+    /**
+     * The states of an {@link OnceExecutedSupplier}.
+     */
+    public enum State {
+        /**
+         * The action was not executed yet, or the supplier was reset.
+         */
+        NEW,
+        /**
+         * The action is currently executed.
+         */
+        RUNNING,
+        /**
+         * The action was executed and its value is remembered.
+         */
+        DONE,
+        /**
+         * The action threw an exception, that is remembered.
+         */
+        FAILED
+    }
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(OnceExecutedSupplier.class, "state", Object.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final @NotNull Supplier<ReturnType> supplier;
+    private final @NotNull FailurePolicy failurePolicy;
 
-    private ReturnType value;
-    private boolean isExecuted = false;
+    /**
+     * The current state. Null if NEW, otherwise an instance of {@link Running}, {@link Done} or {@link Failed}.
+     */
+    @SuppressWarnings("unused")
+    private volatile Object state;
 
     public OnceExecutedSupplier(@NotNull Supplier<ReturnType> supplier) {
+        this(supplier, FailurePolicy.RETRY);
+    }
+
+    public OnceExecutedSupplier(@NotNull Supplier<ReturnType> supplier, @NotNull FailurePolicy failurePolicy) {
         this.supplier = Objects.requireNonNull(supplier);
+        this.failurePolicy = Objects.requireNonNull(failurePolicy);
+    }
+
+    public @NotNull State state() {
+        final var current = STATE.getAcquire(this);
+        if (current instanceof Done) return State.DONE;
+        if (current instanceof Running) return State.RUNNING;
+        if (current instanceof Failed) return State.FAILED;
+        return State.NEW;
     }
 
     public boolean isExecuted() {
-        return isExecuted;
+        return STATE.getAcquire(this) instanceof Done;
     }
 
     public boolean isExecuting() {
-        return lock.isLocked();
+        return STATE.getAcquire(this) instanceof Running;
     }
 
+    /**
+     * Forgets the remembered value or failure. If the action is currently executed, this call waits for the execution to finish.
+     */
     public void reset() {
-        try {
-            lock.lock();
-            isExecuted = false;
-        }
-        finally {
-            lock.unlock();
+        while (true) {
+            final var current = STATE.getAcquire(this);
+            if (current == null)
+                return;
+            if (current instanceof Running running)
+                running.await();
+            else if (STATE.compareAndSet(this, current, null))
+                return;
         }
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public ReturnType get() {
-        if (isExecuted) return value;
+        final var current = STATE.getAcquire(this);
+        if (current instanceof Done done)
+            return (ReturnType) done.value;
+        return getSlow(current);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ReturnType getSlow(Object current) {
+        while (true) {
+            if (current instanceof Done done)
+                return (ReturnType) done.value;
+            if (current instanceof Failed failed)
+                throw failed.rethrow();
+            if (current instanceof Running running) {
+                if (running.owner == Thread.currentThread())
+                    throw new IllegalStateException("The action recursively called its own supplier.");
+                running.await();
+            }
+            else {
+                final var running = new Running(Thread.currentThread());
+                if (STATE.compareAndSet(this, null, running))
+                    return execute(running);
+            }
+            current = STATE.getAcquire(this);
+        }
+    }
+
+    private ReturnType execute(@NotNull Running running) {
         try {
-            lock.lock();
-            if (isExecuted) return value;
-            value = supplier.get();
-            isExecuted = true;
+            final var value = supplier.get();
+            STATE.setRelease(this, new Done(value));
             return value;
         }
+        catch (Throwable e) {
+            // Checked exceptions may be thrown sneakily by the supplier, they must not leave the state running.
+            STATE.setRelease(this, failurePolicy == FailurePolicy.CACHE ? new Failed(e) : null);
+            throw e;
+        }
         finally {
-            lock.unlock();
+            running.release();
+        }
+    }
+
+    private record Done(Object value) {}
+
+    private record Failed(@NotNull Throwable error) {
+        private @NotNull RuntimeException rethrow() {
+            if (error instanceof Error e)
+                throw e;
+            return error instanceof RuntimeException re ? re : new RuntimeException(error);
+        }
+    }
+
+    private static final class Running {
+
+        private static final VarHandle WAITERS;
+        private static final WaitNode RELEASED = new WaitNode(null);
+
+        static {
+            try {
+                WAITERS = MethodHandles.lookup().findVarHandle(Running.class, "waiters", WaitNode.class);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private final @NotNull Thread owner;
+
+        /**
+         * A stack of parked callers. Equal to {@link #RELEASED}, after the execution finished.
+         */
+        @SuppressWarnings("unused")
+        private volatile WaitNode waiters;
+
+        private Running(@NotNull Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Parks the calling thread, until the execution finished. Interrupts are remembered and restored afterwards.
+         */
+        private void await() {
+            final var node = new WaitNode(Thread.currentThread());
+            boolean isInterrupted = false;
+            while (true) {
+                final var head = (WaitNode) WAITERS.getAcquire(this);
+                if (head == RELEASED)
+                    break;
+                node.next = head;
+                if (WAITERS.compareAndSet(this, head, node)) {
+                    while (WAITERS.getAcquire(this) != RELEASED) {
+                        LockSupport.park(this);
+                        isInterrupted |= Thread.interrupted();
+                    }
+                    break;
+                }
+            }
+            if (isInterrupted)
+                Thread.currentThread().interrupt();
+        }
+
+        private void release() {
+            var head = (WaitNode) WAITERS.getAndSet(this, RELEASED);
+            for (; head != null; head = head.next)
+                LockSupport.unpark(head.thread);
+        }
+    }
+
+    private static final class WaitNode {
+        private final Thread thread;
+        private WaitNode next;
+
+        private WaitNode(Thread thread) {
+            this.thread = thread;
         }
     }
 }
@@ -0,0 +1,96 @@
+package frechsack.prod.util.concurrent.metric;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tracks the maximum or minimum of values, that are recorded by many threads. Implementation is lock-free and thread-safe.
+ * <p>
+ * Each thread records into the shard of its stripe. A value, that does not exceed the extremum of the shard, is rejected by a single read,
+ * so recording is mostly free of writes, once the extremum settled. Reading the extremum compares all shards.
+ */
+public final class ExtremumTracker {
+
+    private final boolean isMaximum;
+    private final long identity;
+    private final PaddedCell @NotNull [] shards;
+
+    private ExtremumTracker(boolean isMaximum) {
+        this.isMaximum = isMaximum;
+        this.identity = isMaximum ? Long.MIN_VALUE : Long.MAX_VALUE;
+        this.shards = new PaddedCell[PaddedCell.stripes()];
+        for (int i = 0; i < shards.length; i++)
+            shards[i] = new PaddedCell(identity);
+    }
+
+    /**
+     * Creates a new ExtremumTracker, that tracks the maximum. Until a value is recorded, the maximum is {@link Long#MIN_VALUE}.
+     * @return Returns the created tracker.
+     */
+    public static @NotNull ExtremumTracker maximum() {
+        return new ExtremumTracker(true);
+    }
+
+    /**
+     * Creates a new ExtremumTracker, that tracks the minimum. Until a value is recorded, the minimum is {@link Long#MAX_VALUE}.
+     * @return Returns the created tracker.
+     */
+    public static @NotNull ExtremumTracker minimum() {
+        return new ExtremumTracker(false);
+    }
+
+    private boolean isBetter(long value, long current) {
+        return isMaximum ? value > current : value < current;
+    }
+
+    /**
+     * Records the value.
+     * @param value The value.
+     */
+    public void record(long value) {
+        final var shard = shards[PaddedCell.threadHash() & (shards.length - 1)];
+        long current;
+        while (isBetter(value, current = shard.get()))
+            if (shard.compareAndSet(current, value))
+                return;
+    }
+
+    /**
+     * Returns the extremum of all recorded values.
+     * @return Returns the extremum, or the identity, if no value was recorded.
+     */
+    public long get() {
+        long extremum = identity;
+        for (var shard : shards) {
+            final long value = shard.get();
+            if (isBetter(value, extremum))
+                extremum = value;
+        }
+        return extremum;
+    }
+
+    /**
+     * Returns the extremum of all recorded values and resets the tracker. Values, that are recorded concurrently, are either included or kept.
+     * @return Returns the extremum, or the identity, if no value was recorded.
+     */
+    public long getThenReset() {
+        long extremum = identity;
+        for (var shard : shards) {
+            final long value = shard.getAndSet(identity);
+            if (isBetter(value, extremum))
+                extremum = value;
+        }
+        return extremum;
+    }
+
+    /**
+     * Resets the tracker, as if no value was recorded.
+     */
+    public void reset() {
+        getThenReset();
+    }
+
+    @Override
+    public String toString() {
+        return (isMaximum ? "max=" : "min=") + get();
+    }
+}
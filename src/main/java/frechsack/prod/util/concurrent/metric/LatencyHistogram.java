@@ -0,0 +1,298 @@
+package frechsack.prod.util.concurrent.metric;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records values, like latencies in nanoseconds, into logarithmic buckets with linear sub-buckets. Implementation is lock-free and thread-safe.
+ * <p>
+ * Each power of two is split into 2^precision sub-buckets, so the relative error of a value is at most 2^-precision over the whole range of long.
+ * Values below 2^precision are recorded exactly. Negative values are recorded as zero.
+ * Recording is a single atomic increment of a fixed bucket and allocates nothing.
+ * <p>
+ * {@link #snapshot()} copies the buckets into an immutable {@link Snapshot}. Snapshots of histograms with the same precision can be merged,
+ * for example to combine the histograms of multiple threads, nodes or intervals.
+ */
+public final class LatencyHistogram {
+
+    private static final int DEFAULT_PRECISION = 5;
+    private static final int MAX_PRECISION = 10;
+
+    private final int precision;
+    private final @NotNull AtomicLongArray counts;
+    private final @NotNull StripedCounter sum = new StripedCounter();
+    private final @NotNull ExtremumTracker min = ExtremumTracker.minimum();
+    private final @NotNull ExtremumTracker max = ExtremumTracker.maximum();
+
+    /**
+     * Creates a new LatencyHistogram with a relative error of about three percent.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new LatencyHistogram.
+     * @param precision The amount of bits of a value, that are kept, between zero and ten. Zero records powers of two only. Each bit doubles the memory.
+     */
+    public LatencyHistogram(int precision) {
+        checkPrecision(precision);
+        this.precision = precision;
+        this.counts = new AtomicLongArray(bucketCount(precision));
+    }
+
+    private static void checkPrecision(int precision) {
+        if (precision < 0 || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("The precision must be between zero and " + MAX_PRECISION + ".");
+    }
+
+    private static int bucketCount(int precision) {
+        return (Long.SIZE - precision) << precision;
+    }
+
+    /**
+     * Returns the index of the bucket, that contains the value.
+     * @param value The value. Must not be negative.
+     * @param precision The precision.
+     * @return Returns the index.
+     */
+    static int bucketIndex(long value, int precision) {
+        if (value < 1L << precision)
+            return (int) value;
+        final int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - precision)) - (1 << precision);
+        return ((exponent - precision + 1) << precision) + subBucket;
+    }
+
+    /**
+     * Returns the lowest value of the bucket.
+     * @param index The index of the bucket.
+     * @param precision The precision.
+     * @return Returns the lowest value.
+     */
+    static long lowerBound(int index, int precision) {
+        if (index < 1 << precision)
+            return index;
+        final int exponent = index >>> precision;
+        final long subBucket = index & ((1 << precision) - 1);
+        return ((1L << precision) + subBucket) << (exponent - 1);
+    }
+
+    /**
+     * Returns the highest value of the bucket.
+     * @param index The index of the bucket.
+     * @param precision The precision.
+     * @return Returns the highest value.
+     */
+    static long upperBound(int index, int precision) {
+        if (index < 1 << precision)
+            return index;
+        // Overflows to Long.MAX_VALUE for the last bucket.
+        return lowerBound(index, precision) + (1L << ((index >>> precision) - 1)) - 1;
+    }
+
+    /**
+     * Records the value.
+     * @param value The value.
+     */
+    public void record(long value) {
+        final long recorded = Math.max(0, value);
+        counts.getAndIncrement(bucketIndex(recorded, precision));
+        sum.add(recorded);
+        min.record(recorded);
+        max.record(recorded);
+    }
+
+    /**
+     * Returns the precision of this histogram.
+     * @return Returns the amount of bits, that are kept.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Copies the recorded values into a snapshot. Values, that are recorded concurrently, may be missing in some of the statistics of the snapshot.
+     * @return Returns the snapshot.
+     */
+    public @NotNull Snapshot snapshot() {
+        final long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = counts.get(i);
+        return new Snapshot(precision, copy, sum.sum(), min.get(), max.get());
+    }
+
+    /**
+     * Copies the recorded values into a snapshot and resets this histogram. Values, that are recorded concurrently, are either included or kept.
+     * @return Returns the snapshot.
+     */
+    public @NotNull Snapshot snapshotThenReset() {
+        final long[] copy = new long[counts.length()];
+        for (int i = 0; i < copy.length; i++)
+            copy[i] = counts.getAndSet(i, 0);
+        return new Snapshot(precision, copy, sum.sumThenReset(), min.getThenReset(), max.getThenReset());
+    }
+
+    /**
+     * Resets this histogram, as if no value was recorded.
+     */
+    public void reset() {
+        snapshotThenReset();
+    }
+
+    /**
+     * An immutable copy of the buckets of a histogram.
+     */
+    public static final class Snapshot {
+        private final int precision;
+        private final long @NotNull [] counts;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+
+        private Snapshot(int precision, long @NotNull [] counts, long sum, long min, long max) {
+            this.precision = precision;
+            this.counts = counts;
+            this.count = Arrays.stream(counts).sum();
+            this.sum = sum;
+            this.min = count == 0 ? 0 : min;
+            this.max = count == 0 ? 0 : max;
+        }
+
+        /**
+         * Creates a new Snapshot, that contains no value.
+         * @param precision The precision.
+         * @return Returns the created snapshot.
+         */
+        public static @NotNull Snapshot empty(int precision) {
+            checkPrecision(precision);
+            return new Snapshot(precision, new long[LatencyHistogram.bucketCount(precision)], 0, 0, 0);
+        }
+
+        public int precision() {
+            return precision;
+        }
+
+        /**
+         * Returns the amount of recorded values.
+         * @return Returns the amount.
+         */
+        public long count() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of the recorded values.
+         * @return Returns the sum.
+         */
+        public long sum() {
+            return sum;
+        }
+
+        /**
+         * Returns the smallest recorded value, or zero if the snapshot is empty.
+         * @return Returns the smallest value.
+         */
+        public long min() {
+            return min;
+        }
+
+        /**
+         * Returns the largest recorded value, or zero if the snapshot is empty.
+         * @return Returns the largest value.
+         */
+        public long max() {
+            return max;
+        }
+
+        /**
+         * Returns the average of the recorded values, or zero if the snapshot is empty.
+         * @return Returns the average.
+         */
+        public double mean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the value, that is not exceeded by the given fraction of recorded values.
+         * The value is the highest value of its bucket, limited by the recorded minimum and maximum.
+         * @param quantile The fraction, between zero and one. For example 0.99 for the 99th percentile.
+         * @return Returns the value, or zero if the snapshot is empty.
+         */
+        public long valueAtQuantile(double quantile) {
+            if (!(quantile >= 0 && quantile <= 1))
+                throw new IllegalArgumentException("The quantile must be between zero and one.");
+            if (count == 0)
+                return 0;
+            final long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long cumulated = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulated += counts[i];
+                if (cumulated >= rank)
+                    return Math.max(min, Math.min(max, upperBound(i)));
+            }
+            return max;
+        }
+
+        /**
+         * Returns the amount of buckets.
+         * @return Returns the amount.
+         */
+        public int bucketCount() {
+            return counts.length;
+        }
+
+        /**
+         * Returns the amount of values in the bucket.
+         * @param index The index of the bucket.
+         * @return Returns the amount.
+         */
+        public long count(int index) {
+            return counts[index];
+        }
+
+        /**
+         * Returns the lowest value, that is recorded into the bucket.
+         * @param index The index of the bucket.
+         * @return Returns the lowest value.
+         */
+        public long lowerBound(int index) {
+            return LatencyHistogram.lowerBound(index, precision);
+        }
+
+        /**
+         * Returns the highest value, that is recorded into the bucket.
+         * @param index The index of the bucket.
+         * @return Returns the highest value.
+         */
+        public long upperBound(int index) {
+            return LatencyHistogram.upperBound(index, precision);
+        }
+
+        /**
+         * Merges this snapshot with another snapshot.
+         * @param other The other snapshot. Must have the same precision.
+         * @return Returns a new snapshot, that contains the values of both snapshots.
+         */
+        public @NotNull Snapshot merge(@NotNull Snapshot other) {
+            if (other.precision != precision)
+                throw new IllegalArgumentException("The snapshots must have the same precision.");
+            if (other.count == 0)
+                return this;
+            if (count == 0)
+                return other;
+            final long[] merged = new long[counts.length];
+            for (int i = 0; i < merged.length; i++)
+                merged[i] = counts[i] + other.counts[i];
+            return new Snapshot(precision, merged, sum + other.sum, Math.min(min, other.min), Math.max(max, other.max));
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{count=" + count + ", mean=" + mean() + ", p50=" + valueAtQuantile(0.5) + ", p99=" + valueAtQuantile(0.99) + ", max=" + max + '}';
+        }
+    }
+}
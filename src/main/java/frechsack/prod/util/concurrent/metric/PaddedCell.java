@@ -0,0 +1,78 @@
+package frechsack.prod.util.concurrent.metric;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A long value, that is padded to occupy its own cache line, so writes to neighbouring cells do not invalidate each other.
+ * The padding is declared in the super- and subclass, because the JVM does not reorder fields across a class hierarchy.
+ */
+final class PaddedCell extends PaddedCellValue {
+
+    @SuppressWarnings("unused")
+    private long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    private static final VarHandle VALUE;
+
+    static {
+        try {
+            VALUE = MethodHandles.lookup().findVarHandle(PaddedCellValue.class, "value", long.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    PaddedCell(long value) {
+        this.value = value;
+    }
+
+    /**
+     * Returns the amount of cells for structures, that stripe their state by thread. A power of two, that is at least the amount of processors.
+     * @return Returns the amount of cells.
+     */
+    static int stripes() {
+        final int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        return processors == 1 ? 1 : Integer.highestOneBit(processors - 1) << 1;
+    }
+
+    /**
+     * Returns a well spread hash of the current thread, so virtual threads with consecutive ids use different cells.
+     * @return Returns the hash.
+     */
+    static int threadHash() {
+        long hash = Thread.currentThread().threadId();
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return (int) (hash ^ (hash >>> 33));
+    }
+
+    long get() {
+        return value;
+    }
+
+    void set(long value) {
+        this.value = value;
+    }
+
+    long getAndAdd(long delta) {
+        return (long) VALUE.getAndAdd(this, delta);
+    }
+
+    long getAndSet(long value) {
+        return (long) VALUE.getAndSet(this, value);
+    }
+
+    boolean compareAndSet(long expected, long value) {
+        return VALUE.compareAndSet(this, expected, value);
+    }
+}
+
+abstract class PaddedCellLeftPadding {
+    @SuppressWarnings("unused")
+    private long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class PaddedCellValue extends PaddedCellLeftPadding {
+    volatile long value;
+}
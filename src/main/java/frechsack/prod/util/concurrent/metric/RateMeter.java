@@ -0,0 +1,109 @@
+package frechsack.prod.util.concurrent.metric;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Measures the rate of events as exponentially weighted moving average. Older events decay, so the rate follows changes of the load within the window.
+ * <p>
+ * Events are added to a striped counter. Once per tick, the counted events are folded into the average. The tick is taken by the caller,
+ * that notices it first, so no background thread is required. Idle ticks decay the average without events.
+ * Marking is lock-free, the folding of a tick is guarded by a lock, that other callers do not wait for.
+ */
+public final class RateMeter {
+
+    private final @NotNull StripedCounter uncounted = new StripedCounter();
+    private final @NotNull StripedCounter count = new StripedCounter();
+    private final @NotNull ReentrantLock tickLock = new ReentrantLock();
+    private final long tickNanos;
+    private final double alpha;
+    private volatile long lastTickNanos;
+    // The rate in events per nanosecond. Negative, until the first tick.
+    private volatile double rate = -1;
+
+    /**
+     * Creates a new RateMeter, that averages over the window and ticks every second.
+     * @param window The window. After a window, the weight of an event decayed to 1/e.
+     */
+    public RateMeter(@NotNull Duration window) {
+        this(window, Duration.ofSeconds(1));
+    }
+
+    /**
+     * Creates a new RateMeter.
+     * @param window The window. After a window, the weight of an event decayed to 1/e.
+     * @param tickInterval The interval, in which events are folded into the average. The rate changes with this precision.
+     */
+    public RateMeter(@NotNull Duration window, @NotNull Duration tickInterval) {
+        final long windowNanos = Objects.requireNonNull(window).toNanos();
+        this.tickNanos = Objects.requireNonNull(tickInterval).toNanos();
+        if (tickNanos <= 0 || windowNanos < tickNanos)
+            throw new IllegalArgumentException("The tick interval must be positive and must not exceed the window.");
+        this.alpha = 1 - Math.exp(-(double) tickNanos / windowNanos);
+        this.lastTickNanos = System.nanoTime();
+    }
+
+    /**
+     * Marks an event.
+     */
+    public void mark() {
+        mark(1);
+    }
+
+    /**
+     * Marks the amount of events.
+     * @param events The amount of events.
+     */
+    public void mark(long events) {
+        tickIfNecessary();
+        uncounted.add(events);
+        count.add(events);
+    }
+
+    /**
+     * Returns the amount of all marked events.
+     * @return Returns the amount.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the average rate of events. Events of the current tick are not included yet.
+     * @param unit The unit of the rate.
+     * @return Returns the amount of events per unit.
+     */
+    public double rate(@NotNull TimeUnit unit) {
+        tickIfNecessary();
+        return Math.max(0, rate) * unit.toNanos(1);
+    }
+
+    private void tickIfNecessary() {
+        if (System.nanoTime() - lastTickNanos < tickNanos || !tickLock.tryLock())
+            return;
+        try {
+            final long nowNanos = System.nanoTime();
+            final long ticks = (nowNanos - lastTickNanos) / tickNanos;
+            if (ticks <= 0)
+                return;
+            lastTickNanos += ticks * tickNanos;
+            final double instantRate = (double) uncounted.sumThenReset() / tickNanos;
+            double average = rate;
+            average = average < 0 ? instantRate : average + alpha * (instantRate - average);
+            // The events were counted in the first tick, the remaining ticks were idle.
+            rate = ticks == 1 ? average : average * Math.pow(1 - alpha, ticks - 1);
+        }
+        finally {
+            tickLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return rate(TimeUnit.SECONDS) + "/s";
+    }
+}
@@ -0,0 +1,96 @@
+package frechsack.prod.util.concurrent.metric;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A counter for frequent updates by many threads. Implementation is lock-free and thread-safe.
+ * <p>
+ * Updates are added to a single base value, until two threads contend on it. Afterwards each thread adds to the cell of its stripe.
+ * The cells are padded to their own cache line, so threads on different stripes do not contend at all.
+ * Reading the sum adds all cells and is therefore slower than an update. The sum is not an atomic snapshot, while updates are in progress.
+ */
+public final class StripedCounter {
+
+    private final @NotNull PaddedCell base = new PaddedCell(0);
+    private volatile PaddedCell[] cells;
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        add(1);
+    }
+
+    /**
+     * Decrements the counter by one.
+     */
+    public void decrement() {
+        add(-1);
+    }
+
+    /**
+     * Adds the value to the counter.
+     * @param delta The value.
+     */
+    public void add(long delta) {
+        var cells = this.cells;
+        if (cells == null) {
+            final long current = base.get();
+            if (base.compareAndSet(current, current + delta))
+                return;
+            cells = inflate();
+        }
+        cells[PaddedCell.threadHash() & (cells.length - 1)].getAndAdd(delta);
+    }
+
+    private PaddedCell @NotNull [] inflate() {
+        synchronized (base) {
+            var cells = this.cells;
+            if (cells == null) {
+                cells = new PaddedCell[PaddedCell.stripes()];
+                for (int i = 0; i < cells.length; i++)
+                    cells[i] = new PaddedCell(0);
+                this.cells = cells;
+            }
+            return cells;
+        }
+    }
+
+    /**
+     * Returns the sum of all updates.
+     * @return Returns the sum.
+     */
+    public long sum() {
+        long sum = base.get();
+        final var cells = this.cells;
+        if (cells != null)
+            for (var cell : cells)
+                sum += cell.get();
+        return sum;
+    }
+
+    /**
+     * Returns the sum of all updates and resets the counter to zero. Updates, that happen concurrently, are either included or kept.
+     * @return Returns the sum.
+     */
+    public long sumThenReset() {
+        long sum = base.getAndSet(0);
+        final var cells = this.cells;
+        if (cells != null)
+            for (var cell : cells)
+                sum += cell.getAndSet(0);
+        return sum;
+    }
+
+    /**
+     * Resets the counter to zero.
+     */
+    public void reset() {
+        sumThenReset();
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(sum());
+    }
+}
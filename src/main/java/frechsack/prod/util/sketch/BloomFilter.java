@@ -0,0 +1,150 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
+
+/**
+ * A probabilistic set, that answers whether an element might have been added. Implementation is lock-free and thread-safe.
+ * <p>
+ * An element, that was added, is always reported as contained. An element, that was not added, is reported as contained with the false positive probability,
+ * the filter was created for, as long as no more than the expected amount of elements was added. The memory does not grow with the added elements.
+ * <p>
+ * Each element sets k bits, that are derived from a single 64 bit hash by double hashing. By default strings and longs are hashed with 64 bits,
+ * other elements by their mixed {@link Object#hashCode()}, so elements with equal hash codes are indistinguishable. The hash code has 2^32 values,
+ * so n distinct elements of other types collide with a probability of about n / 2^32, which adds to the false positive probability,
+ * for example 2.3 percent at 100 million elements. Pass a hash function with 64 bits for such elements.
+ * <p>
+ * Of concurrent calls of {@link #add(Object)} with the same element, at most one returns true.
+ * @param <Type> The type of the elements.
+ */
+public final class BloomFilter<Type> {
+
+    private final @NotNull AtomicLongArray bits;
+    private final long bitCount;
+    private final int hashCount;
+    private final @NotNull ToLongFunction<? super Type> hasher;
+
+    /**
+     * Creates a new BloomFilter, that hashes elements by the default hash.
+     * @param expectedInsertions The amount of elements, that are expected to be added.
+     * @param falsePositiveProbability The probability, that an element is reported as contained, although it was not added.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability) {
+        this(expectedInsertions, falsePositiveProbability, Hashing::hashOf);
+    }
+
+    /**
+     * Creates a new BloomFilter.
+     * @param expectedInsertions The amount of elements, that are expected to be added.
+     * @param falsePositiveProbability The probability, that an element is reported as contained, although it was not added.
+     * @param hasher Returns a 64 bit hash of an element. Equal elements must have equal hashes.
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability, @NotNull ToLongFunction<? super Type> hasher) {
+        if (expectedInsertions < 1)
+            throw new IllegalArgumentException("The amount of expected insertions must be positive.");
+        if (!(falsePositiveProbability > 0 && falsePositiveProbability < 1))
+            throw new IllegalArgumentException("The false positive probability must be between zero and one.");
+        this.hasher = Objects.requireNonNull(hasher);
+        // The optimal amount of bits and hashes for the expected insertions.
+        final double optimalBits = -expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2));
+        final long words = Math.max(1, (long) Math.ceil(optimalBits / Long.SIZE));
+        if (words > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("The filter would exceed the maximum size of an array.");
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words * Long.SIZE;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds the element.
+     * @param element The element.
+     * @return Returns true, if the element was not contained before. False, if it was added before or is a false positive.
+     */
+    public boolean add(Type element) {
+        final long hash = hasher.applyAsLong(element);
+        final long first = hash;
+        final long second = (hash >>> 32) | (hash << 32) | 1;
+        // The first bit, that is not set, decides, if this call added the element. It is set after the other bits,
+        // so a concurrent call with the same element either sees it unset and races for it, or sees every bit set.
+        long decidingBit = -1;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Long.remainderUnsigned(first + i * second, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) != 0)
+                continue;
+            if (decidingBit < 0)
+                decidingBit = bit;
+            else
+                set(bit);
+        }
+        return decidingBit >= 0 && set(decidingBit);
+    }
+
+    /**
+     * Sets the bit.
+     * @return Returns true, if this call set the bit, false if it was set before.
+     */
+    private boolean set(long bit) {
+        final int word = (int) (bit >>> 6);
+        final long mask = 1L << bit;
+        long current;
+        while (((current = bits.get(word)) & mask) == 0)
+            if (bits.compareAndSet(word, current, current | mask))
+                return true;
+        return false;
+    }
+
+    /**
+     * Returns true, if the element might have been added. False, if it was definitely not added.
+     * @param element The element.
+     * @return Returns true, if the element might have been added.
+     */
+    public boolean mightContain(Type element) {
+        final long hash = hasher.applyAsLong(element);
+        final long first = hash;
+        final long second = (hash >>> 32) | (hash << 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            final long bit = Long.remainderUnsigned(first + i * second, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the amount of bits of this filter.
+     * @return Returns the amount.
+     */
+    public long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * Returns the amount of bits, that are set per element.
+     * @return Returns the amount.
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * Returns the probability, that an element, that was not added, is reported as contained. Computed from the ratio of set bits.
+     * @return Returns the probability.
+     */
+    public double falsePositiveProbability() {
+        long setBits = 0;
+        for (int i = 0; i < bits.length(); i++)
+            setBits += Long.bitCount(bits.get(i));
+        return Math.pow((double) setBits / bitCount, hashCount);
+    }
+
+    /**
+     * Removes all elements.
+     */
+    public void clear() {
+        for (int i = 0; i < bits.length(); i++)
+            bits.set(i, 0);
+    }
+}
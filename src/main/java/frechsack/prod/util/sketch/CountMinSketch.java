@@ -0,0 +1,131 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the frequencies of elements with fixed memory by the sketch of Cormode and Muthukrishnan.
+ * <p>
+ * Each element increments one counter in each of d rows of w counters. The estimated frequency is the smallest of these counters,
+ * so it is never less than the true frequency and exceeds it by no more than epsilon times the total count with the given confidence.
+ * <p>
+ * Not thread-safe, but mergeable with a sketch of the same size, so it can be used by {@link java.util.stream.Stream#collect(java.util.function.Supplier, java.util.function.BiConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream. By default strings and longs are hashed with 64 bits, other elements by their mixed {@link Object#hashCode()},
+ * so elements with equal hash codes share their counters. Pass a hash function with 64 bits for such elements with weak hash codes.
+ * @param <Type> The type of the elements.
+ */
+public final class CountMinSketch<Type> {
+
+    private final int width;
+    private final int depth;
+    private final long @NotNull [] counts;
+    private final @NotNull ToLongFunction<? super Type> hasher;
+    private long totalCount;
+
+    /**
+     * Creates a new CountMinSketch, that hashes elements by the default hash.
+     * @param epsilon The maximal overestimation relative to the total count, for example 0.001.
+     * @param confidence The probability, that an estimate is within the overestimation, for example 0.99.
+     */
+    public CountMinSketch(double epsilon, double confidence) {
+        this(epsilon, confidence, Hashing::hashOf);
+    }
+
+    /**
+     * Creates a new CountMinSketch.
+     * @param epsilon The maximal overestimation relative to the total count, for example 0.001.
+     * @param confidence The probability, that an estimate is within the overestimation, for example 0.99.
+     * @param hasher Returns a 64 bit hash of an element. Equal elements must have equal hashes.
+     */
+    public CountMinSketch(double epsilon, double confidence, @NotNull ToLongFunction<? super Type> hasher) {
+        if (!(epsilon > 0 && epsilon < 1))
+            throw new IllegalArgumentException("The epsilon must be between zero and one.");
+        if (!(confidence > 0 && confidence < 1))
+            throw new IllegalArgumentException("The confidence must be between zero and one.");
+        final long width = (long) Math.ceil(Math.E / epsilon);
+        final long depth = (long) Math.ceil(Math.log(1 / (1 - confidence)));
+        if (width * depth > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("The sketch would exceed the maximum size of an array.");
+        this.width = (int) width;
+        this.depth = (int) Math.max(1, depth);
+        this.counts = new long[this.width * this.depth];
+        this.hasher = Objects.requireNonNull(hasher);
+    }
+
+    /**
+     * Adds an occurrence of the element.
+     * @param element The element.
+     */
+    public void add(Type element) {
+        add(element, 1);
+    }
+
+    /**
+     * Adds occurrences of the element.
+     * @param element The element.
+     * @param count The amount of occurrences.
+     */
+    public void add(Type element, long count) {
+        if (count < 0)
+            throw new IllegalArgumentException("The count must not be negative.");
+        final long hash = hasher.applyAsLong(element);
+        // The counter of each row is derived from a single hash by double hashing.
+        final long second = (hash >>> 32) | (hash << 32) | 1;
+        for (int row = 0; row < depth; row++)
+            counts[row * width + (int) Long.remainderUnsigned(hash + row * second, width)] += count;
+        totalCount += count;
+    }
+
+    /**
+     * Returns the estimated amount of occurrences of the element. Never less than the true amount.
+     * @param element The element.
+     * @return Returns the estimated amount.
+     */
+    public long estimateCount(Type element) {
+        final long hash = hasher.applyAsLong(element);
+        final long second = (hash >>> 32) | (hash << 32) | 1;
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++)
+            estimate = Math.min(estimate, counts[row * width + (int) Long.remainderUnsigned(hash + row * second, width)]);
+        return estimate;
+    }
+
+    /**
+     * Adds the occurrences of the other sketch to this sketch.
+     * @param other The other sketch.
+     * @throws IllegalArgumentException If the other sketch has a different size.
+     */
+    public void combine(@NotNull CountMinSketch<? extends Type> other) {
+        if (other.width != width || other.depth != depth)
+            throw new IllegalArgumentException("The sketches must have the same size.");
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Returns the amount of all occurrences, that were added.
+     * @return Returns the amount.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the amount of counters per row.
+     * @return Returns the amount.
+     */
+    public int width() {
+        return width;
+    }
+
+    /**
+     * Returns the amount of rows.
+     * @return Returns the amount.
+     */
+    public int depth() {
+        return depth;
+    }
+}
@@ -0,0 +1,186 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Counts values in a fixed amount of buckets between a lower and an upper bound. The buckets are either of equal width, or of equal ratio,
+ * which suits values like latencies, that span multiple orders of magnitude. Values below the lower bound and values at or above the upper bound
+ * are counted separately, NaN values are ignored.
+ * <p>
+ * Not thread-safe, but mergeable with a histogram of the same buckets, so it can be used by
+ * {@link java.util.stream.DoubleStream#collect(java.util.function.Supplier, java.util.function.ObjDoubleConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream.
+ */
+public final class DoubleHistogram implements DoubleConsumer {
+
+    private final double min;
+    private final double max;
+    private final boolean isLogarithmic;
+    private final long[] counts;
+    // Converts a value into its bucket, either the value itself or its logarithm.
+    private final double origin;
+    private final double scale;
+    private long underflowCount;
+    private long overflowCount;
+
+    private DoubleHistogram(double min, double max, int bucketCount, boolean isLogarithmic) {
+        if (bucketCount < 1)
+            throw new IllegalArgumentException("The amount of buckets must be positive.");
+        if (!(min < max) || Double.isInfinite(min) || Double.isInfinite(max))
+            throw new IllegalArgumentException("The lower bound must be less than the upper bound and both must be finite.");
+        this.min = min;
+        this.max = max;
+        this.isLogarithmic = isLogarithmic;
+        this.counts = new long[bucketCount];
+        this.origin = isLogarithmic ? Math.log(min) : min;
+        this.scale = bucketCount / ((isLogarithmic ? Math.log(max) : max) - origin);
+    }
+
+    /**
+     * Creates a new DoubleHistogram with buckets of equal width.
+     * @param min The inclusive lower bound of the first bucket.
+     * @param max The exclusive upper bound of the last bucket.
+     * @param bucketCount The amount of buckets.
+     * @return Returns the histogram.
+     */
+    public static @NotNull DoubleHistogram linear(double min, double max, int bucketCount) {
+        return new DoubleHistogram(min, max, bucketCount, false);
+    }
+
+    /**
+     * Creates a new DoubleHistogram with buckets, whose upper bound is a fixed multiple of their lower bound.
+     * For example, 1 to 1000 in 3 buckets counts the values in [1, 10), [10, 100) and [100, 1000).
+     * @param min The inclusive lower bound of the first bucket. Must be positive.
+     * @param max The exclusive upper bound of the last bucket.
+     * @param bucketCount The amount of buckets.
+     * @return Returns the histogram.
+     */
+    public static @NotNull DoubleHistogram logarithmic(double min, double max, int bucketCount) {
+        if (!(min > 0))
+            throw new IllegalArgumentException("The lower bound of a logarithmic histogram must be positive.");
+        return new DoubleHistogram(min, max, bucketCount, true);
+    }
+
+    /**
+     * Returns a new empty histogram with the same buckets as this histogram.
+     * @return Returns the histogram.
+     */
+    public @NotNull DoubleHistogram withoutCounts() {
+        return new DoubleHistogram(min, max, counts.length, isLogarithmic);
+    }
+
+    @Override
+    public void accept(double value) {
+        if (value < min)
+            underflowCount++;
+        else if (value >= max)
+            overflowCount++;
+        else if (!Double.isNaN(value)) {
+            final int index = (int) (((isLogarithmic ? Math.log(value) : value) - origin) * scale);
+            // Rounding may move a value just below the upper bound out of the last bucket.
+            counts[Math.min(index, counts.length - 1)]++;
+        }
+    }
+
+    /**
+     * Adds the counts of the other histogram to this histogram.
+     * @param other The other histogram.
+     * @throws IllegalArgumentException If the other histogram has different buckets.
+     */
+    public void combine(@NotNull DoubleHistogram other) {
+        if (other.min != min || other.max != max || other.counts.length != counts.length || other.isLogarithmic != isLogarithmic)
+            throw new IllegalArgumentException("The histograms must have the same buckets.");
+        for (int i = 0; i < counts.length; i++)
+            counts[i] += other.counts[i];
+        underflowCount += other.underflowCount;
+        overflowCount += other.overflowCount;
+    }
+
+    /**
+     * Returns the amount of buckets between the lower and the upper bound.
+     * @return Returns the amount.
+     */
+    public int bucketCount() {
+        return counts.length;
+    }
+
+    /**
+     * Returns the amount of values in the bucket.
+     * @param index The index of the bucket.
+     * @return Returns the amount.
+     */
+    public long count(int index) {
+        return counts[index];
+    }
+
+    /**
+     * Returns the amounts of values in all buckets.
+     * @return Returns a copy of the amounts.
+     */
+    public long @NotNull [] counts() {
+        return Arrays.copyOf(counts, counts.length);
+    }
+
+    /**
+     * Returns the inclusive lower bound of the bucket.
+     * @param index The index of the bucket.
+     * @return Returns the lower bound.
+     */
+    public double lowerBound(int index) {
+        if (index < 0 || index > counts.length)
+            throw new IndexOutOfBoundsException(index);
+        if (index == 0)
+            return min;
+        if (index == counts.length)
+            return max;
+        final double bound = origin + index / scale;
+        return isLogarithmic ? Math.exp(bound) : bound;
+    }
+
+    /**
+     * Returns the exclusive upper bound of the bucket.
+     * @param index The index of the bucket.
+     * @return Returns the upper bound.
+     */
+    public double upperBound(int index) {
+        if (index < 0 || index >= counts.length)
+            throw new IndexOutOfBoundsException(index);
+        return lowerBound(index + 1);
+    }
+
+    /**
+     * Returns the amount of values below the lower bound of the first bucket.
+     * @return Returns the amount.
+     */
+    public long underflowCount() {
+        return underflowCount;
+    }
+
+    /**
+     * Returns the amount of values at or above the upper bound of the last bucket.
+     * @return Returns the amount.
+     */
+    public long overflowCount() {
+        return overflowCount;
+    }
+
+    /**
+     * Returns the amount of all values, including those outside the buckets.
+     * @return Returns the amount.
+     */
+    public long totalCount() {
+        long total = underflowCount + overflowCount;
+        for (long count : counts)
+            total += count;
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return "DoubleHistogram{min=" + min + ", max=" + max + ", logarithmic=" + isLogarithmic + ", counts=" + Arrays.toString(counts)
+                + ", underflow=" + underflowCount + ", overflow=" + overflowCount + '}';
+    }
+}
@@ -0,0 +1,51 @@
+package frechsack.prod.util.sketch;
+
+import java.util.Objects;
+
+/**
+ * Hash functions of the sketches.
+ */
+class Hashing {
+
+    private Hashing() {}
+
+    /**
+     * Returns a 64 bit hash of the element, that is derived from its {@link Object#hashCode()}. The bits are mixed, so similar hash codes,
+     * like those of consecutive integers, result in unrelated hashes. The hash has no more than 2^32 distinct values.
+     * @param element The element. May be null.
+     * @return Returns the hash.
+     */
+    static long hashCodeOf(Object element) {
+        return mix(Objects.hashCode(element) * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Returns a 64 bit hash of the element. Strings and longs are hashed with 64 bits, so distinct values rarely collide,
+     * other elements by {@link #hashCodeOf(Object)}, which has no more than 2^32 distinct values.
+     * @param element The element. May be null.
+     * @return Returns the hash.
+     */
+    static long hashOf(Object element) {
+        if (element instanceof String string) {
+            // FNV-1a over the characters, mixed afterwards, because FNV spreads the last characters poorly.
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < string.length(); i++)
+                hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+            return mix(hash);
+        }
+        if (element instanceof Long value)
+            return mix(value * 0x9e3779b97f4a7c15L);
+        return hashCodeOf(element);
+    }
+
+    /**
+     * Mixes the bits of the value by the finalizer of MurmurHash3.
+     * @param value The value.
+     * @return Returns the mixed value.
+     */
+    static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
+    }
+}
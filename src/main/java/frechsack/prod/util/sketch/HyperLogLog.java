@@ -0,0 +1,126 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates the amount of distinct elements with fixed memory by the algorithm of Flajolet et al.
+ * <p>
+ * The first p bits of the hash of an element select one of 2^p registers, which keeps the highest position of the first set bit of the remaining bits.
+ * The estimate has a relative standard error of 1.04/sqrt(2^p), so the default precision of 14 has an error of about 0.8 percent in 16 KiB.
+ * Small cardinalities are estimated by the amount of empty registers instead.
+ * <p>
+ * Not thread-safe, but mergeable with a sketch of the same precision, so it can be used by {@link java.util.stream.Stream#collect(java.util.function.Supplier, java.util.function.BiConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream. By default strings and longs are hashed with 64 bits, other elements by their mixed {@link Object#hashCode()}, which has no more than 2^32 distinct values.
+ * Colliding hash codes are counted once, so the estimate of n distinct elements of other types is additionally biased low by about n / 2^33,
+ * for example 1.2 percent at 100 million and 11 percent at a billion distinct elements. Pass a hash function with 64 bits for such elements.
+ * @param <Type> The type of the elements.
+ */
+public final class HyperLogLog<Type> {
+
+    private static final int DEFAULT_PRECISION = 14;
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte @NotNull [] registers;
+    private final @NotNull ToLongFunction<? super Type> hasher;
+
+    /**
+     * Creates a new HyperLogLog with a relative error of about 0.8 percent, that hashes elements by the default hash.
+     */
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Creates a new HyperLogLog, that hashes elements by the default hash.
+     * @param precision The amount of bits, that select a register, between 4 and 18. Each additional bit doubles the memory and divides the error by sqrt(2).
+     */
+    public HyperLogLog(int precision) {
+        this(precision, Hashing::hashOf);
+    }
+
+    /**
+     * Creates a new HyperLogLog.
+     * @param precision The amount of bits, that select a register, between 4 and 18.
+     * @param hasher Returns a 64 bit hash of an element. Equal elements must have equal hashes.
+     */
+    public HyperLogLog(int precision, @NotNull ToLongFunction<? super Type> hasher) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("The precision must be between " + MIN_PRECISION + " and " + MAX_PRECISION + ".");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+        this.hasher = Objects.requireNonNull(hasher);
+    }
+
+    /**
+     * Adds the element.
+     * @param element The element.
+     */
+    public void add(Type element) {
+        final long hash = hasher.applyAsLong(element);
+        final int index = (int) (hash >>> (Long.SIZE - precision));
+        // The lowest bit of the remaining bits is set, so the position is bounded, if all remaining bits are zero.
+        final int position = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (position > registers[index])
+            registers[index] = (byte) position;
+    }
+
+    /**
+     * Adds the elements of the other sketch to this sketch.
+     * @param other The other sketch.
+     * @throws IllegalArgumentException If the other sketch has a different precision.
+     */
+    public void combine(@NotNull HyperLogLog<? extends Type> other) {
+        if (other.precision != precision)
+            throw new IllegalArgumentException("The sketches must have the same precision.");
+        for (int i = 0; i < registers.length; i++)
+            if (other.registers[i] > registers[i])
+                registers[i] = other.registers[i];
+    }
+
+    /**
+     * Returns the estimated amount of distinct elements, that were added.
+     * @return Returns the estimated amount.
+     */
+    public long cardinality() {
+        final int registerCount = registers.length;
+        double sum = 0;
+        int emptyCount = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                emptyCount++;
+        }
+        final double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        final double estimate = alpha * registerCount * registerCount / sum;
+        // The raw estimate is biased for small cardinalities, that leave registers empty.
+        if (estimate <= 2.5 * registerCount && emptyCount > 0)
+            return Math.round(registerCount * Math.log((double) registerCount / emptyCount));
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns the relative standard error of the estimate.
+     * @return Returns the error.
+     */
+    public double relativeError() {
+        return 1.04 / Math.sqrt(registers.length);
+    }
+
+    /**
+     * Returns the precision of this sketch.
+     * @return Returns the amount of bits, that select a register.
+     */
+    public int precision() {
+        return precision;
+    }
+
+    @Override
+    public String toString() {
+        return "HyperLogLog{precision=" + precision + ", cardinality=" + cardinality() + '}';
+    }
+}
@@ -0,0 +1,243 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Estimates the quantiles of values in a single pass with bounded memory by the sketch of Karnin, Lang and Liberty.
+ * <p>
+ * Values are added to the lowest of multiple compactors. A full compactor sorts its values and promotes every second value, chosen by a random offset,
+ * to the next compactor, where it counts twice. The capacities shrink geometrically towards the lower compactors, so the sketch keeps about 3k values.
+ * The rank error of a quantile is about 1.7/k with high probability, so k = 200 estimates the 99th percentile within about one percent of ranks.
+ * <p>
+ * Not thread-safe, but mergeable, so it can be used by {@link java.util.stream.DoubleStream#collect(java.util.function.Supplier, java.util.function.ObjDoubleConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream. NaN values are ignored.
+ */
+public final class KllSketch implements DoubleConsumer {
+
+    private static final int DEFAULT_K = 200;
+    private static final int MIN_CAPACITY = 8;
+    private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+    private final int k;
+    // The values of each compactor. A value of compactor i counts 2^i times.
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private long count;
+    private double min = Double.NaN;
+    private double max = Double.NaN;
+
+    /**
+     * Creates a new KllSketch with a rank error of about one percent.
+     */
+    public KllSketch() {
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Creates a new KllSketch.
+     * @param k The capacity of the highest compactor. The rank error shrinks and the memory grows linear with it.
+     */
+    public KllSketch(int k) {
+        if (k < MIN_CAPACITY)
+            throw new IllegalArgumentException("The capacity must be at least " + MIN_CAPACITY + ".");
+        this.k = k;
+        levels[0] = new double[k];
+    }
+
+    private int capacity(int level) {
+        final int depth = levels.length - 1 - level;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+    }
+
+    @Override
+    public void accept(double value) {
+        if (Double.isNaN(value))
+            return;
+        if (count == 0)
+            min = max = value;
+        else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        add(0, value);
+        if (sizes[0] >= capacity(0))
+            compress();
+    }
+
+    private void add(int level, double value) {
+        if (sizes[level] == levels[level].length)
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compacts the lowest full compactor, until every compactor is within its capacity.
+     */
+    private void compress() {
+        for (int level = 0; level < levels.length; level++) {
+            if (sizes[level] < capacity(level))
+                continue;
+            if (level == levels.length - 1)
+                grow();
+            final double[] values = levels[level];
+            int size = sizes[level];
+            Arrays.sort(values, 0, size);
+            // The smallest value of an odd size stays in the compactor, so the weight of all values is kept.
+            final int kept = size % 2;
+            final int offset = ThreadLocalRandom.current().nextInt(2);
+            for (int i = kept + offset; i < size; i += 2)
+                add(level + 1, values[i]);
+            sizes[level] = kept;
+        }
+    }
+
+    private void grow() {
+        levels = Arrays.copyOf(levels, levels.length + 1);
+        levels[levels.length - 1] = new double[k];
+        sizes = Arrays.copyOf(sizes, sizes.length + 1);
+    }
+
+    /**
+     * Adds the values of the other sketch to this sketch.
+     * @param other The other sketch. Should have the same capacity.
+     */
+    public void combine(@NotNull KllSketch other) {
+        if (other.count == 0)
+            return;
+        while (levels.length < other.levels.length)
+            grow();
+        for (int level = 0; level < other.levels.length; level++)
+            for (int i = 0; i < other.sizes[level]; i++)
+                add(level, other.levels[level][i]);
+        min = count == 0 ? other.min : Math.min(min, other.min);
+        max = count == 0 ? other.max : Math.max(max, other.max);
+        count += other.count;
+        compress();
+    }
+
+    /**
+     * Returns the amount of added values.
+     * @return Returns the amount.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest added value, or NaN if no value was added.
+     * @return Returns the smallest value.
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * Returns the largest added value, or NaN if no value was added.
+     * @return Returns the largest value.
+     */
+    public double max() {
+        return max;
+    }
+
+    /**
+     * Returns the estimated value, that is not exceeded by the given fraction of values.
+     * @param quantile The fraction, between zero and one. For example 0.99 for the 99th percentile.
+     * @return Returns the estimated value, or NaN if no value was added.
+     */
+    public double quantile(double quantile) {
+        return quantiles(quantile)[0];
+    }
+
+    /**
+     * Returns the estimated values, that are not exceeded by the given fractions of values. Sorts the kept values once for all quantiles.
+     * @param quantiles The fractions, between zero and one.
+     * @return Returns the estimated values in the order of the fractions, NaN if no value was added.
+     */
+    public double @NotNull [] quantiles(double @NotNull ... quantiles) {
+        for (double quantile : quantiles)
+            if (!(quantile >= 0 && quantile <= 1))
+                throw new IllegalArgumentException("The quantile must be between zero and one.");
+        final double[] result = new double[quantiles.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        final var weighted = weightedValues();
+        final double[] values = weighted[0];
+        final double[] cumulativeWeights = weighted[1];
+        for (int i = 0; i < quantiles.length; i++) {
+            if (quantiles[i] == 0) {
+                result[i] = min;
+                continue;
+            }
+            if (quantiles[i] == 1) {
+                result[i] = max;
+                continue;
+            }
+            final double rank = quantiles[i] * count;
+            int index = Arrays.binarySearch(cumulativeWeights, rank);
+            if (index < 0)
+                index = -index - 1;
+            result[i] = values[Math.min(index, values.length - 1)];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the estimated fraction of values, that are less than or equal to the value.
+     * @param value The value.
+     * @return Returns the fraction, between zero and one. NaN if no value was added.
+     */
+    public double rank(double value) {
+        if (count == 0)
+            return Double.NaN;
+        long weight = 0;
+        for (int level = 0; level < levels.length; level++)
+            for (int i = 0; i < sizes[level]; i++)
+                if (levels[level][i] <= value)
+                    weight += 1L << level;
+        return Math.min(1.0, (double) weight / count);
+    }
+
+    /**
+     * Returns the kept values sorted and their cumulative weights. Each compactor is sorted and merged into the result.
+     */
+    private double @NotNull [] @NotNull [] weightedValues() {
+        double[] values = new double[0];
+        double[] weights = new double[0];
+        for (int level = 0; level < levels.length; level++) {
+            final double[] levelValues = Arrays.copyOf(levels[level], sizes[level]);
+            Arrays.sort(levelValues);
+            final double weight = 1L << level;
+            final double[] mergedValues = new double[values.length + levelValues.length];
+            final double[] mergedWeights = new double[mergedValues.length];
+            int left = 0;
+            int right = 0;
+            for (int i = 0; i < mergedValues.length; i++) {
+                if (right >= levelValues.length || (left < values.length && values[left] <= levelValues[right])) {
+                    mergedValues[i] = values[left];
+                    mergedWeights[i] = weights[left++];
+                }
+                else {
+                    mergedValues[i] = levelValues[right++];
+                    mergedWeights[i] = weight;
+                }
+            }
+            values = mergedValues;
+            weights = mergedWeights;
+        }
+        for (int i = 1; i < weights.length; i++)
+            weights[i] += weights[i - 1];
+        return new double[][] { values, weights };
+    }
+
+    @Override
+    public String toString() {
+        return "KllSketch{count=" + count + ", min=" + min + ", p50=" + quantile(0.5) + ", p99=" + quantile(0.99) + ", max=" + max + '}';
+    }
+}
@@ -0,0 +1,220 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent elements with fixed memory by the algorithm of Metwally, Agrawal and El Abbadi.
+ * <p>
+ * A fixed amount of counters is monitored. An element without a counter takes over the counter with the smallest count, inherits its count as error
+ * and increments it. So the count of an element is never less than its true frequency and exceeds it by no more than its error,
+ * which is at most the total count divided by the capacity. Each element, that occurs more often than this bound, is guaranteed to be monitored.
+ * The counters are kept in a min-heap, so an element is added in O(log capacity).
+ * <p>
+ * Not thread-safe, but mergeable by the algorithm of Agarwal et al., so it can be used by {@link java.util.stream.Stream#collect(java.util.function.Supplier, java.util.function.BiConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream.
+ * @param <Type> The type of the elements.
+ */
+public final class SpaceSaving<Type> {
+
+    private final int capacity;
+    private final @NotNull Map<Type, Counter<Type>> counters;
+    private Counter<Type>[] heap;
+    private int size;
+    private long totalCount;
+
+    /**
+     * Creates a new SpaceSaving.
+     * @param capacity The amount of monitored counters. The error of a count is at most the total count divided by the capacity.
+     */
+    public SpaceSaving(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("The capacity must be positive.");
+        this.capacity = capacity;
+        this.counters = new HashMap<>(Math.min(capacity, 16));
+        this.heap = newHeap(Math.min(capacity, 16));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <Type> Counter<Type> @NotNull [] newHeap(int length) {
+        return (Counter<Type>[]) new Counter<?>[length];
+    }
+
+    /**
+     * An element with its estimated amount of occurrences.
+     * @param element The element.
+     * @param count The estimated amount of occurrences. Never less than the true amount.
+     * @param error The maximal overestimation of the count.
+     * @param <Type> The type of the element.
+     */
+    public record HeavyHitter<Type>(Type element, long count, long error) {
+
+        /**
+         * Returns the amount of occurrences, that the element occurred at least.
+         * @return Returns the amount.
+         */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter<Type> {
+        private Type element;
+        private long count;
+        private long error;
+        private int index;
+
+        private Counter(Type element, long count, long error) {
+            this.element = element;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Adds an occurrence of the element.
+     * @param element The element.
+     */
+    public void add(Type element) {
+        totalCount++;
+        final Counter<Type> counter = counters.get(element);
+        if (counter != null) {
+            counter.count++;
+            siftDown(counter.index);
+        }
+        else if (size < capacity)
+            push(new Counter<>(element, 1, 0));
+        else {
+            // The element takes over the counter with the smallest count.
+            final Counter<Type> smallest = heap[0];
+            counters.remove(smallest.element);
+            smallest.element = element;
+            smallest.error = smallest.count;
+            smallest.count++;
+            counters.put(element, smallest);
+            siftDown(0);
+        }
+    }
+
+    private void push(@NotNull Counter<Type> counter) {
+        if (size == heap.length)
+            heap = Arrays.copyOf(heap, (int) Math.min(capacity, size * 2L));
+        counters.put(counter.element, counter);
+        heap[size] = counter;
+        counter.index = size;
+        siftUp(size++);
+    }
+
+    private void siftUp(int index) {
+        final Counter<Type> counter = heap[index];
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count)
+                break;
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        final Counter<Type> counter = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count)
+                child++;
+            if (counter.count <= heap[child].count)
+                break;
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(@NotNull Counter<Type> counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    /**
+     * Adds the occurrences of the other instance to this instance. An element, that is only monitored by one instance,
+     * may have occurred up to the smallest count of the other instance, which is added to its count and error.
+     * @param other The other instance.
+     */
+    public void combine(@NotNull SpaceSaving<? extends Type> other) {
+        final long smallest = size < capacity ? 0 : heap[0].count;
+        final long otherSmallest = other.size < other.capacity ? 0 : other.heap[0].count;
+        final Map<Type, Counter<Type>> merged = new HashMap<>(counters.size() + other.counters.size());
+        for (var counter : counters.values()) {
+            final var otherCounter = other.counters.get(counter.element);
+            merged.put(counter.element, otherCounter == null
+                    ? new Counter<>(counter.element, counter.count + otherSmallest, counter.error + otherSmallest)
+                    : new Counter<>(counter.element, counter.count + otherCounter.count, counter.error + otherCounter.error));
+        }
+        for (var otherCounter : other.counters.values())
+            if (!merged.containsKey(otherCounter.element))
+                merged.put(otherCounter.element, new Counter<>(otherCounter.element, otherCounter.count + smallest, otherCounter.error + smallest));
+        final List<Counter<Type>> kept = new ArrayList<>(merged.values());
+        kept.sort(Comparator.comparingLong((Counter<Type> counter) -> counter.count).reversed());
+        counters.clear();
+        // A new heap drops the references to the replaced counters.
+        heap = newHeap(Math.max(1, Math.min(capacity, kept.size())));
+        size = 0;
+        for (int i = 0; i < Math.min(capacity, kept.size()); i++)
+            push(kept.get(i));
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * Returns the monitored elements, that occurred more than the fraction of the total count, from the most to the least frequent.
+     * @param fraction The fraction, between zero and one. Should be greater than one divided by the capacity, to include every element, that exceeds it.
+     * @return Returns the elements.
+     */
+    public @NotNull List<HeavyHitter<Type>> heavyHitters(double fraction) {
+        final long threshold = (long) (fraction * totalCount);
+        final List<HeavyHitter<Type>> heavyHitters = new ArrayList<>();
+        for (var hitter : topK(size))
+            if (hitter.count() > threshold)
+                heavyHitters.add(hitter);
+        return heavyHitters;
+    }
+
+    /**
+     * Returns the k monitored elements with the highest counts, from the most to the least frequent.
+     * @param k The amount of elements.
+     * @return Returns the elements.
+     */
+    public @NotNull List<HeavyHitter<Type>> topK(int k) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of elements must not be negative.");
+        final List<HeavyHitter<Type>> hitters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            hitters.add(new HeavyHitter<>(heap[i].element, heap[i].count, heap[i].error));
+        hitters.sort(Comparator.comparingLong((HeavyHitter<Type> hitter) -> hitter.count()).reversed());
+        return new ArrayList<>(hitters.subList(0, Math.min(k, hitters.size())));
+    }
+
+    /**
+     * Returns the amount of all occurrences, that were added.
+     * @return Returns the amount.
+     */
+    public long totalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Returns the amount of monitored counters.
+     * @return Returns the amount.
+     */
+    public int capacity() {
+        return capacity;
+    }
+}
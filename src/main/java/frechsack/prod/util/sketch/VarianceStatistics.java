@@ -0,0 +1,116 @@
+package frechsack.prod.util.sketch;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * Computes the mean and variance of values in a single pass by the algorithm of Welford. Unlike summing the squares of the values,
+ * it does not lose precision, if the variance is small compared to the mean. Not thread-safe, but mergeable like {@link java.util.DoubleSummaryStatistics},
+ * so it can be used by {@link java.util.stream.DoubleStream#collect(java.util.function.Supplier, java.util.function.ObjDoubleConsumer, java.util.function.BiConsumer)}
+ * of a parallel stream.
+ */
+public final class VarianceStatistics implements DoubleConsumer {
+
+    private long count;
+    private double mean;
+    // The sum of the squared differences from the mean.
+    private double squaredDeviations;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    @Override
+    public void accept(double value) {
+        count++;
+        final double delta = value - mean;
+        mean += delta / count;
+        squaredDeviations += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds the values of the other statistics to this statistics.
+     * @param other The other statistics.
+     */
+    public void combine(@NotNull VarianceStatistics other) {
+        if (other.count == 0)
+            return;
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            squaredDeviations = other.squaredDeviations;
+            min = other.min;
+            max = other.max;
+            return;
+        }
+        final long combinedCount = count + other.count;
+        final double delta = other.mean - mean;
+        mean += delta * other.count / combinedCount;
+        squaredDeviations += other.squaredDeviations + delta * delta * ((double) count * other.count / combinedCount);
+        count = combinedCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the amount of added values.
+     * @return Returns the amount.
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the values, or zero if no value was added.
+     * @return Returns the mean.
+     */
+    public double mean() {
+        return mean;
+    }
+
+    /**
+     * Returns the population variance of the values, or zero if no value was added.
+     * @return Returns the variance.
+     */
+    public double variance() {
+        return count == 0 ? 0.0 : squaredDeviations / count;
+    }
+
+    /**
+     * Returns the sample variance of the values, which divides by the amount of values minus one. Zero, if less than two values were added.
+     * @return Returns the sample variance.
+     */
+    public double sampleVariance() {
+        return count < 2 ? 0.0 : squaredDeviations / (count - 1);
+    }
+
+    /**
+     * Returns the population standard deviation of the values.
+     * @return Returns the standard deviation.
+     */
+    public double standardDeviation() {
+        return Math.sqrt(variance());
+    }
+
+    /**
+     * Returns the smallest value, or positive infinity if no value was added.
+     * @return Returns the smallest value.
+     */
+    public double min() {
+        return min;
+    }
+
+    /**
+     * Returns the largest value, or negative infinity if no value was added.
+     * @return Returns the largest value.
+     */
+    public double max() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return "VarianceStatistics{count=" + count + ", mean=" + mean + ", variance=" + variance() + ", min=" + min + ", max=" + max + '}';
+    }
+}
@@ -0,0 +1,169 @@
+package frechsack.prod.util.stream;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collector;
+
+/**
+ * Heaps, that keep the k greatest elements of a stream. The root of a heap is the smallest kept element, so a new element is only inserted,
+ * if it is greater than the root, and replaces it. Keeping k of n elements takes O(n log k) time and O(k) memory.
+ */
+class BoundedHeaps {
+
+    private BoundedHeaps() {}
+
+    /**
+     * Returns a collector, that collects the k greatest elements in descending order. A parallel stream collects into a heap per thread, that are merged at the end.
+     * @param k The amount of elements.
+     * @param comparator The order of the elements.
+     * @return Returns the collector.
+     * @param <Type> The element type.
+     */
+    static <Type> @NotNull Collector<Type, ?, List<Type>> greatest(int k, @NotNull Comparator<? super Type> comparator) {
+        return Collector.of(() -> new ObjectHeap<Type>(k, comparator), ObjectHeap::add, ObjectHeap::addAll, ObjectHeap::toDescendingList);
+    }
+
+    static final class ObjectHeap<Type> {
+        private final int capacity;
+        private final @NotNull Comparator<? super Type> comparator;
+        private Object[] elements;
+        private int size;
+
+        ObjectHeap(int capacity, @NotNull Comparator<? super Type> comparator) {
+            this.capacity = capacity;
+            this.comparator = comparator;
+            // Grows up to the capacity, so a large k does not allocate its whole heap for a short stream.
+            this.elements = new Object[Math.min(capacity, 16)];
+        }
+
+        @SuppressWarnings("unchecked")
+        private Type get(int index) {
+            return (Type) elements[index];
+        }
+
+        void add(Type element) {
+            if (capacity == 0)
+                return;
+            if (size < capacity) {
+                if (size == elements.length)
+                    elements = Arrays.copyOf(elements, (int) Math.min(capacity, size * 2L));
+                elements[size] = element;
+                siftUp(size++);
+            }
+            else if (comparator.compare(element, get(0)) > 0) {
+                elements[0] = element;
+                siftDown(0);
+            }
+        }
+
+        @NotNull ObjectHeap<Type> addAll(@NotNull ObjectHeap<Type> other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.get(i));
+            return this;
+        }
+
+        private void siftUp(int index) {
+            final Type element = get(index);
+            while (index > 0) {
+                final int parent = (index - 1) >>> 1;
+                if (comparator.compare(get(parent), element) <= 0)
+                    break;
+                elements[index] = elements[parent];
+                index = parent;
+            }
+            elements[index] = element;
+        }
+
+        private void siftDown(int index) {
+            final Type element = get(index);
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size)
+                    break;
+                if (child + 1 < size && comparator.compare(get(child + 1), get(child)) < 0)
+                    child++;
+                if (comparator.compare(element, get(child)) <= 0)
+                    break;
+                elements[index] = elements[child];
+                index = child;
+            }
+            elements[index] = element;
+        }
+
+        @SuppressWarnings("unchecked")
+        @NotNull List<Type> toDescendingList() {
+            final Type[] sorted = (Type[]) Arrays.copyOf(elements, size);
+            Arrays.sort(sorted, comparator.reversed());
+            return new ArrayList<>(Arrays.asList(sorted));
+        }
+    }
+
+    /**
+     * A heap of long values. Other primitives are mapped to longs, that keep their order. The smallest values are kept by inverting the bits,
+     * which reverses the order without overflow.
+     */
+    static final class LongHeap {
+        private final int capacity;
+        private long[] values;
+        private int size;
+
+        LongHeap(int capacity) {
+            this.capacity = capacity;
+            this.values = new long[Math.min(capacity, 16)];
+        }
+
+        void add(long value) {
+            if (capacity == 0)
+                return;
+            if (size < capacity) {
+                if (size == values.length)
+                    values = Arrays.copyOf(values, (int) Math.min(capacity, size * 2L));
+                int index = size++;
+                while (index > 0) {
+                    final int parent = (index - 1) >>> 1;
+                    if (values[parent] <= value)
+                        break;
+                    values[index] = values[parent];
+                    index = parent;
+                }
+                values[index] = value;
+            }
+            else if (value > values[0]) {
+                int index = 0;
+                while (true) {
+                    int child = 2 * index + 1;
+                    if (child >= size)
+                        break;
+                    if (child + 1 < size && values[child + 1] < values[child])
+                        child++;
+                    if (value <= values[child])
+                        break;
+                    values[index] = values[child];
+                    index = child;
+                }
+                values[index] = value;
+            }
+        }
+
+        @NotNull LongHeap addAll(@NotNull LongHeap other) {
+            for (int i = 0; i < other.size; i++)
+                add(other.values[i]);
+            return this;
+        }
+
+        /**
+         * Returns the kept values from the greatest to the smallest.
+         * @return Returns the values.
+         */
+        long @NotNull [] toDescendingArray() {
+            final long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            PrimitiveSorts.reverse(sorted);
+            return sorted;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.*;
 import java.util.function.*;
 import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
 
 public class FIntStream implements IntStream {
 
@@ -68,8 +69,92 @@ public class FIntStream implements IntStream {
         return apply(internal.sorted());
     }
 
+    /**
+     * Returns a stream, that is sorted by a radix sort. The sort takes linear time and skips the digits, that are equal for all values,
+     * so it is much faster than {@link #sorted()} for large streams of dense values, like ids. Needs an additional array.
+     * @return Returns this stream.
+     */
+    public FIntStream sortedRadix() {
+        return sortedArray(PrimitiveSorts::radixSort);
+    }
+
+    /**
+     * Returns a stream, that is sorted by a counting sort. The sort takes linear time and memory for the range, so it is the fastest sort
+     * for large streams of values within a small range, like ages or scores.
+     * @param min The smallest value of the range.
+     * @param max The largest value of the range.
+     * @return Returns this stream. Its terminal operation throws an {@link IllegalArgumentException}, if a value is outside the range.
+     */
+    public FIntStream sortedCounting(int min, int max) {
+        if (min > max)
+            throw new IllegalArgumentException("The minimum must not exceed the maximum.");
+        return sortedArray(values -> PrimitiveSorts.countingSort(values, min, max));
+    }
+
+    /**
+     * Collects the values into an array, when the terminal operation starts, and continues with the array after the sort.
+     */
+    private FIntStream sortedArray(Consumer<int[]> sort) {
+        final var source = internal;
+        return apply(StreamSupport.intStream(() -> {
+            final int[] values = source.toArray();
+            sort.accept(values);
+            return Arrays.spliterator(values);
+        }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE, source.isParallel()).onClose(source::close));
+    }
+
+    /**
+     * Returns a stream, that is sorted in descending order. The values are sorted as primitive array, that is reversed afterwards, so no value is boxed.
+     * A parallel stream is sorted by multiple threads.
+     * @return Returns this stream.
+     */
     public FIntStream sortedReversed() {
-        return apply(internal.boxed().sorted(Comparator.reverseOrder()).mapToInt(Integer::valueOf));
+        final boolean isParallel = internal.isParallel();
+        return sortedArray(values -> {
+            if (isParallel)
+                Arrays.parallelSort(values);
+            else
+                Arrays.sort(values);
+            PrimitiveSorts.reverse(values);
+        });
+    }
+
+    /**
+     * Returns a stream of the k greatest values in descending order. Equivalent to {@link #sortedReversed()} and limiting to k values,
+     * but keeps only k values in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of values.
+     * @return Returns this stream.
+     */
+    public FIntStream topK(int k) {
+        return bounded(k, true);
+    }
+
+    /**
+     * Returns a stream of the k smallest values in ascending order. Equivalent to {@link #sorted()} and limiting to k values,
+     * but keeps only k values in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of values.
+     * @return Returns this stream.
+     */
+    public FIntStream bottomK(int k) {
+        return bounded(k, false);
+    }
+
+    private FIntStream bounded(int k, boolean isGreatest) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of values must not be negative.");
+        final var source = internal;
+        // The smallest values are the greatest inverted values.
+        return apply(StreamSupport.intStream(() -> Arrays.spliterator(boundedValues(source.collect(() -> new BoundedHeaps.LongHeap(k),
+                        (heap, value) -> heap.add(isGreatest ? value : ~value), BoundedHeaps.LongHeap::addAll), isGreatest)),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE, source.isParallel()).onClose(source::close));
+    }
+
+    private static int[] boundedValues(BoundedHeaps.LongHeap heap, boolean isGreatest) {
+        final long[] values = heap.toDescendingArray();
+        final int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++)
+            result[i] = (int) (isGreatest ? values[i] : ~values[i]);
+        return result;
     }
 
     @Override
@@ -1,11 +1,15 @@
 package frechsack.prod.util.stream;
 
+import frechsack.prod.util.sketch.DoubleHistogram;
+import frechsack.prod.util.sketch.KllSketch;
+import frechsack.prod.util.sketch.VarianceStatistics;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 import java.util.function.*;
 import java.util.stream.DoubleStream;
 import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
 
 public class FLongStream implements LongStream {
 
@@ -69,8 +73,80 @@ public class FLongStream implements LongStream {
         return apply(internal.sorted());
     }
 
+    /**
+     * Returns a stream, that is sorted by a radix sort. The sort takes linear time and skips the digits, that are equal for all values,
+     * so it is much faster than {@link #sorted()} for large streams of dense values, like ids. Needs an additional array.
+     * @return Returns this stream.
+     */
+    public FLongStream sortedRadix() {
+        return sortedArray(PrimitiveSorts::radixSort);
+    }
+
+    /**
+     * Collects the values into an array, when the terminal operation starts, and continues with the array after the sort.
+     */
+    private FLongStream sortedArray(Consumer<long[]> sort) {
+        final var source = internal;
+        return apply(StreamSupport.longStream(() -> {
+            final long[] values = source.toArray();
+            sort.accept(values);
+            return Arrays.spliterator(values);
+        }, Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE, source.isParallel()).onClose(source::close));
+    }
+
+    /**
+     * Returns a stream, that is sorted in descending order. The values are sorted as primitive array, that is reversed afterwards, so no value is boxed.
+     * A parallel stream is sorted by multiple threads.
+     * @return Returns this stream.
+     */
     public FLongStream sortedReversed() {
-        return apply(internal.boxed().sorted(Comparator.reverseOrder()).mapToLong(Long::valueOf));
+        final boolean isParallel = internal.isParallel();
+        return sortedArray(values -> {
+            if (isParallel)
+                Arrays.parallelSort(values);
+            else
+                Arrays.sort(values);
+            PrimitiveSorts.reverse(values);
+        });
+    }
+
+    /**
+     * Returns a stream of the k greatest values in descending order. Equivalent to {@link #sortedReversed()} and limiting to k values,
+     * but keeps only k values in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of values.
+     * @return Returns this stream.
+     */
+    public FLongStream topK(int k) {
+        return bounded(k, true);
+    }
+
+    /**
+     * Returns a stream of the k smallest values in ascending order. Equivalent to {@link #sorted()} and limiting to k values,
+     * but keeps only k values in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of values.
+     * @return Returns this stream.
+     */
+    public FLongStream bottomK(int k) {
+        return bounded(k, false);
+    }
+
+    private FLongStream bounded(int k, boolean isGreatest) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of values must not be negative.");
+        final var source = internal;
+        // The smallest values are the greatest inverted values.
+        return apply(StreamSupport.longStream(() -> Arrays.spliterator(boundedValues(source.collect(() -> new BoundedHeaps.LongHeap(k),
+                        (heap, value) -> heap.add(isGreatest ? value : ~value), BoundedHeaps.LongHeap::addAll), isGreatest)),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE, source.isParallel()).onClose(source::close));
+    }
+
+    private static long[] boundedValues(BoundedHeaps.LongHeap heap, boolean isGreatest) {
+        final long[] values = heap.toDescendingArray();
+        final long[] result = values;
+        if (!isGreatest)
+            for (int i = 0; i < values.length; i++)
+                result[i] = ~values[i];
+        return result;
     }
 
     @Override
@@ -158,6 +234,86 @@ public class FLongStream implements LongStream {
         return internal.summaryStatistics();
     }
 
+    /**
+     * Returns the mean and variance of the values, computed in a single pass. Unlike {@link #summaryStatistics()}, also computes the variance,
+     * without the loss of precision of summing squares. A parallel stream computes statistics per thread, that are merged at the end.
+     * @return Returns the statistics.
+     */
+    public @NotNull VarianceStatistics varianceStatistics() {
+        return internal.collect(VarianceStatistics::new, VarianceStatistics::accept, VarianceStatistics::combine);
+    }
+
+    /**
+     * Returns the exact quantiles of the values. The values are collected into an array and sorted by a radix sort.
+     * A quantile is the smallest value, that is not exceeded by the fraction of values (nearest rank).
+     * Use {@link #quantileSketch()} for large streams, whose values do not fit into memory.
+     * @param quantiles The fractions, between zero and one. For example 0.99 for the 99th percentile.
+     * @return Returns the quantiles in the order of the fractions.
+     * @throws NoSuchElementException If the stream is empty.
+     */
+    public long @NotNull [] quantiles(double @NotNull ... quantiles) {
+        for (double quantile : quantiles)
+            if (!(quantile >= 0 && quantile <= 1))
+                throw new IllegalArgumentException("The quantile must be between zero and one.");
+        final long[] values = internal.toArray();
+        if (values.length == 0)
+            throw new NoSuchElementException("The stream is empty.");
+        PrimitiveSorts.radixSort(values);
+        final long[] result = new long[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++)
+            result[i] = values[(int) Math.max(0, Math.ceil(quantiles[i] * values.length) - 1)];
+        return result;
+    }
+
+    /**
+     * Returns a sketch of the values, that estimates their quantiles with a rank error of about one percent and bounded memory.
+     * A parallel stream computes a sketch per thread, that are merged at the end.
+     * @return Returns the sketch.
+     */
+    public @NotNull KllSketch quantileSketch() {
+        return internal.collect(KllSketch::new, KllSketch::accept, KllSketch::combine);
+    }
+
+    /**
+     * Returns a sketch of the values, that estimates their quantiles with bounded memory.
+     * @param k The capacity of the sketch. The rank error is about 1.7/k.
+     * @return Returns the sketch.
+     */
+    public @NotNull KllSketch quantileSketch(int k) {
+        return internal.collect(() -> new KllSketch(k), KllSketch::accept, KllSketch::combine);
+    }
+
+    /**
+     * Returns a histogram of the values in buckets of equal width.
+     * @param min The inclusive lower bound of the first bucket.
+     * @param max The exclusive upper bound of the last bucket.
+     * @param bucketCount The amount of buckets.
+     * @return Returns the histogram.
+     */
+    public @NotNull DoubleHistogram histogram(double min, double max, int bucketCount) {
+        return histogram(DoubleHistogram.linear(min, max, bucketCount));
+    }
+
+    /**
+     * Returns a histogram of the values in buckets, whose upper bound is a fixed multiple of their lower bound, like for latencies.
+     * @param min The inclusive lower bound of the first bucket. Must be positive.
+     * @param max The exclusive upper bound of the last bucket.
+     * @param bucketCount The amount of buckets.
+     * @return Returns the histogram.
+     */
+    public @NotNull DoubleHistogram logarithmicHistogram(double min, double max, int bucketCount) {
+        return histogram(DoubleHistogram.logarithmic(min, max, bucketCount));
+    }
+
+    /**
+     * Returns a histogram of the values with the buckets of the given histogram. A parallel stream counts into a histogram per thread, that are merged at the end.
+     * @param buckets The histogram, whose buckets are used. Its counts are ignored.
+     * @return Returns the histogram.
+     */
+    public @NotNull DoubleHistogram histogram(@NotNull DoubleHistogram buckets) {
+        return internal.collect(buckets::withoutCounts, DoubleHistogram::accept, DoubleHistogram::combine);
+    }
+
     @Override
     public boolean anyMatch(LongPredicate predicate) {
         return internal.anyMatch(predicate);
@@ -1,10 +1,12 @@
 package frechsack.prod.util.stream;
 
+import frechsack.prod.util.sketch.CountMinSketch;
+import frechsack.prod.util.sketch.HyperLogLog;
+import frechsack.prod.util.sketch.SpaceSaving;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -36,25 +38,260 @@ public class FStream<Type> implements Stream<Type> {
         return apply(internal.filter(predicate));
     }
 
+    /**
+     * Returns a stream, that contains the first element of each distinct attribute. The attribute is extracted by the given function.
+     * Behaves like {@link #distinct()}: A sequential stream keeps the attributes in an unsynchronized set,
+     * an unordered parallel stream in a concurrent set and an ordered parallel stream in a set per thread, that are merged in encounter order.
+     * @param extractor The function, that extracts the attribute.
+     * @return Returns this stream.
+     */
     public FStream<Type> distinctBy(Function<Type, ?> extractor){
-        final Set<Object> passedElements = Collections.synchronizedSet(new HashSet<>());
-        return apply(internal.filter(element -> passedElements.add(extractor.apply(element))).onClose(passedElements::clear));
-    }
-
+        Objects.requireNonNull(extractor);
+        return apply(internal.map(element -> new StreamUtils.DistinctKey<>(extractor.apply(element), element))
+                .distinct()
+                .map(StreamUtils.DistinctKey::element));
+    }
+
+    /**
+     * Returns a stream, that contains the elements, whose attribute was probably not contained before.
+     * The attributes are kept in a Bloom filter, so the memory does not grow with the amount of distinct attributes. See {@link StreamUtils#filterDistinctByApproximate(Function, long, double)}.
+     * @param extractor The function, that extracts the attribute.
+     * @param expectedDistinctCount The amount of distinct attributes, that are expected.
+     * @param falsePositiveProbability The probability, that an element with a new attribute is removed.
+     * @return Returns this stream.
+     */
+    public FStream<Type> distinctByApproximate(Function<Type, ?> extractor, long expectedDistinctCount, double falsePositiveProbability){
+        return apply(internal.filter(StreamUtils.filterDistinctByApproximate(extractor, expectedDistinctCount, falsePositiveProbability)));
+    }
+
+    /**
+     * Returns a stream, that contains the elements, whose attribute was probably not contained before, like {@link #distinctByApproximate(Function, long, double)},
+     * but hashes the attributes by the given 64 bit hash function. See {@link StreamUtils#filterDistinctByApproximate(Function, ToLongFunction, long, double)}.
+     * @param extractor The function, that extracts the attribute.
+     * @param hasher Returns a 64 bit hash of an attribute. Equal attributes must have equal hashes.
+     * @param expectedDistinctCount The amount of distinct attributes, that are expected.
+     * @param falsePositiveProbability The probability, that an element with a new attribute is removed.
+     * @return Returns this stream.
+     * @param <Attribute> The attribute type.
+     */
+    public <Attribute> FStream<Type> distinctByApproximate(Function<Type, ? extends Attribute> extractor, ToLongFunction<? super Attribute> hasher, long expectedDistinctCount, double falsePositiveProbability){
+        return apply(internal.filter(StreamUtils.filterDistinctByApproximate(extractor, hasher, expectedDistinctCount, falsePositiveProbability)));
+    }
+
+    /**
+     * Returns a stream, that contains the first element of each group of equal elements. Each element is compared with every kept element.
+     * On a parallel stream, the kept element of a group is not necessarily the first in encounter order.
+     * <p>
+     * Only suitable for small streams: The comparisons grow quadratic with the amount of elements, and a parallel stream checks its elements one after another.
+     * Use {@link #distinct(Function, BiPredicate)} or {@link #distinctSortedNeighborhood(Comparator, int, BiPredicate)} for large streams.
+     * @param comparator Returns true for elements, that are logical equal.
+     * @return Returns this stream.
+     */
     public FStream<Type> distinct(BiPredicate<Type, Type> comparator){
-        final ConcurrentHashMap<Type, Object> passedElements = new ConcurrentHashMap<>();
-        final var keySet = passedElements.keySet();
-        final Object dummy = new Object();
-        return apply(internal.filter(element -> {
-            for (Type passedElement : keySet)
-                if(!comparator.test(passedElement, element))
-                    return false;
-            return passedElements.put(element, dummy) == null;
-        }).onClose(passedElements::clear));
-    }
-
+        return apply(internal.filter(StreamUtils.filterDistinct(comparator)));
+    }
+
+    /**
+     * Returns a stream, that contains the first element of each group of equal elements. Elements are only compared with the kept elements of the same block.
+     * See {@link StreamUtils#filterDistinct(Function, BiPredicate)}.
+     * @param blockingKey Extracts the key of the block of an element. Elements with different keys are never equal.
+     * @param comparator Returns true for elements, that are logical equal.
+     * @return Returns this stream.
+     */
+    public FStream<Type> distinct(Function<? super Type, ?> blockingKey, BiPredicate<Type, Type> comparator){
+        return apply(internal.filter(StreamUtils.filterDistinct(blockingKey, comparator)));
+    }
+
+    /**
+     * Returns a stream, that removes fuzzy duplicates by the sorted neighborhood method. The elements are sorted by the given order,
+     * each element is only compared with the last kept elements within the window and removed, if it is equal to one of them.
+     * Duplicates, that are not sorted within the window of each other, are kept. The returned stream is sorted by the order.
+     * <p>
+     * The elements are sorted and compared, when the terminal operation starts. The comparisons grow linear with the amount of elements.
+     * @param order The order, that places similar elements next to each other.
+     * @param windowSize The amount of kept elements, each element is compared with.
+     * @param comparator Returns true for elements, that are logical equal.
+     * @return Returns this stream.
+     */
+    public FStream<Type> distinctSortedNeighborhood(Comparator<? super Type> order, int windowSize, BiPredicate<Type, Type> comparator){
+        Objects.requireNonNull(order);
+        Objects.requireNonNull(comparator);
+        if (windowSize < 1)
+            throw new IllegalArgumentException("The window size must be positive.");
+        return apply(StreamUtils.lazyBarrier(internal.sorted(order), sorted -> StreamUtils.distinctSortedNeighborhood(sorted, windowSize, comparator)));
+    }
+
+    private <OutputType> FStream<OutputType> window(Function<Spliterator<Type>, Spliterator<OutputType>> spliterator) {
+        final var source = internal;
+        // The spliterator is created eagerly, like by Stream#concat, so the stream reports its actual characteristics. The source is still traversed lazily.
+        return FStream.of(StreamSupport.stream(spliterator.apply(source.spliterator()), source.isParallel()).onClose(source::close));
+    }
+
+    /**
+     * Returns a stream of consecutive chunks of the given size. The last chunk contains the remaining elements.
+     * The chunks are created lazily. On a parallel stream, batches of chunks are processed concurrently.
+     * @param size The size of a chunk.
+     * @return Returns the stream of chunks. Each chunk is a new list.
+     */
+    public FStream<List<Type>> chunked(int size){
+        if (size < 1)
+            throw new IllegalArgumentException("The size must be positive.");
+        return window(source -> new WindowSpliterators.Chunked<>(source, size));
+    }
+
+    /**
+     * Returns a stream of windows of the given size, that start every step elements. Windows overlap, if the step is smaller than the size,
+     * and elements are skipped, if it is larger. Only full windows are returned, unless the stream is shorter than a single window.
+     * @param size The size of a window.
+     * @param step The amount of elements, between the starts of two windows.
+     * @return Returns the stream of windows. Each window is a new list.
+     */
+    public FStream<List<Type>> sliding(int size, int step){
+        if (size < 1 || step < 1)
+            throw new IllegalArgumentException("The size and step must be positive.");
+        return window(source -> new WindowSpliterators.Sliding<>(source, size, step));
+    }
+
+    /**
+     * Returns a stream of groups of consecutive elements, that have equal keys.
+     * @param keyExtractor Extracts the key of an element.
+     * @return Returns the stream of groups. Each group is a new list.
+     */
+    public FStream<List<Type>> groupAdjacentBy(Function<? super Type, ?> keyExtractor){
+        Objects.requireNonNull(keyExtractor);
+        return window(source -> new WindowSpliterators.GroupAdjacent<>(source, keyExtractor));
+    }
+
+    /**
+     * Returns a stream of tumbling time windows. The time of an element is extracted by the given function and
+     * consecutive elements, whose times fall into the same window, are grouped. The stream must be ordered by time, an element,
+     * that is out of order, starts a new window.
+     * @param timeExtractor Extracts the time of an element, for example epoch milliseconds.
+     * @param windowLength The length of a window, in the unit of the time. Windows start at multiples of the length.
+     * @return Returns the stream of windows. Each window is a new list.
+     */
+    public FStream<List<Type>> windowedBy(ToLongFunction<? super Type> timeExtractor, long windowLength){
+        Objects.requireNonNull(timeExtractor);
+        if (windowLength < 1)
+            throw new IllegalArgumentException("The window length must be positive.");
+        return groupAdjacentBy(element -> Math.floorDiv(timeExtractor.applyAsLong(element), windowLength));
+    }
+
+    /**
+     * Performs the action for consecutive chunks of the given size in encounter order. The last chunk contains the remaining elements.
+     * The chunk is a view of a single buffer, that is reused for each chunk. It is only valid during the action and must be copied to be kept.
+     * This is a terminal operation.
+     * @param size The size of a chunk.
+     * @param action The action, for example a batch insert.
+     */
+    public void forEachChunk(int size, Consumer<? super List<Type>> action){
+        if (size < 1)
+            throw new IllegalArgumentException("The size must be positive.");
+        Objects.requireNonNull(action);
+        final List<Type> buffer = new ArrayList<>(size);
+        final List<Type> view = Collections.unmodifiableList(buffer);
+        internal.forEachOrdered(element -> {
+            buffer.add(element);
+            if (buffer.size() == size) {
+                action.accept(view);
+                buffer.clear();
+            }
+        });
+        if (!buffer.isEmpty())
+            action.accept(view);
+    }
+
+    /**
+     * Returns a stream of the k greatest elements in descending order. Equivalent to sorting in reversed order and limiting to k elements,
+     * but keeps only k elements in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of elements.
+     * @param comparator The order of the elements.
+     * @return Returns this stream.
+     */
+    public FStream<Type> topK(int k, Comparator<? super Type> comparator){
+        Objects.requireNonNull(comparator);
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of elements must not be negative.");
+        return apply(StreamUtils.lazyCollect(internal, BoundedHeaps.greatest(k, comparator)));
+    }
+
+    /**
+     * Returns a stream of the k smallest elements in ascending order. Equivalent to sorting and limiting to k elements,
+     * but keeps only k elements in a bounded heap instead of sorting the whole stream. A parallel stream uses a heap per thread.
+     * @param k The amount of elements.
+     * @param comparator The order of the elements.
+     * @return Returns this stream.
+     */
+    public FStream<Type> bottomK(int k, Comparator<? super Type> comparator){
+        Objects.requireNonNull(comparator);
+        return topK(k, Collections.reverseOrder(comparator));
+    }
+
+    /**
+     * Returns a stream, that is sorted by the natural order of an attribute. Null elements and null attributes are ordered last. The sort is stable.
+     * The attribute of each element is extracted once, before the elements are sorted. A parallel stream is sorted by multiple threads.
+     * @param extractor Extracts the attribute. Must return a {@link Comparable}.
+     * @return Returns this stream.
+     */
     public FStream<Type> sortedBy(Function<? super Type, ?> extractor){
-        return apply(internal.sorted(StreamUtils.sortedBy(extractor)));
+        Objects.requireNonNull(extractor);
+        final boolean isParallel = internal.isParallel();
+        return apply(StreamUtils.lazyBarrier(internal, elements -> {
+            final List<Type> nonNullElements = new ArrayList<>(elements.size());
+            final List<Object> keys = new ArrayList<>(elements.size());
+            for (Type element : elements)
+                if (element != null) {
+                    nonNullElements.add(element);
+                    keys.add(extractor.apply(element));
+                }
+            final List<Type> sorted = PrimitiveSorts.sortByKeys(nonNullElements, keys, StreamUtils::compareKeys, isParallel);
+            for (int i = nonNullElements.size(); i < elements.size(); i++)
+                sorted.add(null);
+            return sorted;
+        }));
+    }
+
+    /**
+     * Returns a stream, that is sorted by an int attribute. The sort is stable.
+     * The attributes are extracted once into an array, that is sorted without boxing. A parallel stream is sorted by multiple threads.
+     * @param extractor Extracts the attribute.
+     * @return Returns this stream.
+     */
+    public FStream<Type> sortedByInt(ToIntFunction<? super Type> extractor){
+        Objects.requireNonNull(extractor);
+        return sortedByKey(element -> extractor.applyAsInt(element));
+    }
+
+    /**
+     * Returns a stream, that is sorted by a long attribute. The sort is stable.
+     * The attributes are extracted once into an array, that is sorted without boxing. A parallel stream is sorted by multiple threads.
+     * @param extractor Extracts the attribute.
+     * @return Returns this stream.
+     */
+    public FStream<Type> sortedByLong(ToLongFunction<? super Type> extractor){
+        Objects.requireNonNull(extractor);
+        return sortedByKey(extractor);
+    }
+
+    /**
+     * Returns a stream, that is sorted by a double attribute in the order of {@link Double#compare(double, double)}. The sort is stable.
+     * The attributes are extracted once into an array, that is sorted without boxing. A parallel stream is sorted by multiple threads.
+     * @param extractor Extracts the attribute.
+     * @return Returns this stream.
+     */
+    public FStream<Type> sortedByDouble(ToDoubleFunction<? super Type> extractor){
+        Objects.requireNonNull(extractor);
+        return sortedByKey(element -> PrimitiveSorts.sortableBits(extractor.applyAsDouble(element)));
+    }
+
+    private FStream<Type> sortedByKey(ToLongFunction<? super Type> extractor){
+        final boolean isParallel = internal.isParallel();
+        return apply(StreamUtils.lazyBarrier(internal, elements -> {
+            final long[] keys = new long[elements.size()];
+            for (int i = 0; i < keys.length; i++)
+                keys[i] = extractor.applyAsLong(elements.get(i));
+            return PrimitiveSorts.permute(elements, PrimitiveSorts.sortedIndices(keys, isParallel), false);
+        }));
     }
 
     public FStream<Type> add(Stream<? extends Type> elements){
@@ -235,6 +472,85 @@ public class FStream<Type> implements Stream<Type> {
         return internal.count();
     }
 
+    /**
+     * Returns the estimated amount of distinct elements with a relative error of about 0.8 percent. The elements are counted by a {@link HyperLogLog},
+     * whose memory does not grow with the amount of elements, unlike {@link #distinct()}. A parallel stream counts into a sketch per thread, that are merged at the end.
+     * <p>
+     * Strings and longs are hashed with 64 bits. Other elements are hashed by their hash code, which has 2^32 values, so the estimate of n distinct elements
+     * is additionally biased low by about n / 2^33, for example 1.2 percent at 100 million elements. Use {@link #countDistinctApprox(int, ToLongFunction)} for such elements.
+     * @return Returns the estimated amount.
+     */
+    public long countDistinctApprox() {
+        return internal.collect(HyperLogLog<Type>::new, HyperLogLog::add, HyperLogLog::combine).cardinality();
+    }
+
+    /**
+     * Returns the estimated amount of distinct elements. See {@link #countDistinctApprox()}.
+     * @param precision The precision of the {@link HyperLogLog}, between 4 and 18. The relative error is 1.04/sqrt(2^precision).
+     * @return Returns the estimated amount.
+     */
+    public long countDistinctApprox(int precision) {
+        return internal.collect(() -> new HyperLogLog<Type>(precision), HyperLogLog::add, HyperLogLog::combine).cardinality();
+    }
+
+    /**
+     * Returns the estimated amount of distinct elements, that are hashed by the given function. See {@link #countDistinctApprox()}.
+     * @param precision The precision of the {@link HyperLogLog}, between 4 and 18. The relative error is 1.04/sqrt(2^precision).
+     * @param hasher Returns a 64 bit hash of an element. Equal elements must have equal hashes.
+     * @return Returns the estimated amount.
+     */
+    public long countDistinctApprox(int precision, ToLongFunction<? super Type> hasher) {
+        Objects.requireNonNull(hasher);
+        return internal.collect(() -> new HyperLogLog<Type>(precision, hasher), HyperLogLog::add, HyperLogLog::combine).cardinality();
+    }
+
+    /**
+     * Returns the k most frequent elements with their estimated counts, from the most to the least frequent. The elements are counted by {@link SpaceSaving}
+     * with ten counters per requested element, so the memory does not grow with the amount of distinct elements. The count of an element exceeds its true count
+     * by no more than its error. A parallel stream counts per thread and merges the counters at the end.
+     * @param k The amount of elements.
+     * @return Returns the elements.
+     */
+    public @NotNull List<SpaceSaving.HeavyHitter<Type>> heavyHitters(int k) {
+        return heavyHitters(k, (int) Math.min(Integer.MAX_VALUE, Math.max(k * 10L, 100)));
+    }
+
+    /**
+     * Returns the k most frequent elements with their estimated counts, from the most to the least frequent. See {@link #heavyHitters(int)}.
+     * @param k The amount of elements.
+     * @param capacity The amount of counters. The error of a count is at most the amount of elements divided by the capacity.
+     * @return Returns the elements.
+     */
+    public @NotNull List<SpaceSaving.HeavyHitter<Type>> heavyHitters(int k, int capacity) {
+        if (k < 0)
+            throw new IllegalArgumentException("The amount of elements must not be negative.");
+        return internal.collect(() -> new SpaceSaving<Type>(capacity), SpaceSaving::add, SpaceSaving::combine).topK(k);
+    }
+
+    /**
+     * Returns a {@link CountMinSketch} of the elements, that estimates the frequency of any element with fixed memory.
+     * A parallel stream counts into a sketch per thread, that are merged at the end.
+     * Strings and longs are hashed with 64 bits, other elements by their hash code, so elements with equal hash codes share their counters.
+     * @param epsilon The maximal overestimation relative to the amount of elements, for example 0.001.
+     * @param confidence The probability, that an estimate is within the overestimation, for example 0.99.
+     * @return Returns the sketch.
+     */
+    public @NotNull CountMinSketch<Type> frequencySketch(double epsilon, double confidence) {
+        return internal.collect(() -> new CountMinSketch<Type>(epsilon, confidence), CountMinSketch::add, CountMinSketch::combine);
+    }
+
+    /**
+     * Returns a {@link CountMinSketch} of the elements, that are hashed by the given function. See {@link #frequencySketch(double, double)}.
+     * @param epsilon The maximal overestimation relative to the amount of elements, for example 0.001.
+     * @param confidence The probability, that an estimate is within the overestimation, for example 0.99.
+     * @param hasher Returns a 64 bit hash of an element. Equal elements must have equal hashes.
+     * @return Returns the sketch.
+     */
+    public @NotNull CountMinSketch<Type> frequencySketch(double epsilon, double confidence, ToLongFunction<? super Type> hasher) {
+        Objects.requireNonNull(hasher);
+        return internal.collect(() -> new CountMinSketch<Type>(epsilon, confidence, hasher), CountMinSketch::add, CountMinSketch::combine);
+    }
+
     @Override
     public boolean anyMatch(Predicate<? super Type> predicate) {
         return internal.anyMatch(predicate);
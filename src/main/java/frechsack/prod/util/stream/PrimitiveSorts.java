@@ -0,0 +1,338 @@
+package frechsack.prod.util.stream;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts elements by keys, that are extracted once per element.
+ */
+class PrimitiveSorts {
+
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+    private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+    private PrimitiveSorts() {}
+
+    /**
+     * Converts the double into a long, that has the same order as {@link Double#compare(double, double)}.
+     * @param value The double.
+     * @return Returns the long.
+     */
+    static long sortableBits(double value) {
+        final long bits = Double.doubleToLongBits(value);
+        // Negative doubles are ordered reversed by their bits, so all bits but the sign are flipped.
+        return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+    }
+
+    /**
+     * Converts the result of {@link #sortableBits(double)} back into the double.
+     * @param bits The sortable bits.
+     * @return Returns the double.
+     */
+    static double fromSortableBits(long bits) {
+        return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+    }
+
+    /**
+     * Reverses the values in place.
+     * @param values The values.
+     */
+    static void reverse(int @NotNull [] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            final int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    static void reverse(long @NotNull [] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            final long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    static void reverse(double @NotNull [] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            final double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /**
+     * Sorts the values by a least significant digit radix sort with 8 bit digits. Takes four linear passes, passes of digits,
+     * that are equal for all values, are skipped. So dense values, like ids, are sorted in two or three passes.
+     * @param values The values.
+     */
+    static void radixSort(int @NotNull [] values) {
+        if (values.length < 2)
+            return;
+        final int[][] counts = new int[Integer.BYTES][256];
+        for (int value : values) {
+            // The sign bit is flipped, so negative values are ordered first.
+            final int key = value ^ Integer.MIN_VALUE;
+            for (int digit = 0; digit < Integer.BYTES; digit++)
+                counts[digit][(key >>> (digit * 8)) & 0xFF]++;
+        }
+        int[] source = values;
+        int[] target = new int[values.length];
+        for (int digit = 0; digit < Integer.BYTES; digit++) {
+            final int[] count = counts[digit];
+            if (isSingleBucket(count, values.length))
+                continue;
+            toOffsets(count);
+            final int shift = digit * 8;
+            for (int value : source)
+                target[count[((value ^ Integer.MIN_VALUE) >>> shift) & 0xFF]++] = value;
+            final int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != values)
+            System.arraycopy(source, 0, values, 0, values.length);
+    }
+
+    /**
+     * Sorts the values by a least significant digit radix sort with 8 bit digits. Takes eight linear passes, passes of digits,
+     * that are equal for all values, are skipped.
+     * @param values The values.
+     */
+    static void radixSort(long @NotNull [] values) {
+        if (values.length < 2)
+            return;
+        final int[][] counts = new int[Long.BYTES][256];
+        for (long value : values) {
+            final long key = value ^ Long.MIN_VALUE;
+            for (int digit = 0; digit < Long.BYTES; digit++)
+                counts[digit][(int) (key >>> (digit * 8)) & 0xFF]++;
+        }
+        long[] source = values;
+        long[] target = new long[values.length];
+        for (int digit = 0; digit < Long.BYTES; digit++) {
+            final int[] count = counts[digit];
+            if (isSingleBucket(count, values.length))
+                continue;
+            toOffsets(count);
+            final int shift = digit * 8;
+            for (long value : source)
+                target[count[(int) ((value ^ Long.MIN_VALUE) >>> shift) & 0xFF]++] = value;
+            final long[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != values)
+            System.arraycopy(source, 0, values, 0, values.length);
+    }
+
+    /**
+     * Sorts the values by a radix sort of their {@link #sortableBits(double) sortable bits}, in the order of {@link Double#compare(double, double)}.
+     * @param values The values.
+     */
+    static void radixSort(double @NotNull [] values) {
+        final long[] keys = new long[values.length];
+        for (int i = 0; i < values.length; i++)
+            keys[i] = sortableBits(values[i]);
+        radixSort(keys);
+        for (int i = 0; i < values.length; i++)
+            values[i] = fromSortableBits(keys[i]);
+    }
+
+    private static boolean isSingleBucket(int @NotNull [] count, int length) {
+        for (int bucketCount : count)
+            if (bucketCount != 0)
+                return bucketCount == length;
+        return true;
+    }
+
+    private static void toOffsets(int @NotNull [] count) {
+        int offset = 0;
+        for (int i = 0; i < count.length; i++) {
+            final int bucketCount = count[i];
+            count[i] = offset;
+            offset += bucketCount;
+        }
+    }
+
+    /**
+     * Sorts the values by counting the occurrences of each value of the range. Takes two linear passes and memory for the range.
+     * @param values The values.
+     * @param min The smallest value of the range.
+     * @param max The largest value of the range.
+     * @throws IllegalArgumentException If a value is outside the range.
+     */
+    static void countingSort(int @NotNull [] values, int min, int max) {
+        final long range = (long) max - min + 1;
+        if (range < 1 || range > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException("The range must not be empty and must fit into an array.");
+        final int[] counts = new int[(int) range];
+        for (int value : values) {
+            if (value < min || value > max)
+                throw new IllegalArgumentException("The value " + value + " is outside the range [" + min + ", " + max + "].");
+            counts[value - min]++;
+        }
+        int index = 0;
+        for (int i = 0; i < counts.length; i++)
+            for (int count = counts[i]; count > 0; count--)
+                values[index++] = min + i;
+    }
+
+    /**
+     * Returns the indices of the keys in ascending order of the keys. Indices of equal keys keep their order.
+     * @param keys The keys. Are sorted by this call.
+     * @param isParallel If true, large arrays are sorted by multiple threads.
+     * @return Returns the sorted indices.
+     */
+    static int @NotNull [] sortedIndices(long @NotNull [] keys, boolean isParallel) {
+        final int[] indices = new int[keys.length];
+        for (int i = 0; i < indices.length; i++)
+            indices[i] = i;
+        final long[] keyBuffer = new long[keys.length];
+        final int[] indexBuffer = new int[keys.length];
+        if (isParallel && keys.length > PARALLEL_THRESHOLD)
+            ForkJoinPool.commonPool().invoke(new MergeSortTask(keys, indices, keyBuffer, indexBuffer, 0, keys.length));
+        else
+            mergeSort(keys, indices, keyBuffer, indexBuffer, 0, keys.length);
+        return indices;
+    }
+
+    /**
+     * Returns the elements in the order of the indices.
+     * @param elements The elements.
+     * @param indices The indices.
+     * @param isReversed If true, the indices are read from the last to the first.
+     * @return Returns the ordered elements.
+     * @param <Type> The element type.
+     */
+    static <Type> @NotNull List<Type> permute(@NotNull List<Type> elements, int @NotNull [] indices, boolean isReversed) {
+        final List<Type> sorted = new ArrayList<>(indices.length);
+        if (isReversed)
+            for (int i = indices.length - 1; i >= 0; i--)
+                sorted.add(elements.get(indices[i]));
+        else
+            for (int index : indices)
+                sorted.add(elements.get(index));
+        return sorted;
+    }
+
+    /**
+     * Sorts the elements by the keys with the comparator. Each key is extracted once, instead of twice per comparison.
+     * @param elements The elements.
+     * @param keys The keys of the elements.
+     * @param comparator Compares two keys.
+     * @param isParallel If true, large lists are sorted by multiple threads.
+     * @return Returns the sorted elements. The sort is stable.
+     * @param <Type> The element type.
+     * @param <Key> The key type.
+     */
+    @SuppressWarnings("unchecked")
+    static <Type, Key> @NotNull List<Type> sortByKeys(@NotNull List<Type> elements, @NotNull List<Key> keys, @NotNull Comparator<? super Key> comparator, boolean isParallel) {
+        final Keyed<Type, Key>[] keyed = (Keyed<Type, Key>[]) new Keyed<?, ?>[elements.size()];
+        for (int i = 0; i < keyed.length; i++)
+            keyed[i] = new Keyed<>(keys.get(i), elements.get(i));
+        final Comparator<Keyed<Type, Key>> keyComparator = (lhs, rhs) -> comparator.compare(lhs.key, rhs.key);
+        // Both sorts of objects are stable merge sorts.
+        if (isParallel)
+            Arrays.parallelSort(keyed, keyComparator);
+        else
+            Arrays.sort(keyed, keyComparator);
+        final List<Type> sorted = new ArrayList<>(keyed.length);
+        for (var element : keyed)
+            sorted.add(element.element);
+        return sorted;
+    }
+
+    private record Keyed<Type, Key>(Key key, Type element) {}
+
+    /**
+     * Sorts the range of the keys and moves the indices along. The buffers must have the size of the keys.
+     */
+    private static void mergeSort(long[] keys, int[] indices, long[] keyBuffer, int[] indexBuffer, int from, int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(keys, indices, from, to);
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        mergeSort(keys, indices, keyBuffer, indexBuffer, from, middle);
+        mergeSort(keys, indices, keyBuffer, indexBuffer, middle, to);
+        merge(keys, indices, keyBuffer, indexBuffer, from, middle, to);
+    }
+
+    private static void insertionSort(long[] keys, int[] indices, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            final long key = keys[i];
+            final int index = indices[i];
+            int j = i - 1;
+            while (j >= from && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                indices[j + 1] = indices[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            indices[j + 1] = index;
+        }
+    }
+
+    private static void merge(long[] keys, int[] indices, long[] keyBuffer, int[] indexBuffer, int from, int middle, int to) {
+        // Already in order, for example for presorted input.
+        if (keys[middle - 1] <= keys[middle])
+            return;
+        System.arraycopy(keys, from, keyBuffer, from, to - from);
+        System.arraycopy(indices, from, indexBuffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            // Takes the left key on equality, so the sort is stable.
+            if (right >= to || (left < middle && keyBuffer[left] <= keyBuffer[right])) {
+                keys[i] = keyBuffer[left];
+                indices[i] = indexBuffer[left++];
+            }
+            else {
+                keys[i] = keyBuffer[right];
+                indices[i] = indexBuffer[right++];
+            }
+        }
+    }
+
+    private static final class MergeSortTask extends RecursiveAction {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final long[] keys;
+        private final int[] indices;
+        private final long[] keyBuffer;
+        private final int[] indexBuffer;
+        private final int from;
+        private final int to;
+
+        private MergeSortTask(long[] keys, int[] indices, long[] keyBuffer, int[] indexBuffer, int from, int to) {
+            this.keys = keys;
+            this.indices = indices;
+            this.keyBuffer = keyBuffer;
+            this.indexBuffer = indexBuffer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                mergeSort(keys, indices, keyBuffer, indexBuffer, from, to);
+                return;
+            }
+            final int middle = (from + to) >>> 1;
+            invokeAll(new MergeSortTask(keys, indices, keyBuffer, indexBuffer, from, middle),
+                    new MergeSortTask(keys, indices, keyBuffer, indexBuffer, middle, to));
+            merge(keys, indices, keyBuffer, indexBuffer, from, middle, to);
+        }
+    }
+}
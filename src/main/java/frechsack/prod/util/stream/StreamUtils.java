@@ -1,15 +1,21 @@
 package frechsack.prod.util.stream;
 
+import frechsack.prod.util.sketch.BloomFilter;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.*;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StreamUtils {
 
+    private static final Object NULL_KEY = new Object();
+
     private StreamUtils() {}
 
     @SuppressWarnings("unchecked")
@@ -45,61 +51,199 @@ public class StreamUtils {
         };
     }
 
-    @SuppressWarnings("unchecked")
     public static <Input, Output> @NotNull Comparator<Input> sortedBy(@NotNull Function<Input,Output> extractor){
         Objects.requireNonNull(extractor);
         return (lhs, rhs) -> {
             if(lhs == null && rhs == null) return 0;
             if(lhs == null) return 1;
             if(rhs == null) return -1;
-
-            Output cLhs = extractor.apply(lhs);
-            Output cRhs = extractor.apply(rhs);
-
-            if(cLhs == null && cRhs == null) return 0;
-            if(cLhs == null) return 1;
-            if(cRhs == null) return -1;
-
-            if(cLhs instanceof Comparable<?> )
-              return ((Comparable<Output>) cLhs).compareTo(cRhs);
-
-            throw new IllegalArgumentException("Class: '" + cLhs.getClass() +  "' does not implement java.lang.Comparable.");
+            return compareKeys(extractor.apply(lhs), extractor.apply(rhs));
         };
     }
 
+    /**
+     * Compares two keys by their natural order. Null keys are ordered last.
+     * @throws IllegalArgumentException If a key does not implement {@link Comparable}.
+     */
+    @SuppressWarnings("unchecked")
+    static int compareKeys(Object lhs, Object rhs){
+        if(lhs == null && rhs == null) return 0;
+        if(lhs == null) return 1;
+        if(rhs == null) return -1;
+
+        if(lhs instanceof Comparable<?>)
+            return ((Comparable<Object>) lhs).compareTo(rhs);
 
+        throw new IllegalArgumentException("Class: '" + lhs.getClass() +  "' does not implement java.lang.Comparable.");
+    }
 
     /**
      * Returns a {@link Predicate}, that will return true for each element passed in the first time.
      * The distinctness of the elements is computed by the given {@link BiPredicate}.
      * If the predicate returns true for any element, the element will not be present on the result stream.
+     * <p>
+     * Only suitable for small streams: Each element is compared with every passed element, so the comparisons grow quadratic with the amount of elements.
+     * All elements share a single block, so the elements of a parallel stream are checked one after another.
+     * Use {@link #filterDistinct(Function, BiPredicate)} with a blocking key, or {@link FStream#distinctSortedNeighborhood(Comparator, int, BiPredicate)}, for large streams.
      * @param comparator To compare two elements. Should return true for elements, that are logical equal.
      * Those elements will be removed from the stream.
      * @return Returns a Predicate, that can be used in {@link java.util.stream.Stream#filter(Predicate)} to return a Stream with distinct elements.
      * @param <Type> The Streams element type.
      */
     public static <Type> @NotNull Predicate<Type> filterDistinct(@NotNull BiPredicate<Type, Type> comparator){
-        final ConcurrentHashMap<Type, Object> passedElements = new ConcurrentHashMap<>();
-        final var keySet = passedElements.keySet();
-        final Object dummy = new Object();
+        return filterDistinct(element -> NULL_KEY, comparator);
+    }
+
+    /**
+     * Returns a {@link Predicate}, that will return true for each element passed in the first time.
+     * The elements are grouped into blocks by the given key. An element is only compared with the passed elements of its block,
+     * so the comparator must not consider elements with different keys equal. Blocks are checked concurrently, elements of the same block one after another.
+     * @param blockingKey Extracts the key of the block of an element, for example a normalized prefix or a hash of the attributes, that must match.
+     * @param comparator To compare two elements. Should return true for elements, that are logical equal.
+     * Those elements will be removed from the stream.
+     * @return Returns a Predicate, that can be used in {@link java.util.stream.Stream#filter(Predicate)} to return a Stream with distinct elements.
+     * @param <Type> The Streams element type.
+     */
+    public static <Type> @NotNull Predicate<Type> filterDistinct(@NotNull Function<? super Type, ?> blockingKey, @NotNull BiPredicate<Type, Type> comparator){
+        Objects.requireNonNull(blockingKey);
+        Objects.requireNonNull(comparator);
+        final ConcurrentHashMap<Object, List<Type>> blocks = new ConcurrentHashMap<>();
         return element -> {
-            for (Type passedElement : keySet)
-                if(!comparator.test(passedElement, element))
-                    return false;
-            return passedElements.put(element, dummy) == null;
+            final boolean[] isDistinct = new boolean[1];
+            // The block is locked while the element is compared, so equal elements, that are passed concurrently, can not both pass.
+            blocks.compute(Objects.requireNonNullElse(blockingKey.apply(element), NULL_KEY), (key, block) -> {
+                if (block == null)
+                    block = new ArrayList<>(2);
+                for (Type passedElement : block)
+                    if (comparator.test(passedElement, element))
+                        return block;
+                block.add(element);
+                isDistinct[0] = true;
+                return block;
+            });
+            return isDistinct[0];
         };
     }
 
+    /**
+     * Removes the duplicates of a sorted list by the sorted neighborhood method: Each element is only compared with the last kept elements within the window.
+     * @param sortedElements The elements, sorted by a key, that places similar elements next to each other.
+     * @param windowSize The amount of kept elements, each element is compared with.
+     * @param comparator To compare two elements. Should return true for elements, that are logical equal.
+     * @return Returns the kept elements in their order.
+     * @param <Type> The element type.
+     */
+    static <Type> @NotNull List<Type> distinctSortedNeighborhood(@NotNull List<Type> sortedElements, int windowSize, @NotNull BiPredicate<Type, Type> comparator){
+        final List<Type> keptElements = new ArrayList<>();
+        final ArrayDeque<Type> window = new ArrayDeque<>(windowSize);
+        outer:
+        for (Type element : sortedElements) {
+            for (Type keptElement : window)
+                if (comparator.test(keptElement, element))
+                    continue outer;
+            if (window.size() == windowSize)
+                window.removeFirst();
+            window.addLast(element);
+            keptElements.add(element);
+        }
+        return keptElements;
+    }
+
+    /**
+     * Returns a stream, that collects the given stream into a list and passes it to the operation, when its terminal operation starts.
+     * Used for operations, that need all elements, while the returned stream stays lazy like the given stream.
+     * The elements are collected with the parallelism of the given stream and the returned stream keeps it.
+     * @param stream The stream.
+     * @param operation The operation, that returns the elements of the returned stream. May modify the list.
+     * @return Returns the stream.
+     * @param <Type> The element type.
+     * @param <OutputType> The element type of the returned stream.
+     */
+    static <Type, OutputType> @NotNull Stream<OutputType> lazyBarrier(@NotNull Stream<Type> stream, @NotNull Function<List<Type>, List<OutputType>> operation){
+        return lazyCollect(stream, Collectors.collectingAndThen(Collectors.toCollection(ArrayList::new), operation));
+    }
+
+    /**
+     * Returns a stream, that collects the given stream with the collector, when its terminal operation starts, and contains the collected elements.
+     * The elements are collected with the parallelism of the given stream and the returned stream keeps it.
+     * @param stream The stream.
+     * @param collector The collector, that returns the elements of the returned stream.
+     * @return Returns the stream.
+     * @param <Type> The element type.
+     * @param <OutputType> The element type of the returned stream.
+     */
+    static <Type, OutputType> @NotNull Stream<OutputType> lazyCollect(@NotNull Stream<Type> stream, @NotNull Collector<Type, ?, ? extends List<OutputType>> collector){
+        return StreamSupport.stream(() -> stream.collect(collector).spliterator(),
+                Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED, stream.isParallel()).onClose(stream::close);
+    }
+
     /**
      * Returns a {@link Predicate}, that will return true for each element passed in the first time.
      * The distinctness of the elements is chosen by a single attribute. The attribute is extracted by the given {@link Function}.
+     * The passed attributes are kept in a concurrent set, so the predicate can be used by a parallel stream without contending on a single lock.
+     * On a parallel stream, the element, that passes, is not necessarily the first in encounter order. Use {@link FStream#distinctBy(Function)} to keep the first.
      * @param extractor The function used to extract an attribute from the element.
      * An element will be removed from the stream, if any element prior had the same attribute returned by this Function.
      * @return Returns a Predicate, that can be used in {@link java.util.stream.Stream#filter(Predicate)} to return a Stream with distinct elements.
      * @param <Type> The Streams element type.
      */
     public static <Type> @NotNull Predicate<Type> filterDistinctBy(@NotNull Function<Type, ?> extractor){
-        final Set<Object> passedElements = Collections.synchronizedSet(new HashSet<>());
+        Objects.requireNonNull(extractor);
+        final Set<Object> passedElements = ConcurrentHashMap.newKeySet();
+        return element -> passedElements.add(Objects.requireNonNullElse(extractor.apply(element), NULL_KEY));
+    }
+
+    /**
+     * Returns a {@link Predicate}, that will return true for each element, whose attribute was probably not passed before.
+     * The passed attributes are kept in a {@link BloomFilter}, so the memory does not grow with the amount of distinct attributes.
+     * An element with a new attribute is removed with the given false positive probability, an element with a passed attribute is always removed,
+     * also if it is passed concurrently on a parallel stream.
+     * <p>
+     * Strings and longs are hashed with 64 bits, other attributes by their {@link Object#hashCode()}, which has 2^32 values. Collisions add about n / 2^32
+     * to the false positive probability for n distinct attributes of other types, use {@link #filterDistinctByApproximate(Function, ToLongFunction, long, double)}
+     * with a 64 bit hash for large amounts of such attributes.
+     * @param extractor The function used to extract an attribute from the element.
+     * @param expectedDistinctCount The amount of distinct attributes, that are expected. The probability of false positives grows, if it is exceeded.
+     * @param falsePositiveProbability The probability, that an element with a new attribute is removed.
+     * @return Returns a Predicate, that can be used in {@link java.util.stream.Stream#filter(Predicate)} to return a Stream with approximately distinct elements.
+     * @param <Type> The Streams element type.
+     */
+    public static <Type> @NotNull Predicate<Type> filterDistinctByApproximate(@NotNull Function<Type, ?> extractor, long expectedDistinctCount, double falsePositiveProbability){
+        Objects.requireNonNull(extractor);
+        final BloomFilter<Object> passedElements = new BloomFilter<>(expectedDistinctCount, falsePositiveProbability);
         return element -> passedElements.add(extractor.apply(element));
     }
+
+    /**
+     * Returns a {@link Predicate}, that will return true for each element, whose attribute was probably not passed before,
+     * like {@link #filterDistinctByApproximate(Function, long, double)}, but hashes the attributes by the given 64 bit hash function.
+     * @param extractor The function used to extract an attribute from the element.
+     * @param hasher Returns a 64 bit hash of an attribute. Equal attributes must have equal hashes.
+     * @param expectedDistinctCount The amount of distinct attributes, that are expected. The probability of false positives grows, if it is exceeded.
+     * @param falsePositiveProbability The probability, that an element with a new attribute is removed.
+     * @return Returns a Predicate, that can be used in {@link java.util.stream.Stream#filter(Predicate)} to return a Stream with approximately distinct elements.
+     * @param <Type> The Streams element type.
+     * @param <Attribute> The attribute type.
+     */
+    public static <Type, Attribute> @NotNull Predicate<Type> filterDistinctByApproximate(@NotNull Function<Type, ? extends Attribute> extractor, @NotNull ToLongFunction<? super Attribute> hasher,
+                                                                                         long expectedDistinctCount, double falsePositiveProbability){
+        Objects.requireNonNull(extractor);
+        final BloomFilter<Attribute> passedElements = new BloomFilter<>(expectedDistinctCount, falsePositiveProbability, hasher);
+        return element -> passedElements.add(extractor.apply(element));
+    }
+
+    /**
+     * An element, that is equal to another, if their keys are equal. Used to apply {@link Stream#distinct()} by a key.
+     */
+    record DistinctKey<Type>(Object key, Type element) {
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof DistinctKey<?> distinctKey && Objects.equals(key, distinctKey.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(key);
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package frechsack.prod.util.stream;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterators, that combine consecutive elements of a source into windows.
+ */
+class WindowSpliterators {
+
+    private WindowSpliterators() {}
+
+    /**
+     * A spliterator, that reads its windows from a source spliterator one after another. Windows depend on their predecessors, so the source is not split.
+     * Instead, a split reads a batch of windows into an array, that is processed by another thread, while this spliterator continues with the remaining source.
+     * The batches grow with each split, like the batches of {@link Spliterators#spliteratorUnknownSize(java.util.Iterator, int)}.
+     */
+    abstract static class AbstractWindowSpliterator<Type> implements Spliterator<List<Type>> {
+        private static final int BATCH_INCREMENT = 64;
+        private static final int MAX_BATCH = 1 << 16;
+
+        final @NotNull Spliterator<Type> source;
+        private int batch;
+
+        AbstractWindowSpliterator(@NotNull Spliterator<Type> source) {
+            this.source = source;
+        }
+
+        @Override
+        public Spliterator<List<Type>> trySplit() {
+            final int size = Math.min(batch + BATCH_INCREMENT, MAX_BATCH);
+            final Object[] windows = new Object[size];
+            final int[] count = new int[1];
+            while (count[0] < size && tryAdvance(window -> windows[count[0]++] = window));
+            if (count[0] == 0)
+                return null;
+            batch = count[0];
+            return Spliterators.spliterator(windows, 0, count[0], characteristics());
+        }
+
+        @Override
+        public long estimateSize() {
+            return source.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return (source.characteristics() & ORDERED) | NONNULL;
+        }
+    }
+
+    /**
+     * Windows of a fixed size, that do not overlap. The last window contains the remaining elements.
+     */
+    static final class Chunked<Type> extends AbstractWindowSpliterator<Type> {
+        private final int size;
+
+        Chunked(@NotNull Spliterator<Type> source, int size) {
+            super(source);
+            this.size = size;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<Type>> action) {
+            final List<Type> chunk = new ArrayList<>(size);
+            while (chunk.size() < size && source.tryAdvance(chunk::add));
+            if (chunk.isEmpty())
+                return false;
+            action.accept(chunk);
+            return true;
+        }
+
+        @Override
+        public long estimateSize() {
+            final long size = source.estimateSize();
+            return size == Long.MAX_VALUE ? size : (size + this.size - 1) / this.size;
+        }
+    }
+
+    /**
+     * Windows of a fixed size, that start every step elements. Only full windows are returned, unless the source is shorter than a single window.
+     */
+    static final class Sliding<Type> extends AbstractWindowSpliterator<Type> {
+        private final int size;
+        private final int step;
+        private final @NotNull ArrayDeque<Type> window;
+        private boolean isStarted;
+
+        Sliding(@NotNull Spliterator<Type> source, int size, int step) {
+            super(source);
+            this.size = size;
+            this.step = step;
+            this.window = new ArrayDeque<>(size);
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<Type>> action) {
+            if (!isStarted) {
+                isStarted = true;
+                while (window.size() < size && source.tryAdvance(window::addLast));
+                if (window.isEmpty())
+                    return false;
+                action.accept(new ArrayList<>(window));
+                return true;
+            }
+            if (window.size() < size)
+                return false;
+            // Elements between windows are skipped, if the step exceeds the size.
+            for (int i = 0; i < step; i++) {
+                if (window.isEmpty()) {
+                    if (!source.tryAdvance(element -> {}))
+                        return false;
+                }
+                else
+                    window.removeFirst();
+            }
+            while (window.size() < size)
+                if (!source.tryAdvance(window::addLast))
+                    return false;
+            action.accept(new ArrayList<>(window));
+            return true;
+        }
+    }
+
+    /**
+     * Windows of consecutive elements with equal keys.
+     */
+    static final class GroupAdjacent<Type> extends AbstractWindowSpliterator<Type> {
+        private final @NotNull Function<? super Type, ?> keyExtractor;
+        private final List<Type> pending = new ArrayList<>(1);
+
+        GroupAdjacent(@NotNull Spliterator<Type> source, @NotNull Function<? super Type, ?> keyExtractor) {
+            super(source);
+            this.keyExtractor = keyExtractor;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super List<Type>> action) {
+            if (pending.isEmpty() && !source.tryAdvance(pending::add))
+                return false;
+            final List<Type> group = new ArrayList<>();
+            group.add(pending.remove(0));
+            final Object key = keyExtractor.apply(group.get(0));
+            while (source.tryAdvance(element -> {
+                if (Objects.equals(key, keyExtractor.apply(element)))
+                    group.add(element);
+                else
+                    pending.add(element);
+            }) && pending.isEmpty());
+            action.accept(group);
+            return true;
+        }
+    }
+}
@@ -102,4 +102,12 @@ public class StreamUtilsTest {
 
         Assert.assertArrayEquals(List.of(20,21,22).toArray(), personStream.filter(StreamUtils.filterDistinctBy(Person::age)).map(it -> it.age).toArray());
     }
+
+    @Test
+    public void filterDistinctByParallel(){
+        long count = IntStream.range(0, 100_000).boxed().parallel()
+                .filter(StreamUtils.filterDistinctBy(it -> it % 1000 == 0 ? null : it % 1000))
+                .count();
+        Assert.assertEquals(1000, count);
+    }
 }
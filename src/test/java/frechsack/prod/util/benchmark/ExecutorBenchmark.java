@@ -0,0 +1,54 @@
+package frechsack.prod.util.benchmark;
+
+import frechsack.prod.util.Operators;
+import frechsack.prod.util.concurrent.AsyncExecutors;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the common {@link ForkJoinPool} against virtual threads as executor of blocking asynchronous actions.
+ * Each operation starts a batch of actions, that block for a millisecond like a remote call, and waits for all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecutorBenchmark {
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    @Param({"commonPool", "virtualThreads"})
+    public String executorName;
+
+    private Executor executor;
+
+    @Setup
+    public void setup() {
+        executor = executorName.equals("commonPool") ? ForkJoinPool.commonPool() : AsyncExecutors.virtualThreads();
+    }
+
+    @Benchmark
+    public Object blockingBatch() {
+        final CompletableFuture<?>[] futures = new CompletableFuture<?>[batchSize];
+        for (int i = 0; i < batchSize; i++) {
+            final int value = i;
+            futures[i] = Operators.retryGetAsync(() -> {
+                try {
+                    Thread.sleep(1);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return value;
+            }, 0, executor);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
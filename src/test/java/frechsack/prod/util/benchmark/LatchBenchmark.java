@@ -0,0 +1,52 @@
+package frechsack.prod.util.benchmark;
+
+import frechsack.prod.util.concurrent.CountUpDownLatch;
+import frechsack.prod.util.concurrent.ResettableLatch;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reusing the latches of this library against allocating a {@link CountDownLatch} for each micro-batch.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LatchBenchmark {
+
+    @Param({"1", "16"})
+    public int parties;
+
+    private final ResettableLatch resettableLatch = new ResettableLatch();
+    private final CountUpDownLatch countUpDownLatch = new CountUpDownLatch();
+
+    @Benchmark
+    public CountDownLatch countDownLatch() throws InterruptedException {
+        final var latch = new CountDownLatch(parties);
+        for (int i = 0; i < parties; i++)
+            latch.countDown();
+        latch.await();
+        return latch;
+    }
+
+    @Benchmark
+    public CountUpDownLatch countUpDownLatch() throws InterruptedException {
+        countUpDownLatch.countUp(parties);
+        for (int i = 0; i < parties; i++)
+            countUpDownLatch.countDown();
+        countUpDownLatch.await();
+        return countUpDownLatch;
+    }
+
+    @Benchmark
+    public ResettableLatch resettableLatch() throws InterruptedException {
+        resettableLatch.signal();
+        resettableLatch.await();
+        resettableLatch.reset();
+        return resettableLatch;
+    }
+}
@@ -0,0 +1,78 @@
+package frechsack.prod.util.benchmark;
+
+import frechsack.prod.util.stream.FIntStream;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the sorts of int streams. Dense values are ids within a range of twice the amount of values, random values use the whole range of int.
+ * Each operation sorts a copy of the values, the JDK sorts are measured on the array and on a stream for comparison.
+ * The counting sort requires a small range, so it always sorts dense values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SortBenchmark {
+
+    @Param({"1000000"})
+    public int size;
+
+    @Param({"dense", "random"})
+    public String distribution;
+
+    private int[] values;
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        values = distribution.equals("dense")
+                ? random.ints(size, 1_000_000, 1_000_000 + 2 * size).toArray()
+                : random.ints(size).toArray();
+    }
+
+    @Benchmark
+    public int[] arraysSort() {
+        final int[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public int[] arraysParallelSort() {
+        final int[] copy = values.clone();
+        Arrays.parallelSort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public int[] streamSorted() {
+        return IntStream.of(values).sorted().toArray();
+    }
+
+    @Benchmark
+    public int[] streamSortedRadix() {
+        return FIntStream.of(IntStream.of(values)).sortedRadix().toArray();
+    }
+
+    @Benchmark
+    public int[] streamSortedCounting(DenseValues dense) {
+        return FIntStream.of(IntStream.of(dense.values)).sortedCounting(1_000_000, 1_000_000 + 2 * dense.values.length - 1).toArray();
+    }
+
+    @State(Scope.Benchmark)
+    public static class DenseValues {
+        private int[] values;
+
+        @Setup
+        public void setup(SortBenchmark benchmark) {
+            values = new Random(42).ints(benchmark.size, 1_000_000, 1_000_000 + 2 * benchmark.size).toArray();
+        }
+    }
+}
@@ -7,6 +7,9 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
 
 public class CollectionUtilsTest extends TestCase {
 
@@ -40,4 +43,32 @@ public class CollectionUtilsTest extends TestCase {
         elements.add(null);
         Assert.assertEquals(1,(int) CollectionUtils.highestFrequencyExcludeNull(elements));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testHighestFrequencyTieBreak() {
+        final var elements = Arrays.asList(8, 3, null, 8, 3, null, 1);
+        Assert.assertEquals(3, (int) CollectionUtils.highestFrequency(elements));
+        Assert.assertEquals(3, (int) CollectionUtils.highestFrequencyExcludeNull(elements));
+        Assert.assertEquals(3, (int) CollectionUtils.highestFrequencyParallel(elements));
+        Assert.assertThrows(NoSuchElementException.class, () -> CollectionUtils.highestFrequencyExcludeNull(Arrays.asList(null, null)));
+    }
+
+    @Test
+    public void testHighestFrequencyParallel() {
+        final var elements = new Random(4).ints(200_000, 0, 1_000).boxed().toList();
+        Assert.assertEquals(CollectionUtils.highestFrequency(elements), CollectionUtils.highestFrequencyParallel(elements));
+        Assert.assertEquals(CollectionUtils.highestFrequency(elements), elements.parallelStream().collect(CollectionUtils.toHighestFrequency()));
+    }
+
+    @Test
+    public void testTopFrequencies() {
+        final var elements = Arrays.asList("b", "a", null, "c", "b", "a", null, "b", "d");
+        final List<Map.Entry<String, Integer>> top = CollectionUtils.topFrequencies(elements, 3);
+        Assert.assertEquals(List.of("b", "a"), top.stream().limit(2).map(Map.Entry::getKey).toList());
+        Assert.assertNull(top.get(2).getKey());
+        Assert.assertEquals(List.of(3, 2, 2), top.stream().map(Map.Entry::getValue).toList());
+        Assert.assertEquals(top, elements.stream().collect(CollectionUtils.toTopFrequencies(3)));
+        Assert.assertTrue(CollectionUtils.topFrequencies(elements, 0).isEmpty());
+        Assert.assertEquals(5, CollectionUtils.topFrequencies(elements, 10).size());
+    }
+}
@@ -0,0 +1,54 @@
+package frechsack.prod.util.collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ObjectIntHashMapTest {
+
+    @Test
+    public void addTo() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>(2);
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = i % 7 == 0 ? null : "key-" + (i % 1_000);
+            Assert.assertEquals((int) expected.merge(key, 1, Integer::sum), map.addTo(key, 1));
+        }
+        Assert.assertEquals(expected.size(), map.size());
+        expected.forEach((key, count) -> Assert.assertEquals((int) count, map.get(key)));
+        Assert.assertTrue(map.containsKey(null));
+        Assert.assertFalse(map.containsKey("absent"));
+        Assert.assertEquals(0, map.get("absent"));
+        Map<String, Integer> visited = new HashMap<>();
+        map.forEach(visited::put);
+        Assert.assertEquals(expected, visited);
+    }
+
+    @Test
+    public void addAll() {
+        ObjectIntHashMap<Integer> first = new ObjectIntHashMap<>();
+        ObjectIntHashMap<Integer> second = new ObjectIntHashMap<>();
+        first.put(1, 5);
+        first.put(2, 1);
+        second.put(2, 3);
+        second.put(null, 4);
+        first.addAll(second);
+        Assert.assertEquals(5, first.get(1));
+        Assert.assertEquals(4, first.get(2));
+        Assert.assertEquals(4, first.get(null));
+        Assert.assertEquals(3, first.size());
+        first.clear();
+        Assert.assertTrue(first.isEmpty());
+        Assert.assertFalse(first.containsKey(1));
+    }
+
+    @Test
+    public void overflow() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        map.put("key", Integer.MAX_VALUE);
+        Assert.assertThrows(ArithmeticException.class, () -> map.addTo("key", 1));
+        Assert.assertEquals(Integer.MAX_VALUE, map.get("key"));
+    }
+}
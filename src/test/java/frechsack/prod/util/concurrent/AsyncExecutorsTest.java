@@ -0,0 +1,51 @@
+package frechsack.prod.util.concurrent;
+
+import frechsack.prod.util.Operators;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncExecutorsTest {
+
+    @Test
+    public void defaultExecutor() {
+        Assert.assertTrue(Operators.retryGetAsync(() -> Thread.currentThread().isVirtual(), 0).join());
+        Assert.assertTrue(RetryPolicy.immediate(0).executeAsync(() -> Thread.currentThread().getName()).join().startsWith("frechsack-async-"));
+    }
+
+    @Test
+    public void setDefaultExecutor() {
+        RetryPolicy policy = RetryPolicy.immediate(0);
+        AtomicInteger executedCount = new AtomicInteger();
+        Executor counting = task -> {
+            executedCount.incrementAndGet();
+            task.run();
+        };
+        AsyncExecutors.setDefaultExecutor(counting);
+        try {
+            Assert.assertEquals(AsyncExecutors.defaultExecutor(), counting);
+            Assert.assertEquals(1, (int) policy.executeAsync(() -> 1).join());
+            Assert.assertEquals(1, executedCount.get());
+        }
+        finally {
+            AsyncExecutors.resetDefaultExecutor();
+        }
+        Assert.assertEquals(AsyncExecutors.virtualThreads(), AsyncExecutors.defaultExecutor());
+        Assert.assertEquals(1, (int) policy.executeAsync(() -> 1).join());
+        Assert.assertEquals(1, executedCount.get());
+    }
+
+    @Test
+    public void explicitExecutor() {
+        AtomicInteger executedCount = new AtomicInteger();
+        Executor counting = task -> {
+            executedCount.incrementAndGet();
+            task.run();
+        };
+        Operators.retryRunAsync(() -> {}, 2, counting).join();
+        Assert.assertEquals(2, (int) Operators.retryGetAsync(() -> 2, 2, 10, counting).join());
+        Assert.assertEquals(2, executedCount.get());
+    }
+}
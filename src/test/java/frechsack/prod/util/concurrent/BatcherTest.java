@@ -0,0 +1,124 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class BatcherTest {
+
+    @Test
+    public void batchSize() {
+        List<Set<Integer>> batches = new ArrayList<>();
+        Batcher<Integer, String> batcher = new Batcher<>(keys -> {
+            synchronized (batches) {
+                batches.add(Set.copyOf(keys));
+            }
+            return keys.stream().filter(key -> key != 3).collect(Collectors.toMap(Function.identity(), String::valueOf));
+        }, 3, Duration.ofSeconds(10), 100, Runnable::run);
+
+        CompletableFuture<String> first = batcher.get(1);
+        CompletableFuture<String> duplicate = batcher.get(1);
+        CompletableFuture<String> second = batcher.get(2);
+        Assert.assertFalse(first.isDone());
+        CompletableFuture<String> missing = batcher.get(3);
+
+        Assert.assertEquals(List.of(Set.of(1, 2, 3)), batches);
+        Assert.assertEquals("1", first.join());
+        Assert.assertEquals("1", duplicate.join());
+        Assert.assertEquals("2", second.join());
+        Assert.assertNull(missing.join());
+        Assert.assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void delay() {
+        Batcher<Integer, Integer> batcher = new Batcher<>(keys -> keys.stream().collect(Collectors.toMap(Function.identity(), key -> key * 2)),
+                100, Duration.ofMillis(20));
+        CompletableFuture<Integer> first = batcher.get(1);
+        CompletableFuture<Integer> second = batcher.get(2);
+        Assert.assertEquals(2, (int) first.join());
+        Assert.assertEquals(4, (int) second.join());
+
+        CompletableFuture<Integer> flushed = batcher.get(3);
+        batcher.flush();
+        Assert.assertEquals(6, (int) flushed.join());
+    }
+
+    @Test
+    public void backpressure() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        Batcher<Integer, Integer> batcher = new Batcher<>(keys -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return Map.of();
+        }, 2, Duration.ofSeconds(10), 4);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            futures.add(batcher.get(i));
+        Assert.assertEquals(4, batcher.pendingCount());
+        CompletionException error = Assert.assertThrows(CompletionException.class, batcher.get(5)::join);
+        Assert.assertTrue(error.getCause() instanceof RejectedExecutionException);
+
+        release.countDown();
+        futures.forEach(future -> Assert.assertNull(future.join()));
+        Assert.assertEquals(0, batcher.pendingCount());
+    }
+
+    @Test
+    public void failure() {
+        Batcher<Integer, Integer> batcher = new Batcher<>(keys -> {
+            throw new IllegalStateException();
+        }, 2, Duration.ofSeconds(10));
+        CompletableFuture<Integer> first = batcher.get(1);
+        CompletableFuture<Integer> second = batcher.get(2);
+        Assert.assertThrows(CompletionException.class, first::join);
+        Assert.assertThrows(CompletionException.class, second::join);
+    }
+
+    @Test
+    public void earlyDispatchCancelsTimer() {
+        Batcher<Integer, Integer> batcher = new Batcher<>(keys -> keys.stream().collect(Collectors.toMap(Function.identity(), Function.identity())),
+                2, Duration.ofHours(1), 100, Runnable::run);
+        long pendingTimers = HashedWheelTimer.shared().pendingCount();
+        for (int i = 0; i < 1_000; i++) {
+            batcher.get(2 * i);
+            if (i % 2 == 0)
+                batcher.get(2 * i + 1);
+            else
+                batcher.flush();
+        }
+        // Other tests may schedule tasks on the shared timer concurrently.
+        Assert.assertTrue(HashedWheelTimer.shared().pendingCount() - pendingTimers < 100);
+    }
+
+    @Test
+    public void delayedFlushLeavesTimerThread() {
+        for (Duration delay : List.of(Duration.ofNanos(100_000), Duration.ofMillis(5))) {
+            List<Thread> loaderThreads = new ArrayList<>();
+            Batcher<Integer, Integer> batcher = new Batcher<>(keys -> {
+                synchronized (loaderThreads) {
+                    loaderThreads.add(Thread.currentThread());
+                }
+                return keys.stream().collect(Collectors.toMap(Function.identity(), Function.identity()));
+            }, 10, delay, 100, Runnable::run);
+            Assert.assertEquals(1, (int) batcher.get(1).join());
+            Assert.assertEquals(1, loaderThreads.size());
+            Assert.assertFalse(loaderThreads.get(0).getName().startsWith("frechsack-timer"));
+        }
+    }
+}
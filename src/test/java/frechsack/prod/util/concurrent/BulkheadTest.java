@@ -0,0 +1,107 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BulkheadTest {
+
+    @Test
+    public void fixed() {
+        Bulkhead bulkhead = Bulkhead.fixed(2, 1);
+        List<CompletableFuture<Integer>> running = new ArrayList<>();
+        AtomicInteger startCount = new AtomicInteger();
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++)
+            results.add(bulkhead.execute(() -> {
+                startCount.incrementAndGet();
+                CompletableFuture<Integer> future = new CompletableFuture<>();
+                running.add(future);
+                return future;
+            }));
+
+        Assert.assertEquals(2, startCount.get());
+        Assert.assertEquals(2, bulkhead.inFlight());
+        Assert.assertEquals(1, bulkhead.queueDepth());
+        Assert.assertEquals(1, bulkhead.rejectedCount());
+        CompletionException error = Assert.assertThrows(CompletionException.class, results.get(3)::join);
+        Assert.assertTrue(error.getCause() instanceof RejectedExecutionException);
+
+        running.get(0).complete(1);
+        Assert.assertEquals(1, (int) results.get(0).join());
+        Assert.assertEquals(3, startCount.get());
+        Assert.assertEquals(2, bulkhead.inFlight());
+        Assert.assertEquals(0, bulkhead.queueDepth());
+
+        running.get(1).complete(2);
+        running.get(2).completeExceptionally(new IllegalStateException());
+        Assert.assertEquals(2, (int) results.get(1).join());
+        error = Assert.assertThrows(CompletionException.class, results.get(2)::join);
+        Assert.assertTrue(error.getCause() instanceof IllegalStateException);
+        Assert.assertEquals(0, bulkhead.inFlight());
+    }
+
+    @Test
+    public void cancel() {
+        Bulkhead bulkhead = Bulkhead.fixed(1, 2);
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<Integer> running = bulkhead.execute(() -> first);
+        AtomicInteger startCount = new AtomicInteger();
+        CompletableFuture<Integer> waiting = bulkhead.execute(() -> {
+            startCount.incrementAndGet();
+            return CompletableFuture.completedFuture(2);
+        });
+        waiting.cancel(true);
+        Assert.assertEquals(0, bulkhead.queueDepth());
+
+        running.cancel(true);
+        Assert.assertTrue(first.isCancelled());
+        Assert.assertEquals(0, bulkhead.inFlight());
+        Assert.assertEquals(0, startCount.get());
+    }
+
+    @Test
+    public void synchronousCompletion() {
+        Bulkhead bulkhead = Bulkhead.fixed(1, 100_000);
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        bulkhead.execute(() -> first);
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            int value = i;
+            results.add(bulkhead.execute(() -> CompletableFuture.completedFuture(value)));
+        }
+        first.complete(-1);
+        Assert.assertEquals(99_999, (int) results.get(99_999).join());
+        Assert.assertEquals(0, bulkhead.inFlight());
+    }
+
+    @Test
+    public void adaptive() {
+        Bulkhead bulkhead = Bulkhead.adaptive(2, 10, 100, 1_000_000);
+        for (int i = 0; i < 50; i++) {
+            List<CompletableFuture<Integer>> running = new ArrayList<>();
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int j = 0; j < bulkhead.limit(); j++)
+                results.add(bulkhead.execute(() -> {
+                    CompletableFuture<Integer> future = new CompletableFuture<>();
+                    running.add(future);
+                    return future;
+                }));
+            running.forEach(future -> future.complete(1));
+        }
+        int grownLimit = bulkhead.limit();
+        Assert.assertTrue(grownLimit > 2);
+
+        for (int i = 0; i < 10; i++)
+            bulkhead.execute(() -> CompletableFuture.failedFuture(new TimeoutException()));
+        Assert.assertTrue(bulkhead.limit() < grownLimit);
+        Assert.assertTrue(bulkhead.limit() >= 2);
+    }
+}
@@ -0,0 +1,143 @@
+package frechsack.prod.util.concurrent;
+
+import frechsack.prod.util.Try;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+public class CircuitBreakerTest {
+
+    @Test
+    public void countBased() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(4, 0.5, Duration.ofMillis(50)).withProbes(2);
+        Assert.assertEquals(1, (int) breaker.get(() -> 1));
+        Assert.assertThrows(IllegalStateException.class, () -> breaker.get(() -> { throw new IllegalStateException(); }));
+        Assert.assertEquals(1, (int) breaker.get(() -> 1));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        Assert.assertThrows(IllegalStateException.class, () -> breaker.get(() -> { throw new IllegalStateException(); }));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Assert.assertThrows(CallNotPermittedException.class, () -> breaker.get(() -> 1));
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        Assert.assertFalse(breaker.tryAcquirePermission());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        Assert.assertEquals(0, breaker.failureRate(), 0);
+    }
+
+    @Test
+    public void halfOpenFailure() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(1, 1, Duration.ofMillis(20));
+        breaker.call(() -> { throw new Exception(); });
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        Try<Integer> rejected = breaker.call(() -> 1);
+        Assert.assertTrue(rejected.error() instanceof CallNotPermittedException);
+
+        TimeUnit.MILLISECONDS.sleep(30);
+        Assert.assertTrue(breaker.call(() -> { throw new Exception(); }).isError());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void timeBased() {
+        CircuitBreaker breaker = CircuitBreaker.timeBased(Duration.ofSeconds(10), 0.5, Duration.ofSeconds(10))
+                .withMinimumCalls(2)
+                .withRecordOn(error -> !(error instanceof IllegalArgumentException));
+        breaker.onError(new IllegalArgumentException());
+        breaker.onError(new IllegalArgumentException());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        breaker.onError(new IllegalStateException());
+        breaker.onError(new IllegalStateException());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void execute() {
+        CircuitBreaker breaker = CircuitBreaker.countBased(2, 0.5, Duration.ofSeconds(10));
+        CompletableFuture<Integer> pending = new CompletableFuture<>();
+        CompletableFuture<Integer> result = breaker.execute(() -> pending);
+        pending.complete(1);
+        Assert.assertEquals(1, (int) result.join());
+        Assert.assertThrows(CompletionException.class, breaker.execute(() -> CompletableFuture.<Integer>failedFuture(new IllegalStateException()))::join);
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+        CompletionException error = Assert.assertThrows(CompletionException.class, breaker.decorate(() -> CompletableFuture.completedFuture(1)).get()::join);
+        Assert.assertTrue(error.getCause() instanceof CallNotPermittedException);
+    }
+
+    @Test
+    public void rejectedCallIsNotRecorded() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(1, 1, Duration.ofMillis(20));
+        breaker.onError(new CallNotPermittedException("rejected"));
+        Assert.assertEquals(0, breaker.failureRate(), 0);
+        breaker.onError(new IllegalStateException());
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        TimeUnit.MILLISECONDS.sleep(30);
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        breaker.onError(new CompletionException(new CallNotPermittedException("rejected")));
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+    }
+
+    @Test
+    public void staleCallIsNoProbe() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(2, 0.5, Duration.ofMillis(20));
+        CompletableFuture<Integer> stale = new CompletableFuture<>();
+        CompletableFuture<Integer> staleResult = breaker.execute(() -> stale);
+        breaker.call(() -> { throw new Exception(); });
+        breaker.call(() -> { throw new Exception(); });
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        TimeUnit.MILLISECONDS.sleep(30);
+        CompletableFuture<Integer> probe = new CompletableFuture<>();
+        CompletableFuture<Integer> probeResult = breaker.execute(() -> probe);
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        stale.complete(1);
+        Assert.assertEquals(1, (int) staleResult.join());
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.state());
+        probe.complete(1);
+        Assert.assertEquals(1, (int) probeResult.join());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    public void errorReleasesProbe() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(1, 1, Duration.ofMillis(20));
+        breaker.call(() -> { throw new Exception(); });
+        TimeUnit.MILLISECONDS.sleep(30);
+        Assert.assertThrows(AssertionError.class, () -> breaker.call(() -> { throw new AssertionError(); }));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+        TimeUnit.MILLISECONDS.sleep(30);
+        Assert.assertThrows(Exception.class, () -> breaker.get(() -> { throw CircuitBreakerTest.<RuntimeException>sneaky(new Exception()); }));
+        Assert.assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+    }
+
+    @Test
+    public void probeTimeout() throws InterruptedException {
+        CircuitBreaker breaker = CircuitBreaker.countBased(1, 1, Duration.ofMillis(20)).withProbeTimeout(Duration.ofMillis(50));
+        breaker.call(() -> { throw new Exception(); });
+        TimeUnit.MILLISECONDS.sleep(30);
+        CompletableFuture<Integer> hung = new CompletableFuture<>();
+        breaker.execute(() -> hung);
+        Assert.assertThrows(CallNotPermittedException.class, () -> breaker.get(() -> 1));
+
+        TimeUnit.MILLISECONDS.sleep(60);
+        Assert.assertEquals(1, (int) breaker.get(() -> 1));
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+        hung.completeExceptionally(new IllegalStateException());
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ThrowableType extends Throwable> ThrowableType sneaky(Throwable throwable) throws ThrowableType {
+        throw (ThrowableType) throwable;
+    }
+}
@@ -0,0 +1,139 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+public class CompletableFuturesTest {
+
+    @Test
+    public void allOf() {
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<Integer> second = new CompletableFuture<>();
+        CompletableFuture<List<Integer>> all = CompletableFutures.allOf(List.of(first, second));
+        second.complete(2);
+        Assert.assertFalse(all.isDone());
+        first.complete(1);
+        Assert.assertEquals(List.of(1, 2), all.join());
+
+        CompletableFuture<List<Integer>> failed = CompletableFutures.allOf(List.of(new CompletableFuture<>(), CompletableFuture.<Integer>failedFuture(new IllegalStateException())));
+        CompletionException error = Assert.assertThrows(CompletionException.class, failed::join);
+        Assert.assertTrue(error.getCause() instanceof IllegalStateException);
+        Assert.assertEquals(List.of(), CompletableFutures.allOf(List.<CompletableFuture<Integer>>of()).join());
+    }
+
+    @Test
+    public void anyOf() {
+        CompletableFuture<Integer> first = new CompletableFuture<>();
+        CompletableFuture<Integer> any = CompletableFutures.anyOf(List.of(first, new CompletableFuture<Integer>()));
+        first.completeExceptionally(new IllegalStateException());
+        Assert.assertThrows(CompletionException.class, any::join);
+
+        CompletableFuture<Integer> failing = new CompletableFuture<>();
+        CompletableFuture<Integer> succeeding = new CompletableFuture<>();
+        CompletableFuture<Integer> successful = CompletableFutures.anySuccessful(List.of(failing, succeeding));
+        failing.completeExceptionally(new IllegalStateException());
+        Assert.assertFalse(successful.isDone());
+        succeeding.complete(2);
+        Assert.assertEquals(2, (int) successful.join());
+
+        CompletableFuture<Integer> allFailed = CompletableFutures.anySuccessful(List.of(
+                CompletableFuture.failedFuture(new IllegalStateException()),
+                CompletableFuture.failedFuture(new IllegalArgumentException())));
+        CompletionException error = Assert.assertThrows(CompletionException.class, allFailed::join);
+        Assert.assertEquals(1, error.getCause().getSuppressed().length);
+    }
+
+    @Test
+    public void firstN() {
+        List<CompletableFuture<Integer>> futures = IntStream.range(0, 5).mapToObj(i -> new CompletableFuture<Integer>()).toList();
+        CompletableFuture<List<Integer>> first = CompletableFutures.firstN(futures, 2);
+        futures.get(3).complete(3);
+        futures.get(0).completeExceptionally(new IllegalStateException());
+        futures.get(1).complete(1);
+        Assert.assertEquals(List.of(3, 1), first.join());
+
+        List<CompletableFuture<Integer>> failing = IntStream.range(0, 3).mapToObj(i -> new CompletableFuture<Integer>()).toList();
+        CompletableFuture<List<Integer>> failed = CompletableFutures.firstN(failing, 2);
+        failing.get(0).completeExceptionally(new IllegalStateException());
+        Assert.assertFalse(failed.isDone());
+        failing.get(1).completeExceptionally(new IllegalStateException());
+        Assert.assertTrue(failed.isCompletedExceptionally());
+    }
+
+    @Test
+    public void mapParallel() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Integer> elements = IntStream.range(0, 200).boxed().toList();
+        CompletableFuture<List<Integer>> result = CompletableFutures.mapParallel(elements, element -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return CompletableFuture.supplyAsync(() -> {
+                running.decrementAndGet();
+                return element * 2;
+            }, CompletableFuture.delayedExecutor(1, TimeUnit.MILLISECONDS));
+        }, 4);
+        Assert.assertEquals(elements.stream().map(it -> it * 2).toList(), result.join());
+        Assert.assertTrue(maxRunning.get() <= 4);
+
+        List<Integer> many = IntStream.range(0, 100_000).boxed().toList();
+        Assert.assertEquals(many, CompletableFutures.mapParallel(many, CompletableFuture::completedFuture, 2).join());
+
+        AtomicInteger mappedCount = new AtomicInteger();
+        CompletableFuture<List<Integer>> failed = CompletableFutures.mapParallel(elements, element -> {
+            mappedCount.incrementAndGet();
+            return element == 10
+                    ? CompletableFuture.failedFuture(new IllegalStateException())
+                    : CompletableFuture.completedFuture(element);
+        }, 1);
+        Assert.assertThrows(CompletionException.class, failed::join);
+        Assert.assertEquals(11, mappedCount.get());
+    }
+
+    @Test
+    public void hedged() {
+        List<CompletableFuture<Integer>> attempts = new ArrayList<>();
+        CompletableFuture<Integer> result = CompletableFutures.hedged(() -> {
+            CompletableFuture<Integer> attempt = new CompletableFuture<>();
+            synchronized (attempts) {
+                attempts.add(attempt);
+            }
+            return attempt;
+        }, Duration.ofMillis(20), 2);
+        long start = System.nanoTime();
+        while (true) {
+            synchronized (attempts) {
+                if (attempts.size() == 2)
+                    break;
+            }
+            Assert.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+            Thread.onSpinWait();
+        }
+        synchronized (attempts) {
+            attempts.get(1).complete(2);
+            Assert.assertEquals(2, (int) result.join());
+            // The losing attempt is cancelled by the thread, that completed the result, which may still run.
+            start = System.nanoTime();
+            while (!attempts.get(0).isCancelled()) {
+                Assert.assertTrue(System.nanoTime() - start < 5_000_000_000L);
+                Thread.onSpinWait();
+            }
+        }
+
+        AtomicInteger callCount = new AtomicInteger();
+        CompletableFuture<Integer> failed = CompletableFutures.hedged(() -> {
+            callCount.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException());
+        }, Duration.ofSeconds(10), 3);
+        Assert.assertThrows(CompletionException.class, failed::join);
+        Assert.assertEquals(4, callCount.get());
+    }
+}
@@ -0,0 +1,84 @@
+package frechsack.prod.util.concurrent;
+
+import frechsack.prod.util.concurrent.cache.CachedSupplier;
+import frechsack.prod.util.concurrent.cache.StatsCounter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class HashedWheelTimerTest {
+
+    @Test
+    public void schedule() throws InterruptedException {
+        try (HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 8)) {
+            CountDownLatch latch = new CountDownLatch(2);
+            long start = System.nanoTime();
+            timer.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+            // Expires after more than one round of the wheel.
+            timer.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+            Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+            Assert.assertTrue(System.nanoTime() - start >= 30_000_000);
+            Assert.assertEquals(0, timer.pendingCount());
+        }
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        try (HashedWheelTimer timer = new HashedWheelTimer(Duration.ofMillis(1), 16)) {
+            AtomicInteger runCount = new AtomicInteger();
+            HashedWheelTimer.Timeout[] timeouts = new HashedWheelTimer.Timeout[10_000];
+            for (int i = 0; i < timeouts.length; i++)
+                timeouts[i] = timer.schedule(runCount::incrementAndGet, 200, TimeUnit.MILLISECONDS);
+            for (int i = 0; i < timeouts.length; i += 2)
+                Assert.assertTrue(timeouts[i].cancel());
+            Assert.assertEquals(5_000, timer.pendingCount());
+            TimeUnit.MILLISECONDS.sleep(400);
+            Assert.assertEquals(5_000, runCount.get());
+            Assert.assertTrue(timeouts[1].isExpired());
+            Assert.assertTrue(timeouts[0].isCancelled());
+            Assert.assertFalse(timeouts[1].cancel());
+        }
+    }
+
+    @Test
+    public void close() {
+        HashedWheelTimer timer = new HashedWheelTimer();
+        timer.close();
+        Assert.assertThrows(RejectedExecutionException.class, () -> timer.schedule(() -> {}, 1, TimeUnit.MILLISECONDS));
+        Assert.assertThrows(UnsupportedOperationException.class, () -> HashedWheelTimer.shared().close());
+    }
+
+    @Test
+    public void orTimeout() {
+        CompletableFuture<Integer> timedOut = CompletableFutures.orTimeout(new CompletableFuture<>(), 10, TimeUnit.MILLISECONDS);
+        CompletionException error = Assert.assertThrows(CompletionException.class, timedOut::join);
+        Assert.assertTrue(error.getCause() instanceof TimeoutException);
+
+        long pendingBefore = HashedWheelTimer.shared().pendingCount();
+        CompletableFuture<Integer> completed = CompletableFutures.orTimeout(new CompletableFuture<>(), 10, TimeUnit.SECONDS);
+        completed.complete(1);
+        Assert.assertEquals(pendingBefore, HashedWheelTimer.shared().pendingCount());
+    }
+
+    @Test
+    public void cachedSupplierExpiry() throws InterruptedException {
+        AtomicInteger loadCount = new AtomicInteger();
+        CachedSupplier<Integer> supplier = new CachedSupplier<>(loadCount::incrementAndGet, Duration.ofMillis(10), StatsCounter.concurrent(), HashedWheelTimer.shared());
+        Assert.assertEquals(1, (int) supplier.get());
+        Assert.assertEquals(0, supplier.stats().evictionCount());
+        long start = System.nanoTime();
+        // The result is cleared by the timer, without calling the supplier.
+        while (supplier.stats().evictionCount() == 0 && System.nanoTime() - start < 5_000_000_000L)
+            TimeUnit.MILLISECONDS.sleep(5);
+        Assert.assertEquals(1, supplier.stats().evictionCount());
+        Assert.assertEquals(1, loadCount.get());
+    }
+}
@@ -0,0 +1,85 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class LatchTest {
+
+    @Test
+    public void booleanLatch() throws InterruptedException {
+        BooleanLatch latch = new BooleanLatch();
+        Assert.assertFalse(latch.await(Duration.ofMillis(10)));
+        latch.signal();
+        Assert.assertTrue(latch.await(Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void resettableLatch() throws Exception {
+        ResettableLatch latch = new ResettableLatch();
+        Assert.assertFalse(latch.await(Duration.ofMillis(10)));
+
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+            try {
+                latch.await();
+            }
+            catch (InterruptedException e) {
+                throw new CompletionException(e);
+            }
+        });
+        Thread.sleep(20);
+        Assert.assertFalse(waiter.isDone());
+        latch.signal();
+        Assert.assertTrue(latch.reset());
+        waiter.get(5, TimeUnit.SECONDS);
+
+        Assert.assertEquals(1, latch.generation());
+        Assert.assertFalse(latch.isSignalled());
+        Assert.assertFalse(latch.reset());
+        Assert.assertFalse(latch.await(Duration.ofMillis(10)));
+        latch.signal();
+        Assert.assertTrue(latch.await(Duration.ofMillis(10)));
+    }
+
+    @Test
+    public void countUpDownLatch() throws InterruptedException {
+        CountUpDownLatch latch = new CountUpDownLatch();
+        Assert.assertTrue(latch.await(Duration.ZERO));
+        latch.countUp(2);
+        latch.countUp();
+        Assert.assertEquals(3, latch.getCount());
+        latch.countDown();
+        latch.countDown();
+        Assert.assertFalse(latch.await(Duration.ofMillis(10)));
+        latch.countDown();
+        Assert.assertTrue(latch.await(Duration.ofMillis(10)));
+        Assert.assertThrows(IllegalStateException.class, latch::countDown);
+    }
+
+    @Test
+    public void phaseBarrier() throws Exception {
+        PhaseBarrier barrier = new PhaseBarrier(4);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<List<Integer>>> results = new ArrayList<>();
+            for (int party = 0; party < 4; party++)
+                results.add(executor.submit(() -> {
+                    List<Integer> phases = new ArrayList<>();
+                    for (int i = 0; i < 100; i++)
+                        phases.add(barrier.arriveAndAwait());
+                    return phases;
+                }));
+            for (Future<List<Integer>> result : results) {
+                List<Integer> phases = result.get(5, TimeUnit.SECONDS);
+                for (int i = 0; i < 100; i++)
+                    Assert.assertEquals(i, (int) phases.get(i));
+            }
+        }
+        Assert.assertEquals(100, barrier.getPhase());
+        Assert.assertEquals(4, barrier.getUnarrivedParties());
+        Assert.assertThrows(TimeoutException.class, () -> barrier.arriveAndAwait(Duration.ofMillis(10)));
+    }
+}
@@ -0,0 +1,91 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RateLimiterTest {
+
+    @Test
+    public void tokenBucket() throws InterruptedException {
+        RateLimiter limiter = RateLimiter.tokenBucket(100, 5);
+        for (int i = 0; i < 5; i++)
+            Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire(1, Duration.ofMillis(1)));
+
+        long start = System.nanoTime();
+        limiter.acquire(2);
+        Assert.assertTrue(System.nanoTime() - start >= 15_000_000);
+        Assert.assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(6));
+    }
+
+    @Test
+    public void slidingWindow() throws InterruptedException {
+        RateLimiter limiter = RateLimiter.slidingWindow(3, Duration.ofMillis(50));
+        Assert.assertTrue(limiter.tryAcquire(2));
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+
+        long start = System.nanoTime();
+        Assert.assertTrue(limiter.tryAcquire(3, Duration.ofSeconds(1)));
+        Assert.assertTrue(System.nanoTime() - start >= 40_000_000);
+        Assert.assertFalse(limiter.tryAcquire());
+    }
+
+    @Test
+    public void slidingWindowConcurrent() throws InterruptedException {
+        RateLimiter limiter = RateLimiter.slidingWindow(1000, Duration.ofSeconds(10));
+        AtomicInteger acquiredCount = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < 500; j++)
+                    if (limiter.tryAcquire())
+                        acquiredCount.incrementAndGet();
+            }));
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertEquals(1000, acquiredCount.get());
+    }
+
+    @Test
+    public void acquireAsync() {
+        RateLimiter limiter = RateLimiter.tokenBucket(50, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+        long start = System.nanoTime();
+        CompletableFuture<Void> acquired = limiter.acquireAsync();
+        Assert.assertFalse(acquired.isDone());
+        acquired.join();
+        Assert.assertTrue(System.nanoTime() - start >= 10_000_000);
+    }
+
+    @Test
+    public void striped() {
+        RateLimiter limiter = RateLimiter.striped(4, 1, 8);
+        int acquiredCount = 0;
+        for (int i = 0; i < 20; i++)
+            if (limiter.tryAcquire())
+                acquiredCount++;
+        Assert.assertEquals(8, acquiredCount);
+    }
+
+    @Test
+    public void retryPolicy() {
+        RateLimiter limiter = RateLimiter.tokenBucket(50, 1);
+        AtomicInteger callCount = new AtomicInteger();
+        long start = System.nanoTime();
+        CompletableFuture<Integer> result = RetryPolicy.immediate(2).withRateLimiter(limiter).execute(() -> {
+            if (callCount.incrementAndGet() < 3)
+                return CompletableFuture.failedFuture(new IllegalStateException());
+            return CompletableFuture.completedFuture(callCount.get());
+        });
+        Assert.assertEquals(3, (int) result.join());
+        Assert.assertTrue(System.nanoTime() - start >= 30_000_000);
+    }
+}
@@ -0,0 +1,100 @@
+package frechsack.prod.util.concurrent;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delay() {
+        RetryPolicy exponential = RetryPolicy.exponentialBackoff(10, Duration.ofNanos(100), Duration.ofNanos(1000));
+        Assert.assertEquals(100, exponential.delayNanos(0, 0));
+        Assert.assertEquals(200, exponential.delayNanos(1, 100));
+        Assert.assertEquals(800, exponential.delayNanos(3, 400));
+        Assert.assertEquals(1000, exponential.delayNanos(4, 800));
+        Assert.assertEquals(1000, exponential.delayNanos(Integer.MAX_VALUE, 1000));
+
+        RetryPolicy jitter = RetryPolicy.decorrelatedJitter(10, Duration.ofNanos(100), Duration.ofNanos(1000));
+        long previous = 0;
+        for (int i = 0; i < 100; i++) {
+            long delay = jitter.delayNanos(i, previous);
+            Assert.assertTrue(delay >= 100 && delay <= 1000 && delay <= Math.max(100, previous) * 3);
+            previous = delay;
+        }
+    }
+
+    @Test
+    public void execute() {
+        AtomicInteger callCount = new AtomicInteger();
+        CompletableFuture<Integer> result = RetryPolicy.fixedDelay(5, Duration.ofMillis(1)).execute(() -> {
+            if (callCount.incrementAndGet() < 3)
+                return CompletableFuture.failedFuture(new IllegalStateException());
+            return CompletableFuture.completedFuture(callCount.get());
+        });
+        Assert.assertEquals(3, (int) result.join());
+        Assert.assertEquals(3, callCount.get());
+
+        AtomicInteger rejectedCount = new AtomicInteger();
+        CompletableFuture<Integer> rejected = RetryPolicy.immediate(5)
+                .withRetryOn(error -> !(error instanceof IllegalArgumentException))
+                .execute(() -> {
+                    rejectedCount.incrementAndGet();
+                    return CompletableFuture.failedFuture(new IllegalArgumentException());
+                });
+        Assert.assertThrows(CompletionException.class, rejected::join);
+        Assert.assertEquals(1, rejectedCount.get());
+    }
+
+    @Test
+    public void budget() {
+        RetryBudget budget = new RetryBudget(0.5, 2);
+        RetryPolicy policy = RetryPolicy.immediate(10).withBudget(budget);
+        AtomicInteger callCount = new AtomicInteger();
+        CompletableFuture<Object> result = policy.execute(() -> {
+            callCount.incrementAndGet();
+            return CompletableFuture.failedFuture(new IllegalStateException());
+        });
+        Assert.assertThrows(CompletionException.class, result::join);
+        Assert.assertEquals(3, callCount.get());
+        Assert.assertEquals(0, budget.availableRetries());
+
+        budget.recordRequest();
+        budget.recordRequest();
+        Assert.assertEquals(1, budget.availableRetries());
+    }
+
+    @Test
+    public void attemptTimeout() {
+        AtomicInteger callCount = new AtomicInteger();
+        CompletableFuture<Integer> result = RetryPolicy.immediate(2)
+                .withAttemptTimeout(Duration.ofMillis(20))
+                .execute(() -> {
+                    callCount.incrementAndGet();
+                    return new CompletableFuture<>();
+                });
+        CompletionException error = Assert.assertThrows(CompletionException.class, result::join);
+        Assert.assertTrue(error.getCause() instanceof TimeoutException);
+        Assert.assertEquals(3, callCount.get());
+    }
+
+    @Test
+    public void cancel() throws InterruptedException {
+        AtomicInteger callCount = new AtomicInteger();
+        CompletableFuture<Integer> attempt = new CompletableFuture<>();
+        CompletableFuture<Integer> result = RetryPolicy.fixedDelay(10, Duration.ofMillis(50)).execute(() -> {
+            callCount.incrementAndGet();
+            return attempt;
+        });
+        result.cancel(true);
+        Assert.assertTrue(attempt.isCancelled());
+        TimeUnit.MILLISECONDS.sleep(100);
+        Assert.assertEquals(1, callCount.get());
+    }
+}
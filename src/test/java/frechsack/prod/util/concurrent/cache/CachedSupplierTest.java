@@ -0,0 +1,34 @@
+package frechsack.prod.util.concurrent.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachedSupplierTest {
+
+    @Test
+    public void get() throws InterruptedException {
+        AtomicInteger callCount = new AtomicInteger();
+        CachedSupplier<Integer> supplier = new CachedSupplier<>(callCount::incrementAndGet, Duration.ofMillis(50), StatsCounter.concurrent());
+
+        Assert.assertTrue(supplier.isExpired());
+        Assert.assertEquals(1, (int) supplier.get());
+        Assert.assertEquals(1, (int) supplier.get());
+        Assert.assertFalse(supplier.isExpired());
+
+        Thread.sleep(80);
+        Assert.assertTrue(supplier.isExpired());
+        Assert.assertEquals(2, (int) supplier.get());
+
+        supplier.clear();
+        Assert.assertEquals(3, (int) supplier.get());
+
+        CacheStats stats = supplier.stats();
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(3, stats.missCount());
+        Assert.assertEquals(3, stats.loadSuccessCount());
+        Assert.assertEquals(1, stats.evictionCount());
+    }
+}
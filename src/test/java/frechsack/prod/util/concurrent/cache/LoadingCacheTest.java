@@ -0,0 +1,225 @@
+package frechsack.prod.util.concurrent.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoadingCacheTest {
+
+    @Test
+    public void get() {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<Integer, String> cache = new LoadingCache<>(key -> {
+            loadCount.incrementAndGet();
+            return "Value" + key;
+        });
+
+        Assert.assertEquals("Value1", cache.get(1));
+        Assert.assertEquals("Value1", cache.get(1));
+        Assert.assertEquals("Value2", cache.apply(2));
+        Assert.assertEquals(2, loadCount.get());
+        Assert.assertEquals(2, cache.size());
+
+        cache.invalidate(1);
+        Assert.assertTrue(cache.getIfPresent(1).isEmpty());
+        Assert.assertEquals("Value1", cache.get(1));
+        Assert.assertEquals(3, loadCount.get());
+    }
+
+    @Test
+    public void singleFlight() throws Exception {
+        AtomicInteger loadCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            loadCount.incrementAndGet();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return key * 2;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> running = new ArrayList<>();
+            for (int i = 0; i < 8; i++)
+                running.add(executor.submit(() -> cache.get(21)));
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<Integer> future : running)
+                Assert.assertEquals(42, (int) future.get(5, TimeUnit.SECONDS));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void failureIsNotCached() {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            if (loadCount.incrementAndGet() == 1)
+                throw new IllegalArgumentException();
+            return key;
+        });
+
+        Assert.assertThrows(IllegalArgumentException.class, () -> cache.get(1));
+        Assert.assertEquals(1, (int) cache.get(1));
+        Assert.assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void evictsProbationFirst() {
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> key, 10);
+        for (int i = 0; i < 5; i++) {
+            cache.get(i);
+            cache.get(i);
+        }
+        for (int i = 100; i < 200; i++)
+            cache.get(i);
+
+        Assert.assertEquals(10, cache.size());
+        Assert.assertEquals(10, cache.weight());
+        for (int i = 0; i < 5; i++)
+            Assert.assertTrue(cache.getIfPresent(i).isPresent());
+    }
+
+    @Test
+    public void weight() {
+        LoadingCache<Integer, String> cache = new LoadingCache<>(key -> "x".repeat(key), 10, (key, value) -> value.length(), null);
+        cache.get(4);
+        cache.get(5);
+        Assert.assertEquals(9, cache.weight());
+        cache.get(3);
+        Assert.assertTrue(cache.weight() <= 10);
+        Assert.assertTrue(cache.getIfPresent(3).isPresent());
+    }
+
+    @Test
+    public void expireAfterWrite() throws InterruptedException {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> loadCount.incrementAndGet(), Duration.ofMillis(50));
+        Assert.assertEquals(1, (int) cache.get(1));
+        Assert.assertEquals(1, (int) cache.get(1));
+        Thread.sleep(80);
+        Assert.assertTrue(cache.getIfPresent(1).isEmpty());
+        Assert.assertEquals(2, (int) cache.get(1));
+    }
+
+    @Test
+    public void getAll() {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            loadCount.incrementAndGet();
+            return key * 10;
+        });
+        cache.get(1);
+
+        Map<Integer, Integer> values = cache.getAll(List.of(3, 1, 2, 3));
+        Assert.assertEquals(List.of(3, 1, 2), List.copyOf(values.keySet()));
+        Assert.assertEquals(List.of(30, 10, 20), List.copyOf(values.values()));
+        Assert.assertEquals(3, loadCount.get());
+    }
+
+    @Test
+    public void getAllBulk() {
+        AtomicInteger loadCount = new AtomicInteger();
+        List<Set<Integer>> bulkLoads = new ArrayList<>();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            loadCount.incrementAndGet();
+            return key * 10;
+        }, 10);
+        cache.get(1);
+
+        Map<Integer, Integer> values = cache.getAll(List.of(3, 1, 2, 4), keys -> {
+            bulkLoads.add(Set.copyOf(keys));
+            return Map.of(3, 33, 2, 22);
+        });
+        Assert.assertEquals(List.of(Set.of(2, 3, 4)), bulkLoads);
+        Assert.assertEquals(List.of(3, 1, 2, 4), List.copyOf(values.keySet()));
+        Assert.assertEquals(List.of(33, 10, 22, 40), List.copyOf(values.values()));
+        Assert.assertEquals(2, loadCount.get());
+        Assert.assertEquals(4, cache.weight());
+        Assert.assertEquals(33, (int) cache.get(3));
+
+        Assert.assertThrows(IllegalStateException.class, () -> cache.getAll(List.of(5), keys -> { throw new IllegalStateException(); }));
+        Assert.assertFalse(cache.containsKey(5));
+    }
+
+    @Test
+    public void getAsync() {
+        AtomicInteger loadCount = new AtomicInteger();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            loadCount.incrementAndGet();
+            return key + 1;
+        });
+
+        CompletableFuture<Integer> first = cache.getAsync(1);
+        CompletableFuture<Integer> second = cache.getAsync(1);
+        Assert.assertEquals(2, (int) first.join());
+        Assert.assertEquals(2, (int) second.join());
+        Assert.assertEquals(1, loadCount.get());
+
+        second.obtrudeValue(-1);
+        Assert.assertEquals(2, (int) cache.get(1));
+    }
+
+    @Test
+    public void stats() {
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            if (key < 0)
+                throw new IllegalArgumentException();
+            return key;
+        }, 2, (key, value) -> 1, null, StatsCounter.concurrent());
+
+        cache.get(1);
+        cache.get(1);
+        cache.get(2);
+        cache.get(3);
+        Assert.assertThrows(IllegalArgumentException.class, () -> cache.get(-1));
+
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(1, stats.hitCount());
+        Assert.assertEquals(4, stats.missCount());
+        Assert.assertEquals(3, stats.loadSuccessCount());
+        Assert.assertEquals(1, stats.loadFailureCount());
+        Assert.assertEquals(1, stats.evictionCount());
+        Assert.assertEquals(4, java.util.Arrays.stream(stats.loadTimeHistogram()).sum());
+        Assert.assertEquals(0.2, stats.hitRate(), 0.0001);
+    }
+
+    @Test
+    public void statsOfFailedWait() throws Exception {
+        CompletableFuture<Void> release = new CompletableFuture<>();
+        LoadingCache<Integer, Integer> cache = new LoadingCache<>(key -> {
+            release.join();
+            throw new IllegalStateException();
+        }, 2, (key, value) -> 1, null, StatsCounter.concurrent());
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(() -> cache.get(1));
+        while (cache.stats().missCount() == 0)
+            Thread.onSpinWait();
+        CompletableFuture<Integer> waiting = cache.getAsync(1);
+        release.complete(null);
+        Assert.assertThrows(java.util.concurrent.CompletionException.class, first::join);
+        Assert.assertThrows(java.util.concurrent.CompletionException.class, waiting::join);
+
+        CacheStats stats = cache.stats();
+        Assert.assertEquals(1, stats.waitCount());
+        Assert.assertEquals(0, stats.hitCount());
+        Assert.assertEquals(0.0, stats.hitRate(), 0.0);
+        long[] histogram = stats.loadTimeHistogram();
+        histogram[0] = 42;
+        Assert.assertEquals(stats, cache.stats());
+        Assert.assertEquals(stats.hashCode(), cache.stats().hashCode());
+    }
+}
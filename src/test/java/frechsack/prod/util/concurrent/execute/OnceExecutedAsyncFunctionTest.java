@@ -0,0 +1,71 @@
+package frechsack.prod.util.concurrent.execute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class OnceExecutedAsyncFunctionTest {
+
+    @Test
+    public void apply() throws Exception {
+        AtomicInteger callCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            OnceExecutedAsyncFunction<String, Integer> function = new OnceExecutedAsyncFunction<>(input -> {
+                callCount.incrementAndGet();
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return input == null ? null : input.length();
+            }, executor);
+
+            CompletableFuture<Integer> first = function.apply("abc");
+            CompletableFuture<Integer> second = function.apply("abc");
+            Assert.assertTrue(function.isExecuting("abc"));
+            release.countDown();
+            Assert.assertEquals(3, (int) first.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(3, (int) second.get(5, TimeUnit.SECONDS));
+            Assert.assertNull(function.apply(null).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, callCount.get());
+            Assert.assertTrue(function.isExecuted("abc"));
+
+            first.obtrudeValue(-1);
+            Assert.assertEquals(3, (int) function.apply("abc").join());
+        }
+    }
+
+    @Test
+    public void retryFailures() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedAsyncFunction<Integer, Integer> retrying = new OnceExecutedAsyncFunction<>(input -> {
+            if (callCount.incrementAndGet() == 1)
+                throw new IllegalStateException();
+            return input;
+        }, Runnable::run, FailurePolicy.RETRY);
+        Assert.assertThrows(CompletionException.class, () -> retrying.apply(1).join());
+        Assert.assertEquals(1, (int) retrying.apply(1).join());
+
+        OnceExecutedAsyncFunction<Integer, Integer> remembering = new OnceExecutedAsyncFunction<>(input -> {
+            throw new IllegalStateException();
+        }, Runnable::run, FailurePolicy.CACHE);
+        Assert.assertThrows(CompletionException.class, () -> remembering.apply(1).join());
+        Assert.assertEquals(1, remembering.size());
+        Assert.assertTrue(remembering.apply(1).isCompletedExceptionally());
+    }
+
+    @Test
+    public void supplier() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedAsyncSupplier<Integer> supplier = new OnceExecutedAsyncSupplier<>(callCount::incrementAndGet, Runnable::run);
+        Assert.assertEquals(1, (int) supplier.get().join());
+        Assert.assertEquals(1, (int) supplier.get().join());
+        Assert.assertTrue(supplier.isExecuted());
+        supplier.reset();
+        Assert.assertEquals(2, (int) supplier.get().join());
+    }
+}
@@ -0,0 +1,109 @@
+package frechsack.prod.util.concurrent.execute;
+
+import frechsack.prod.util.concurrent.cache.StatsCounter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OnceExecutedFunctionTest {
+
+    @Test
+    public void apply() {
+        for (OnceExecutedFunction.Mode mode : OnceExecutedFunction.Mode.values()) {
+            AtomicInteger callCount = new AtomicInteger();
+            OnceExecutedFunction<String, Integer> function = new OnceExecutedFunction<>(input -> {
+                callCount.incrementAndGet();
+                return input == null ? null : input.length();
+            }, mode);
+
+            Assert.assertEquals(3, (int) function.apply("abc"));
+            Assert.assertEquals(3, (int) function.apply("abc"));
+            Assert.assertNull(function.apply(null));
+            Assert.assertNull(function.apply(null));
+            Assert.assertEquals(2, callCount.get());
+            Assert.assertTrue(function.isExecuted("abc"));
+            Assert.assertTrue(function.isExecuted(null));
+            Assert.assertFalse(function.isExecuted("a"));
+            Assert.assertEquals(2, function.size());
+
+            function.clear();
+            Assert.assertEquals(0, function.size());
+            Assert.assertEquals(3, (int) function.apply("abc"));
+            Assert.assertEquals(3, callCount.get());
+        }
+    }
+
+    @Test
+    public void failureIsNotRemembered() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedFunction<Integer, Integer> function = new OnceExecutedFunction<>(input -> {
+            if (callCount.incrementAndGet() == 1)
+                throw new IllegalStateException();
+            return input;
+        }, OnceExecutedFunction.Mode.COMPUTE_OUTSIDE_LOCK);
+
+        Assert.assertThrows(IllegalStateException.class, () -> function.apply(1));
+        Assert.assertEquals(1, (int) function.apply(1));
+    }
+
+    @Test
+    public void computeOutsideLock() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        OnceExecutedFunction<Integer, Integer> function = new OnceExecutedFunction<>(input -> {
+            if (input == 0) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return input;
+        }, OnceExecutedFunction.Mode.COMPUTE_OUTSIDE_LOCK);
+
+        CompletableFuture<Integer> slow = CompletableFuture.supplyAsync(() -> function.apply(0));
+        // Each other input is computed, while the slow input is still running.
+        for (int i = 1; i < 64; i++)
+            Assert.assertEquals(i, (int) function.apply(i));
+        Assert.assertFalse(slow.isDone());
+        Assert.assertFalse(function.isExecuted(0));
+        release.countDown();
+        Assert.assertEquals(0, (int) slow.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void recursiveCallOutsideLock() {
+        AtomicReference<OnceExecutedFunction<Integer, Integer>> self = new AtomicReference<>();
+        OnceExecutedFunction<Integer, Integer> function = new OnceExecutedFunction<>(input -> input == 0 ? 0 : self.get().apply(input == 2 ? 1 : input), OnceExecutedFunction.Mode.COMPUTE_OUTSIDE_LOCK);
+        self.set(function);
+        Assert.assertThrows(IllegalStateException.class, () -> function.apply(2));
+        Assert.assertEquals(0, function.size());
+        Assert.assertEquals(0, (int) function.apply(0));
+        Assert.assertEquals(1, function.size());
+        function.clear();
+        Assert.assertEquals(0, function.size());
+    }
+
+    @Test
+    public void bounded() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedFunction<Integer, Integer> function = new OnceExecutedFunction<>(input -> {
+            callCount.incrementAndGet();
+            return input;
+        }, 4, null, StatsCounter.concurrent());
+
+        for (int i = 0; i < 100; i++)
+            function.apply(i);
+        Assert.assertEquals(4, function.size());
+        Assert.assertEquals(100, function.stats().loadSuccessCount());
+        Assert.assertEquals(96, function.stats().evictionCount());
+        Assert.assertTrue(function.isExecuted(99));
+        Assert.assertFalse(function.isExecuted(0));
+        Assert.assertNull(new OnceExecutedFunction<Integer, Integer>(input -> null, 4, null).apply(null));
+    }
+}
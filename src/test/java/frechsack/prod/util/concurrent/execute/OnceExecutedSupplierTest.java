@@ -0,0 +1,133 @@
+package frechsack.prod.util.concurrent.execute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class OnceExecutedSupplierTest {
+
+    @Test
+    public void get() throws Exception {
+        AtomicInteger callCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        OnceExecutedSupplier<Integer> supplier = new OnceExecutedSupplier<>(() -> {
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return callCount.incrementAndGet();
+        });
+        Assert.assertEquals(OnceExecutedSupplier.State.NEW, supplier.state());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 100; i++)
+                results.add(executor.submit(supplier::get));
+            Thread.sleep(50);
+            Assert.assertTrue(supplier.isExecuting());
+            release.countDown();
+            for (Future<Integer> result : results)
+                Assert.assertEquals(1, (int) result.get(5, TimeUnit.SECONDS));
+        }
+        Assert.assertEquals(1, callCount.get());
+        Assert.assertTrue(supplier.isExecuted());
+
+        supplier.reset();
+        Assert.assertEquals(OnceExecutedSupplier.State.NEW, supplier.state());
+        Assert.assertEquals(2, (int) supplier.get());
+    }
+
+    @Test
+    public void failurePolicy() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedSupplier<Integer> retrying = new OnceExecutedSupplier<>(() -> {
+            if (callCount.incrementAndGet() == 1)
+                throw new IllegalArgumentException();
+            return callCount.get();
+        });
+        Assert.assertThrows(IllegalArgumentException.class, retrying::get);
+        Assert.assertEquals(OnceExecutedSupplier.State.NEW, retrying.state());
+        Assert.assertEquals(2, (int) retrying.get());
+
+        AtomicInteger cachedCallCount = new AtomicInteger();
+        OnceExecutedSupplier<Integer> caching = new OnceExecutedSupplier<>(() -> {
+            cachedCallCount.incrementAndGet();
+            throw new IllegalArgumentException();
+        }, FailurePolicy.CACHE);
+        Assert.assertThrows(IllegalArgumentException.class, caching::get);
+        Assert.assertThrows(IllegalArgumentException.class, caching::get);
+        Assert.assertEquals(OnceExecutedSupplier.State.FAILED, caching.state());
+        Assert.assertEquals(1, cachedCallCount.get());
+        caching.reset();
+        Assert.assertThrows(IllegalArgumentException.class, caching::get);
+        Assert.assertEquals(2, cachedCallCount.get());
+    }
+
+    @Test
+    public void recursion() {
+        AtomicReference<OnceExecutedSupplier<Integer>> self = new AtomicReference<>();
+        self.set(new OnceExecutedSupplier<>(() -> self.get().get()));
+        Assert.assertThrows(IllegalStateException.class, () -> self.get().get());
+    }
+
+    @Test
+    public void runnable() {
+        AtomicInteger callCount = new AtomicInteger();
+        OnceExecutedRunnable runnable = new OnceExecutedRunnable(callCount::incrementAndGet);
+        runnable.run();
+        runnable.run();
+        Assert.assertTrue(runnable.isExecuted());
+        Assert.assertEquals(1, callCount.get());
+        runnable.reset();
+        runnable.run();
+        Assert.assertEquals(2, callCount.get());
+    }
+
+    @Test
+    public void sneakyCheckedException() throws Exception {
+        AtomicInteger callCount = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        OnceExecutedSupplier<Integer> supplier = new OnceExecutedSupplier<>(() -> {
+            if (callCount.incrementAndGet() == 1) {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw OnceExecutedSupplierTest.<RuntimeException>sneakyThrow(new java.io.IOException());
+            }
+            return callCount.get();
+        });
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<Integer> failing = executor.submit(supplier::get);
+            while (!supplier.isExecuting())
+                Thread.onSpinWait();
+            Future<Integer> waiting = executor.submit(supplier::get);
+            release.countDown();
+            ExecutionException exception = Assert.assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(exception.getCause() instanceof java.io.IOException);
+            // The waiting caller is released and executes the action again.
+            Assert.assertEquals(2, (int) waiting.get(5, TimeUnit.SECONDS));
+        }
+
+        OnceExecutedSupplier<Integer> caching = new OnceExecutedSupplier<>(() -> {
+            throw OnceExecutedSupplierTest.<RuntimeException>sneakyThrow(new java.io.IOException());
+        }, FailurePolicy.CACHE);
+        Assert.assertThrows(java.io.IOException.class, caching::get);
+        Assert.assertEquals(OnceExecutedSupplier.State.FAILED, caching.state());
+        Assert.assertThrows(RuntimeException.class, caching::get);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <ThrowableType extends Throwable> ThrowableType sneakyThrow(Throwable throwable) throws ThrowableType {
+        throw (ThrowableType) throwable;
+    }
+}
@@ -0,0 +1,119 @@
+package frechsack.prod.util.concurrent.metric;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class MetricTest {
+
+    private static void runConcurrently(int threads, Runnable task) throws InterruptedException {
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int i = 0; i < threads; i++)
+                executor.execute(task);
+        }
+    }
+
+    @Test
+    public void stripedCounter() throws InterruptedException {
+        StripedCounter counter = new StripedCounter();
+        runConcurrently(8, () -> {
+            for (int i = 0; i < 100_000; i++)
+                counter.increment();
+        });
+        Assert.assertEquals(800_000, counter.sum());
+        counter.add(-5);
+        Assert.assertEquals(799_995, counter.sumThenReset());
+        Assert.assertEquals(0, counter.sum());
+    }
+
+    @Test
+    public void extremumTracker() throws InterruptedException {
+        ExtremumTracker max = ExtremumTracker.maximum();
+        ExtremumTracker min = ExtremumTracker.minimum();
+        Assert.assertEquals(Long.MIN_VALUE, max.get());
+        Assert.assertEquals(Long.MAX_VALUE, min.get());
+        runConcurrently(4, () -> {
+            for (int i = -1000; i <= 1000; i++) {
+                max.record(i);
+                min.record(i);
+            }
+        });
+        Assert.assertEquals(1000, max.getThenReset());
+        Assert.assertEquals(-1000, min.get());
+        Assert.assertEquals(Long.MIN_VALUE, max.get());
+    }
+
+    @Test
+    public void rateMeter() throws InterruptedException {
+        RateMeter meter = new RateMeter(Duration.ofMillis(100), Duration.ofMillis(10));
+        Assert.assertEquals(0, meter.rate(TimeUnit.SECONDS), 0);
+        for (int i = 0; i < 20; i++) {
+            meter.mark(10);
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(200, meter.count());
+        // About ten events per ten milliseconds, that are a thousand per second. Sleeping may take longer.
+        double rate = meter.rate(TimeUnit.SECONDS);
+        Assert.assertTrue("rate " + rate, rate > 100 && rate < 2000);
+        Thread.sleep(500);
+        Assert.assertTrue(meter.rate(TimeUnit.SECONDS) < rate / 10);
+    }
+
+    @Test
+    public void bucketBounds() {
+        for (int precision : new int[] { 0, 3, 5 }) {
+            for (long value : new long[] { 0, 1, 7, 8, 9, 31, 32, 33, 1000, 123_456_789, Long.MAX_VALUE / 3, Long.MAX_VALUE }) {
+                int index = LatencyHistogram.bucketIndex(value, precision);
+                Assert.assertTrue(LatencyHistogram.lowerBound(index, precision) <= value);
+                Assert.assertTrue(LatencyHistogram.upperBound(index, precision) >= value);
+            }
+            int last = ((Long.SIZE - precision) << precision) - 1;
+            Assert.assertEquals(last, LatencyHistogram.bucketIndex(Long.MAX_VALUE, precision));
+            Assert.assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(last, precision));
+            // Buckets are contiguous.
+            for (int i = 1; i <= last; i++)
+                Assert.assertEquals(LatencyHistogram.upperBound(i - 1, precision) + 1, LatencyHistogram.lowerBound(i, precision));
+        }
+    }
+
+    @Test
+    public void latencyHistogram() throws InterruptedException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        runConcurrently(4, () -> {
+            for (int i = 1; i <= 10_000; i++)
+                histogram.record(i * 1000L);
+        });
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(40_000, snapshot.count());
+        Assert.assertEquals(1000, snapshot.min());
+        Assert.assertEquals(10_000_000, snapshot.max());
+        Assert.assertEquals(5_000_500, snapshot.mean(), 0.001);
+        Assert.assertEquals(5_000_000, snapshot.valueAtQuantile(0.5), 5_000_000 / 32.0);
+        Assert.assertEquals(9_900_000, snapshot.valueAtQuantile(0.99), 9_900_000 / 32.0);
+        Assert.assertEquals(10_000_000, snapshot.valueAtQuantile(1));
+        Assert.assertEquals(1000, snapshot.valueAtQuantile(0), 1000 / 32.0);
+    }
+
+    @Test
+    public void mergeSnapshots() {
+        LatencyHistogram first = new LatencyHistogram(3);
+        LatencyHistogram second = new LatencyHistogram(3);
+        for (int i = 0; i < 100; i++) {
+            first.record(5);
+            second.record(500);
+        }
+        LatencyHistogram.Snapshot merged = first.snapshotThenReset().merge(second.snapshot());
+        Assert.assertEquals(200, merged.count());
+        Assert.assertEquals(5, merged.min());
+        Assert.assertEquals(500, merged.max());
+        Assert.assertEquals(5, merged.valueAtQuantile(0.5));
+        Assert.assertEquals(500, merged.valueAtQuantile(0.51), 500 / 8.0);
+        Assert.assertEquals(0, first.snapshot().count());
+        Assert.assertSame(merged, merged.merge(LatencyHistogram.Snapshot.empty(3)));
+        Assert.assertThrows(IllegalArgumentException.class, () -> merged.merge(LatencyHistogram.Snapshot.empty(4)));
+    }
+}
@@ -0,0 +1,56 @@
+package frechsack.prod.util.sketch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+public class BloomFilterTest {
+
+    @Test
+    public void noFalseNegatives() {
+        BloomFilter<String> filter = new BloomFilter<>(10_000, 0.01);
+        int addedCount = 0;
+        for (int i = 0; i < 10_000; i++)
+            if (filter.add("element-" + i))
+                addedCount++;
+        // A new element may be a false positive.
+        Assert.assertTrue(addedCount > 9_800);
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(filter.mightContain("element-" + i));
+            Assert.assertFalse(filter.add("element-" + i));
+        }
+        filter.clear();
+        Assert.assertFalse(filter.mightContain("element-0"));
+    }
+
+    @Test
+    public void falsePositiveProbability() {
+        BloomFilter<Integer> filter = new BloomFilter<>(100_000, 0.01);
+        IntStream.range(0, 100_000).parallel().forEach(filter::add);
+        long falsePositives = IntStream.range(100_000, 200_000).filter(it -> filter.mightContain(it)).count();
+        Assert.assertTrue("false positives " + falsePositives, falsePositives < 2_000);
+        Assert.assertEquals(0.01, filter.falsePositiveProbability(), 0.005);
+        Assert.assertEquals(7, filter.hashCount());
+    }
+
+    @Test
+    public void concurrentAddOfSameElement() throws InterruptedException {
+        BloomFilter<Integer> filter = new BloomFilter<>(100_000, 0.01);
+        AtomicIntegerArray addedCounts = new AtomicIntegerArray(20_000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++)
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < addedCounts.length(); i++)
+                    if (filter.add(i))
+                        addedCounts.incrementAndGet(i);
+            }));
+        for (Thread thread : threads)
+            thread.join();
+        for (int i = 0; i < addedCounts.length(); i++)
+            Assert.assertTrue(addedCounts.get(i) <= 1);
+    }
+}
@@ -0,0 +1,89 @@
+package frechsack.prod.util.sketch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Random;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void hyperLogLog() {
+        HyperLogLog<Long> first = new HyperLogLog<>(14, Hashing::mix);
+        HyperLogLog<Long> second = new HyperLogLog<>(14, Hashing::mix);
+        for (long i = 0; i < 1_000_000; i++) {
+            first.add(i);
+            // Duplicates are not counted.
+            second.add(i / 2 + 500_000);
+        }
+        first.combine(second);
+        Assert.assertEquals(1_000_000, first.cardinality(), 1_000_000 * 4 * first.relativeError());
+        HyperLogLog<String> small = new HyperLogLog<>();
+        for (int i = 0; i < 100; i++)
+            small.add("element-" + (i % 10));
+        Assert.assertEquals(10, small.cardinality());
+        Assert.assertEquals(0, new HyperLogLog<>().cardinality());
+        Assert.assertThrows(IllegalArgumentException.class, () -> first.combine(new HyperLogLog<>(10)));
+    }
+
+    @Test
+    public void defaultHash() {
+        // Each of these longs has the hash code zero.
+        HyperLogLog<Long> longs = new HyperLogLog<>();
+        for (long i = 0; i < 10_000; i++)
+            longs.add(i * ((1L << 32) + 1));
+        Assert.assertEquals(10_000, longs.cardinality(), 300);
+
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode());
+        BloomFilter<String> strings = new BloomFilter<>(100, 0.01);
+        Assert.assertTrue(strings.add("Aa"));
+        Assert.assertTrue(strings.add("BB"));
+        Assert.assertNotEquals(Hashing.hashOf("Aa"), Hashing.hashOf("BB"));
+        Assert.assertEquals(Hashing.hashOf(new String("Aa")), Hashing.hashOf("Aa"));
+    }
+
+    @Test
+    public void countMinSketch() {
+        CountMinSketch<Integer> sketch = new CountMinSketch<>(0.001, 0.99);
+        CountMinSketch<Integer> other = new CountMinSketch<>(0.001, 0.99);
+        Random random = new Random(3);
+        int[] counts = new int[10_000];
+        for (int i = 0; i < 200_000; i++) {
+            int element = random.nextInt(100) == 0 ? 7 : random.nextInt(counts.length);
+            counts[element]++;
+            (i % 2 == 0 ? sketch : other).add(element);
+        }
+        sketch.combine(other);
+        Assert.assertEquals(200_000, sketch.totalCount());
+        for (int element = 0; element < counts.length; element++) {
+            long estimate = sketch.estimateCount(element);
+            Assert.assertTrue(estimate >= counts[element]);
+        }
+        Assert.assertEquals(counts[7], sketch.estimateCount(7), 0.001 * 200_000);
+        Assert.assertEquals(2719, sketch.width());
+        Assert.assertEquals(5, sketch.depth());
+    }
+
+    @Test
+    public void spaceSaving() {
+        SpaceSaving<String> first = new SpaceSaving<>(50);
+        SpaceSaving<String> second = new SpaceSaving<>(50);
+        Random random = new Random(9);
+        for (int i = 0; i < 100_000; i++) {
+            // Zipf like frequencies, a few elements are frequent and many are rare.
+            int rank = (int) Math.floor(Math.pow(10_000, random.nextDouble()));
+            (i % 3 == 0 ? first : second).add("element-" + rank);
+        }
+        first.combine(second);
+        Assert.assertEquals(100_000, first.totalCount());
+        List<SpaceSaving.HeavyHitter<String>> top = first.topK(3);
+        Assert.assertEquals(List.of("element-1", "element-2", "element-3"), top.stream().map(SpaceSaving.HeavyHitter::element).toList());
+        for (var hitter : top)
+            Assert.assertTrue(hitter.guaranteedCount() > 0 && hitter.error() <= 100_000 / 50 * 2);
+        // The first element occurs in about 7.5 percent of the cases.
+        Assert.assertEquals("element-1", first.heavyHitters(0.06).get(0).element());
+        Assert.assertTrue(first.heavyHitters(0.2).isEmpty());
+        Assert.assertEquals(0, new SpaceSaving<String>(3).topK(3).size());
+    }
+}
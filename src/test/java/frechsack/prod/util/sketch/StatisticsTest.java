@@ -0,0 +1,84 @@
+package frechsack.prod.util.sketch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class StatisticsTest {
+
+    @Test
+    public void varianceStatistics() {
+        VarianceStatistics first = new VarianceStatistics();
+        VarianceStatistics second = new VarianceStatistics();
+        // A large offset loses the variance, if squares are summed.
+        double[] values = { 1e9 + 4, 1e9 + 7, 1e9 + 13, 1e9 + 16 };
+        first.accept(values[0]);
+        first.accept(values[1]);
+        second.accept(values[2]);
+        second.accept(values[3]);
+        first.combine(second);
+        first.combine(new VarianceStatistics());
+        Assert.assertEquals(4, first.count());
+        Assert.assertEquals(1e9 + 10, first.mean(), 1e-6);
+        Assert.assertEquals(22.5, first.variance(), 1e-6);
+        Assert.assertEquals(30, first.sampleVariance(), 1e-6);
+        Assert.assertEquals(1e9 + 4, first.min(), 0);
+        Assert.assertEquals(1e9 + 16, first.max(), 0);
+        Assert.assertEquals(0, new VarianceStatistics().variance(), 0);
+    }
+
+    @Test
+    public void kllSketch() {
+        Random random = new Random(7);
+        double[] values = random.doubles(200_000).map(it -> it * 1000).toArray();
+        KllSketch sketch = new KllSketch();
+        KllSketch other = new KllSketch();
+        for (int i = 0; i < values.length; i++)
+            (i % 2 == 0 ? sketch : other).accept(values[i]);
+        sketch.combine(other);
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        Assert.assertEquals(values.length, sketch.count());
+        Assert.assertEquals(sorted[0], sketch.quantile(0), 0);
+        Assert.assertEquals(sorted[sorted.length - 1], sketch.quantile(1), 0);
+        for (double quantile : new double[] { 0.01, 0.25, 0.5, 0.9, 0.99 }) {
+            double estimate = sketch.quantile(quantile);
+            int rank = Arrays.binarySearch(sorted, estimate);
+            Assert.assertEquals("quantile " + quantile, quantile, (double) rank / sorted.length, 0.02);
+            Assert.assertEquals(quantile, sketch.rank(estimate), 0.02);
+        }
+        Assert.assertTrue(Double.isNaN(new KllSketch().quantile(0.5)));
+        Assert.assertThrows(IllegalArgumentException.class, () -> sketch.quantile(1.5));
+    }
+
+    @Test
+    public void linearHistogram() {
+        DoubleHistogram histogram = DoubleHistogram.linear(0, 10, 5);
+        for (double value : new double[] { -1, 0, 1.99, 2, 9.99, 10, Double.NaN })
+            histogram.accept(value);
+        Assert.assertArrayEquals(new long[] { 2, 1, 0, 0, 1 }, histogram.counts());
+        Assert.assertEquals(1, histogram.underflowCount());
+        Assert.assertEquals(1, histogram.overflowCount());
+        Assert.assertEquals(6, histogram.totalCount());
+        Assert.assertEquals(4, histogram.lowerBound(2), 1e-9);
+        Assert.assertEquals(10, histogram.upperBound(4), 0);
+        DoubleHistogram other = histogram.withoutCounts();
+        other.accept(5);
+        histogram.combine(other);
+        Assert.assertEquals(1, histogram.count(2));
+        Assert.assertThrows(IllegalArgumentException.class, () -> histogram.combine(DoubleHistogram.linear(0, 10, 4)));
+    }
+
+    @Test
+    public void logarithmicHistogram() {
+        DoubleHistogram histogram = DoubleHistogram.logarithmic(1, 1000, 3);
+        for (double value : new double[] { 0.5, 1, 9.9, 10, 99, 100, 999, 1000 })
+            histogram.accept(value);
+        Assert.assertArrayEquals(new long[] { 2, 2, 2 }, histogram.counts());
+        Assert.assertEquals(10, histogram.lowerBound(1), 1e-9);
+        Assert.assertEquals(100, histogram.upperBound(1), 1e-9);
+        Assert.assertThrows(IllegalArgumentException.class, () -> DoubleHistogram.logarithmic(0, 10, 2));
+    }
+}
@@ -53,6 +53,28 @@ public class FStreamTest {
 
     }
 
+    @org.junit.Test
+    public void distinctByParallel() {
+        // The first element of each key in encounter order is kept, although the stream is parallel.
+        Object[] items = FStream.of(java.util.stream.IntStream.range(0, 100_000).boxed().parallel())
+                .distinctBy(it -> it % 1000)
+                .toArray();
+        Assert.assertArrayEquals(java.util.stream.IntStream.range(0, 1000).boxed().toArray(), items);
+
+        Object[] nullKeys = FStream.of(Stream.of("a", "b", "c"))
+                .distinctBy(it -> it.equals("a") ? "a" : null)
+                .toArray();
+        Assert.assertArrayEquals(new Object[] { "a", "b" }, nullKeys);
+    }
+
+    @org.junit.Test
+    public void distinctByApproximate() {
+        long count = FStream.of(java.util.stream.IntStream.range(0, 100_000).boxed())
+                .distinctByApproximate(it -> it % 10_000, 10_000, 0.01)
+                .count();
+        Assert.assertTrue(count <= 10_000 && count > 9_800);
+    }
+
     @org.junit.Test
     public void distinct() {
         record Item(String name, int age){}
@@ -61,7 +83,7 @@ public class FStreamTest {
                 new Item("NameA", 13),
                 new Item("NameB", 12),
                 new Item("NameC", 14))
-        ).distinct((a, b) -> a.age != b.age)
+        ).distinct((a, b) -> a.age == b.age)
                 .toArray();
 
         Object[] expected1 = {
@@ -73,6 +95,103 @@ public class FStreamTest {
         Assert.assertArrayEquals(expected1, items1);
     }
 
+    @org.junit.Test
+    public void distinctBlockingKey() {
+        // Names are equal, if they differ in case only. The lower case first letter is a valid block, since equal names share it.
+        Object[] names = FStream.of(Stream.of("Anna", "anna", "Bert", "ANNA", "bert", "Carl"))
+                .distinct(it -> Character.toLowerCase(it.charAt(0)), String::equalsIgnoreCase)
+                .toArray();
+        Assert.assertArrayEquals(new Object[] { "Anna", "Bert", "Carl" }, names);
+
+        // Each element is distinct within a parallel stream, so no element may be lost or kept twice.
+        long count = FStream.of(java.util.stream.IntStream.range(0, 200_000).boxed().parallel())
+                .distinct(it -> it % 1000, (a, b) -> a % 50_000 == b % 50_000)
+                .count();
+        Assert.assertEquals(50_000, count);
+    }
+
+    @org.junit.Test
+    public void distinctSortedNeighborhood() {
+        record Item(String name, int age){}
+        Object[] items = FStream.of(Stream.of(
+                        new Item("Meier", 30),
+                        new Item("Mayer", 31),
+                        new Item("Anders", 40),
+                        new Item("Meyer", 30),
+                        new Item("Zander", 40)))
+                .distinctSortedNeighborhood(java.util.Comparator.comparingInt(Item::age), 2, (a, b) -> Math.abs(a.age - b.age) <= 1 && a.name.charAt(0) == b.name.charAt(0))
+                .toArray();
+        Object[] expected = {
+                new Item("Meier", 30),
+                new Item("Anders", 40),
+                new Item("Zander", 40)
+        };
+        Assert.assertArrayEquals(expected, items);
+
+        long count = FStream.of(java.util.stream.IntStream.range(0, 100_000).boxed().parallel())
+                .distinctSortedNeighborhood(java.util.Comparator.comparingInt(it -> it / 2), 1, (a, b) -> a / 2 == b / 2)
+                .count();
+        Assert.assertEquals(50_000, count);
+    }
+
+    @org.junit.Test
+    public void chunked() {
+        Assert.assertEquals(java.util.List.of(java.util.List.of(0, 1, 2), java.util.List.of(3, 4, 5), java.util.List.of(6)),
+                FStream.of(Stream.iterate(0, it -> it + 1).limit(7)).chunked(3).toList());
+        Assert.assertEquals(0, FStream.of(Stream.empty()).chunked(3).count());
+
+        // Batches of chunks are processed concurrently, the encounter order is kept.
+        java.util.List<Integer> flattened = FStream.of(java.util.stream.IntStream.range(0, 100_000).boxed().parallel())
+                .chunked(10)
+                .map(chunk -> chunk.stream().mapToInt(Integer::intValue).sum())
+                .toList();
+        Assert.assertEquals(10_000, flattened.size());
+        Assert.assertEquals(45, (int) flattened.get(0));
+        Assert.assertEquals(999_945, (int) flattened.get(9_999));
+    }
+
+    @org.junit.Test
+    public void windowCharacteristics() {
+        java.util.Spliterator<java.util.List<Integer>> ordered = FStream.of(Stream.of(0, 1, 2)).chunked(2).spliterator();
+        Assert.assertTrue(ordered.hasCharacteristics(java.util.Spliterator.ORDERED));
+        java.util.Spliterator<java.util.List<Integer>> unordered = FStream.of(java.util.Set.of(0, 1, 2).stream()).chunked(2).spliterator();
+        Assert.assertFalse(unordered.hasCharacteristics(java.util.Spliterator.ORDERED));
+        Assert.assertTrue(unordered.hasCharacteristics(java.util.Spliterator.NONNULL));
+    }
+
+    @org.junit.Test
+    public void countDistinctApproxHasher() {
+        long estimate = FStream.of(java.util.stream.LongStream.range(0, 100_000).boxed().parallel())
+                .countDistinctApprox(14, FStreamTest::mix);
+        Assert.assertEquals(100_000, estimate, 5_000);
+        Assert.assertTrue(FStream.of(Stream.of("a", "b", "a")).frequencySketch(0.01, 0.99, String::hashCode).estimateCount("a") >= 2);
+    }
+
+    @org.junit.Test
+    public void sliding() {
+        Assert.assertEquals(java.util.List.of(java.util.List.of(0, 1, 2), java.util.List.of(1, 2, 3), java.util.List.of(2, 3, 4)),
+                FStream.of(Stream.of(0, 1, 2, 3, 4)).sliding(3, 1).toList());
+        Assert.assertEquals(java.util.List.of(java.util.List.of(0, 1), java.util.List.of(3, 4)),
+                FStream.of(Stream.of(0, 1, 2, 3, 4, 5)).sliding(2, 3).toList());
+        Assert.assertEquals(java.util.List.of(java.util.List.of(0, 1)),
+                FStream.of(Stream.of(0, 1)).sliding(3, 1).toList());
+    }
+
+    @org.junit.Test
+    public void groupAdjacentBy() {
+        Assert.assertEquals(java.util.List.of(java.util.List.of("a", "ab"), java.util.List.of("b"), java.util.List.of("ac")),
+                FStream.of(Stream.of("a", "ab", "b", "ac")).groupAdjacentBy(it -> it.charAt(0)).toList());
+        Assert.assertEquals(java.util.List.of(java.util.List.of(1L, 999L), java.util.List.of(1000L, 1500L), java.util.List.of(3000L)),
+                FStream.of(Stream.of(1L, 999L, 1000L, 1500L, 3000L)).windowedBy(Long::longValue, 1000).toList());
+    }
+
+    @org.junit.Test
+    public void forEachChunk() {
+        java.util.List<java.util.List<Integer>> chunks = new java.util.ArrayList<>();
+        FStream.of(java.util.stream.IntStream.range(0, 5).boxed().parallel()).forEachChunk(2, chunk -> chunks.add(java.util.List.copyOf(chunk)));
+        Assert.assertEquals(java.util.List.of(java.util.List.of(0, 1), java.util.List.of(2, 3), java.util.List.of(4)), chunks);
+    }
+
     @org.junit.Test
     public void sortedBy() {
         record Item(String name, int age){}
@@ -94,6 +213,66 @@ public class FStreamTest {
         Assert.assertArrayEquals(expected1, items1);
     }
 
+    @org.junit.Test
+    public void sortedByNulls() {
+        Object[] sorted = FStream.of(Stream.of("bb", null, "a", "ccc", "dd"))
+                .sortedBy(it -> it.length() == 3 ? null : it.length())
+                .toArray();
+        Assert.assertArrayEquals(new Object[] { "a", "bb", "dd", "ccc", null }, sorted);
+    }
+
+    @org.junit.Test
+    public void sortedByPrimitive() {
+        record Item(int id, long time, double score){}
+        java.util.Random random = new java.util.Random(42);
+        java.util.List<Item> items = java.util.stream.IntStream.range(0, 100_000)
+                .mapToObj(it -> new Item(it, random.nextInt(1000) - 500, random.nextDouble() - 0.5))
+                .toList();
+        for (boolean isParallel : new boolean[] { false, true }) {
+            // The expected order is created by the stable sort of the JDK.
+            Assert.assertEquals(items.stream().sorted(java.util.Comparator.comparingLong(Item::time)).toList(),
+                    FStream.of(isParallel ? items.parallelStream() : items.stream()).sortedByLong(Item::time).toList());
+            Assert.assertEquals(items.stream().sorted(java.util.Comparator.comparingInt(it -> (int) it.time)).toList(),
+                    FStream.of(isParallel ? items.parallelStream() : items.stream()).sortedByInt(it -> (int) it.time).toList());
+            Assert.assertEquals(items.stream().sorted(java.util.Comparator.comparingDouble(Item::score)).toList(),
+                    FStream.of(isParallel ? items.parallelStream() : items.stream()).sortedByDouble(Item::score).toList());
+            Assert.assertEquals(items.stream().sorted(java.util.Comparator.comparing(it -> it.time)).toList(),
+                    FStream.of(isParallel ? items.parallelStream() : items.stream()).sortedBy(Item::time).toList());
+        }
+        Assert.assertArrayEquals(new Object[] { Double.NEGATIVE_INFINITY, -1.0, -0.0, 0.0, 2.5, Double.NaN },
+                FStream.of(Stream.of(2.5, Double.NaN, 0.0, -0.0, -1.0, Double.NEGATIVE_INFINITY)).sortedByDouble(Double::doubleValue).toArray());
+    }
+
+    @org.junit.Test
+    public void topK() {
+        java.util.List<Integer> values = new java.util.Random(7).ints(100_000, -1_000_000, 1_000_000).boxed().toList();
+        for (boolean isParallel : new boolean[] { false, true }) {
+            Assert.assertEquals(values.stream().sorted(java.util.Comparator.reverseOrder()).limit(100).toList(),
+                    FStream.of(isParallel ? values.parallelStream() : values.stream()).topK(100, java.util.Comparator.naturalOrder()).toList());
+            Assert.assertEquals(values.stream().sorted().limit(100).toList(),
+                    FStream.of(isParallel ? values.parallelStream() : values.stream()).bottomK(100, java.util.Comparator.naturalOrder()).toList());
+        }
+        Assert.assertEquals(java.util.List.of(3, 2, 1), FStream.of(Stream.of(1, 3, 2)).topK(5, java.util.Comparator.naturalOrder()).toList());
+        Assert.assertEquals(0, FStream.of(Stream.of(1, 3, 2)).topK(0, java.util.Comparator.naturalOrder()).count());
+    }
+
+    @org.junit.Test
+    public void primitiveTopK() {
+        int[] ints = new java.util.Random(7).ints(100_000).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(ints).boxed().sorted(java.util.Comparator.reverseOrder()).limit(10).mapToInt(Integer::intValue).toArray(),
+                FIntStream.of(java.util.Arrays.stream(ints).parallel()).topK(10).toArray());
+        Assert.assertArrayEquals(java.util.Arrays.stream(ints).sorted().limit(10).toArray(),
+                FIntStream.of(java.util.Arrays.stream(ints)).bottomK(10).toArray());
+        Assert.assertArrayEquals(new long[] { Long.MAX_VALUE, 5 },
+                FLongStream.of(java.util.stream.LongStream.of(Long.MIN_VALUE, 5, Long.MAX_VALUE, -3)).topK(2).toArray());
+        Assert.assertArrayEquals(new long[] { Long.MIN_VALUE, -3 },
+                FLongStream.of(java.util.stream.LongStream.of(Long.MIN_VALUE, 5, Long.MAX_VALUE, -3)).bottomK(2).toArray());
+        Assert.assertArrayEquals(new double[] { Double.NaN, 2.5, 0.0 },
+                FDoubleStream.of(java.util.stream.DoubleStream.of(-1, 2.5, Double.NaN, 0.0, -0.0)).topK(3).toArray(), 0);
+        Assert.assertArrayEquals(new double[] { -1, -0.0 },
+                FDoubleStream.of(java.util.stream.DoubleStream.of(-1, 2.5, Double.NaN, 0.0, -0.0)).bottomK(2).toArray(), 0);
+    }
+
     @org.junit.Test
     public void add() {
         record Item(String name, int age){}
@@ -119,9 +298,88 @@ public class FStreamTest {
 
     @org.junit.Test
     public void sortedReversed() {
+        int[] ints = new java.util.Random(3).ints(100_000).toArray();
+        int[] expected = java.util.Arrays.stream(ints).boxed().sorted(java.util.Comparator.reverseOrder()).mapToInt(Integer::intValue).toArray();
+        Assert.assertArrayEquals(expected, FIntStream.of(java.util.Arrays.stream(ints)).sortedReversed().toArray());
+        Assert.assertArrayEquals(expected, FIntStream.of(java.util.Arrays.stream(ints).parallel()).sortedReversed().toArray());
+        Assert.assertEquals(100_000, FIntStream.of(java.util.Arrays.stream(ints)).sortedReversed().spliterator().getExactSizeIfKnown());
+
+        Assert.assertArrayEquals(new long[] { Long.MAX_VALUE, 3, -1, Long.MIN_VALUE },
+                FLongStream.of(java.util.stream.LongStream.of(-1, Long.MIN_VALUE, 3, Long.MAX_VALUE)).sortedReversed().toArray());
+    }
+
+    @org.junit.Test
+    public void sortedRadix() {
+        java.util.Random random = new java.util.Random(5);
+        int[] ints = random.ints(100_000).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(ints).sorted().toArray(), FIntStream.of(java.util.Arrays.stream(ints).parallel()).sortedRadix().toArray());
+        // Dense ids differ in the lower digits only.
+        int[] ids = random.ints(100_000, 1_000_000, 1_050_000).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(ids).sorted().toArray(), FIntStream.of(java.util.Arrays.stream(ids)).sortedRadix().toArray());
+        long[] longs = random.longs(100_000).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(longs).sorted().toArray(), FLongStream.of(java.util.Arrays.stream(longs)).sortedRadix().toArray());
+        double[] doubles = java.util.stream.DoubleStream.concat(random.doubles(10_000, -1e9, 1e9),
+                java.util.stream.DoubleStream.of(Double.NaN, -0.0, 0.0, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY)).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(doubles).sorted().toArray(), FDoubleStream.of(java.util.Arrays.stream(doubles)).sortedRadix().toArray(), 0);
+        Assert.assertEquals(0, FIntStream.of(java.util.stream.IntStream.empty()).sortedRadix().count());
+    }
+
+    @org.junit.Test
+    public void sortedCounting() {
+        int[] ages = new java.util.Random(5).ints(100_000, 0, 120).toArray();
+        Assert.assertArrayEquals(java.util.Arrays.stream(ages).sorted().toArray(), FIntStream.of(java.util.Arrays.stream(ages)).sortedCounting(0, 119).toArray());
+        Assert.assertThrows(IllegalArgumentException.class, () -> FIntStream.of(java.util.stream.IntStream.of(1, 200)).sortedCounting(0, 119).toArray());
     }
 
     @org.junit.Test
     public void testSortedReversed() {
+        // Same order as the boxed reverse order, so NaN is first and positive zero precedes negative zero.
+        Assert.assertArrayEquals(new double[] { Double.NaN, 1.5, 0.0, -0.0, Double.NEGATIVE_INFINITY },
+                FDoubleStream.of(java.util.stream.DoubleStream.of(0.0, Double.NEGATIVE_INFINITY, 1.5, -0.0, Double.NaN).parallel()).sortedReversed().toArray(), 0);
+    }
+
+    @org.junit.Test
+    public void primitiveStatistics() {
+        double[] latencies = new java.util.Random(11).doubles(100_000, 1, 1000).toArray();
+        double[] sorted = latencies.clone();
+        java.util.Arrays.sort(sorted);
+        double[] quantiles = FDoubleStream.of(java.util.Arrays.stream(latencies).parallel()).quantiles(0, 0.5, 0.99, 1);
+        Assert.assertArrayEquals(new double[] { sorted[0], sorted[49_999], sorted[98_999], sorted[99_999] }, quantiles, 0);
+        Assert.assertArrayEquals(new long[] { 2, 3 }, FLongStream.of(java.util.stream.LongStream.of(4, 3, 2, 1)).quantiles(0.5, 0.51));
+        Assert.assertThrows(java.util.NoSuchElementException.class, () -> FLongStream.of(java.util.stream.LongStream.empty()).quantiles(0.5));
+
+        var sketch = FDoubleStream.of(java.util.Arrays.stream(latencies).parallel()).quantileSketch();
+        Assert.assertEquals(latencies.length, sketch.count());
+        Assert.assertEquals(sorted[98_999], sketch.quantile(0.99), 20);
+
+        var statistics = FLongStream.of(java.util.stream.LongStream.rangeClosed(1, 100_000).parallel()).varianceStatistics();
+        Assert.assertEquals(50_000.5, statistics.mean(), 1e-6);
+        Assert.assertEquals((100_000.0 * 100_000 - 1) / 12, statistics.variance(), 1e-3);
+
+        var histogram = FDoubleStream.of(java.util.Arrays.stream(latencies).parallel()).logarithmicHistogram(1, 1000, 3);
+        Assert.assertEquals(latencies.length, histogram.totalCount());
+        Assert.assertEquals(java.util.Arrays.stream(latencies).filter(it -> it >= 10 && it < 100).count(), histogram.count(1));
+        Assert.assertArrayEquals(new long[] { 1, 1 }, FLongStream.of(java.util.stream.LongStream.of(1, 7)).histogram(0, 10, 2).counts());
+    }
+
+    @org.junit.Test
+    public void probabilisticCounts() {
+        long distinctCount = FStream.of(java.util.stream.IntStream.range(0, 200_000).parallel().mapToObj(it -> "user-" + (it % 50_000))).countDistinctApprox();
+        Assert.assertEquals(50_000, distinctCount, 2_000);
+
+        var hitters = FStream.of(java.util.stream.IntStream.range(0, 100_000).parallel().mapToObj(it -> it % 10 < 5 ? "frequent" : "rare-" + it)).heavyHitters(1);
+        Assert.assertEquals(1, hitters.size());
+        Assert.assertEquals("frequent", hitters.get(0).element());
+        Assert.assertTrue(hitters.get(0).count() >= 50_000);
+
+        var sketch = FStream.of(Stream.of("a", "b", "a")).frequencySketch(0.01, 0.9);
+        Assert.assertEquals(2, sketch.estimateCount("a"));
+        Assert.assertEquals(1, sketch.estimateCount("b"));
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return value ^ (value >>> 33);
     }
-}
\ No newline at end of file
+}